@@ -0,0 +1,62 @@
+package org.jenkinsci.plugins.spoontrigger;
+
+import org.jenkinsci.plugins.spoontrigger.git.PushCause;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses a GitHub push payload with the given number of commits into a {@link PushCause}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SpoonWebHookBenchmark {
+
+    @Param({"1", "20"})
+    public int commits;
+
+    private String payload;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\"ref\":\"refs/heads/master\",")
+                .append("\"before\":\"9049f1265b7d61be4a8904a9a27120d2064dab3b\",")
+                .append("\"after\":\"0d1a26e67d8f5eaf1f6ba5c57fc3c7d91ac0fd1c\",")
+                .append("\"commits\":[");
+        for (int position = 0; position < commits; ++position) {
+            if (position > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"id\":\"0d1a26e67d8f5eaf1f6ba5c57fc3c7d91ac0fd1c\",")
+                    .append("\"message\":\"Update Vagrantfile template for build ").append(position).append("\",")
+                    .append("\"timestamp\":\"2016-03-22T12:01:57-07:00\",")
+                    .append("\"author\":{\"name\":\"builder\",\"email\":\"builder@example.com\",\"username\":\"builder\"},")
+                    .append("\"added\":[],\"removed\":[],\"modified\":[\"firefox/turbo.me\",\"firefox/image.txt\"]}");
+        }
+        builder.append("],")
+                .append("\"repository\":{\"id\":35129377,\"name\":\"turbome\",\"full_name\":\"turboapps/turbome\",")
+                .append("\"url\":\"https://github.com/turboapps/turbome\",\"description\":\"TurboScripts\",\"fork\":false},")
+                .append("\"pusher\":{\"name\":\"builder\",\"email\":\"builder@example.com\"}}");
+        payload = builder.toString();
+    }
+
+    @Benchmark
+    public PushCause createCause() {
+        return SpoonWebHook.createCause(payload);
+    }
+}
@@ -0,0 +1,91 @@
+package org.jenkinsci.plugins.spoontrigger.commands;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Resources;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the throughput of {@link OutputStreamCollector} on turbo build output. Run with <code>-prof gc</code> to see
+ * the allocation rate per line.
+ * <p>
+ * By default the benchmark uses a synthetic sample, which is written by hand to resemble turbo's progress, spinner and
+ * duplicated lines. It is not a recording of a real build. To measure recorded output, pass the log of a real build,
+ * for example <code>$JENKINS_HOME/jobs/&lt;job&gt;/builds/&lt;number&gt;/log</code>, with
+ * <code>-p input=&lt;path&gt;</code> to the JMH runner.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class OutputStreamCollectorBenchmark {
+
+    private static final String SYNTHETIC_INPUT = "synthetic";
+    private static final String OUTPUT_RESOURCE = "synthetic-turbo-build-output.txt";
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final Pattern OUTPUT_IMAGE_PATTERN = Pattern.compile("Output\\s+image:\\s+(\\S+)", Pattern.CASE_INSENSITIVE);
+
+    @Param({"1", "64"})
+    public int repeat;
+
+    /**
+     * Path of a recorded build log, or <code>synthetic</code> for the bundled sample.
+     */
+    @Param({SYNTHETIC_INPUT})
+    public String input;
+
+    private byte[] output;
+    private PrintStream log;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] sample = SYNTHETIC_INPUT.equals(input)
+                ? Resources.toByteArray(Resources.getResource(OutputStreamCollectorBenchmark.class, OUTPUT_RESOURCE))
+                : Files.readAllBytes(Paths.get(input));
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(sample.length * repeat);
+        for (int pos = 0; pos < repeat; ++pos) {
+            buffer.write(sample);
+        }
+        output = buffer.toByteArray();
+        log = new PrintStream(ByteStreams.nullOutputStream(), false, CHARSET.name());
+    }
+
+    @Benchmark
+    public Collection<String> retaining() throws IOException {
+        OutputStreamCollector collector = new OutputStreamCollector(log, CHARSET);
+        collector.write(output);
+        collector.close();
+        return collector.findAll(OUTPUT_IMAGE_PATTERN);
+    }
+
+    @Benchmark
+    public Collection<String> streaming() throws IOException {
+        PatternGroupMatcher matcher = new PatternGroupMatcher(OUTPUT_IMAGE_PATTERN);
+        OutputStreamCollector collector = new OutputStreamCollector(log, CHARSET, Arrays.asList(matcher));
+        collector.write(output);
+        collector.close();
+        return matcher.getValues();
+    }
+}
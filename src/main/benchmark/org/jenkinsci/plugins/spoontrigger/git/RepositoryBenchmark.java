@@ -0,0 +1,41 @@
+package org.jenkinsci.plugins.spoontrigger.git;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses repository URLs, which is done for every push event received by the web hook.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    private final String[] urls = {
+            "https://github.com/turboapps/turbome",
+            "http://github.com/turboapps/jenkins",
+            "https://git.example.com/organization/very-long-project-name-with-many-segments"
+    };
+
+    @Benchmark
+    public int parse() {
+        int length = 0;
+        for (String url : urls) {
+            Repository repository = new Repository(url);
+            length += repository.organization.length() + repository.project.length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,41 @@
+package org.jenkinsci.plugins.spoontrigger.hub;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses image names in the forms used by build scripts and snapshot dependencies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ImageBenchmark {
+
+    private final String[] imageNames = {
+            "firefox",
+            "mozilla/firefox",
+            "mozilla/firefox:45.0.1",
+            "turbobrowsers/chrome-base:2016.03.22.1"
+    };
+
+    @Benchmark
+    public int parse() {
+        int length = 0;
+        for (String imageName : imageNames) {
+            length += Image.parse(imageName).printIdentifier().length();
+        }
+        return length;
+    }
+}
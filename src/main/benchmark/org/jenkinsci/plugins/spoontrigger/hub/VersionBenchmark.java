@@ -0,0 +1,96 @@
+package org.jenkinsci.plugins.spoontrigger.hub;
+
+import com.google.common.base.Optional;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses date-stamped tags and selects the latest one from a synthetic Hub repository document, the way
+ * {@link HubApi#getLatestVersion(Image)} does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class VersionBenchmark {
+
+    @Param({"100", "5000"})
+    public int tags;
+
+    private String[] tagNames;
+    private Version[] versions;
+    private String repo;
+
+    @Setup
+    public void setUp() {
+        tagNames = new String[tags];
+        StringBuilder builder = new StringBuilder("{\"namespace\":\"turbobrowsers\",\"name\":\"firefox\",\"tags\":[");
+        for (int position = 0; position < tags; ++position) {
+            String tag = String.format("%d.%d.%d.%d", 2010 + position % 7, position % 12 + 1, position % 28 + 1, position);
+            tagNames[position] = tag;
+            if (position > 0) {
+                builder.append(',');
+            }
+            builder.append('"').append(tag).append('"');
+        }
+        builder.append("],\"private\":false}");
+        repo = builder.toString();
+
+        versions = new Version[tags];
+        for (int position = 0; position < tags; ++position) {
+            versions[position] = Version.tryParse(tagNames[position]).get();
+        }
+    }
+
+    @Benchmark
+    public int tryParse() {
+        int major = 0;
+        for (String tag : tagNames) {
+            Optional<Version> version = Version.tryParse(tag);
+            if (version.isPresent()) {
+                major += version.get().getMajor();
+            }
+        }
+        return major;
+    }
+
+    @Benchmark
+    public Version compareTo() {
+        Version latest = versions[0];
+        for (Version version : versions) {
+            if (version.compareTo(latest) > 0) {
+                latest = version;
+            }
+        }
+        return latest;
+    }
+
+    @Benchmark
+    public Version latestTag() {
+        final Version[] latest = new Version[1];
+        TagScanner.scan(repo, new TagScanner.TagVisitor() {
+            @Override
+            public boolean visit(String text, int start, int end) {
+                Optional<Version> version = Version.tryParse(text, start, end);
+                if (version.isPresent() && (latest[0] == null || version.get().compareTo(latest[0]) > 0)) {
+                    latest[0] = version.get();
+                }
+                return true;
+            }
+        });
+        return latest[0];
+    }
+}
@@ -0,0 +1,131 @@
+package org.jenkinsci.plugins.spoontrigger.snapshot;
+
+import com.google.common.io.ByteStreams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads, edits and saves a synthetic xappl configuration of the given size, the way
+ * {@link org.jenkinsci.plugins.spoontrigger.SnapshotBuilder} removes redundant files from a snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class XapplEditorBenchmark {
+
+    private static final int FILES_PER_DIRECTORY = 100;
+    private static final List<String> PATHS_TO_REMOVE = Arrays.asList(
+            "@SYSDRIVE@\\tmp\\vagrant-shell.ps1",
+            "@PROGRAMFILES@\\Application\\dir1",
+            "@PROGRAMFILES@\\Application\\dir7\\file42.dll",
+            "@APPDATA@\\missing");
+
+    @Param({"1", "10", "50"})
+    public int sizeMb;
+
+    private Path directory;
+    private Path sourcePath;
+    private Path outputPath;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("xappl-benchmark");
+        sourcePath = directory.resolve("snapshot.xappl");
+        outputPath = directory.resolve("edited.xappl");
+        writeDocument(sourcePath, sizeMb * 1024L * 1024L);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(sourcePath);
+        Files.deleteIfExists(outputPath);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public boolean loadRemoveSave() throws Exception {
+        XapplEditor editor = new XapplEditor();
+        editor.load(sourcePath);
+        for (String path : PATHS_TO_REMOVE) {
+            editor.removeFile(path);
+        }
+        editor.save(outputPath);
+        return editor.fileExists(PATHS_TO_REMOVE.get(0));
+    }
+
+    @Benchmark
+    public Set<String> streamEdit() throws Exception {
+        XapplStreamEditor editor = new XapplStreamEditor(PATHS_TO_REMOVE);
+        InputStream inputStream = new BufferedInputStream(Files.newInputStream(sourcePath));
+        try {
+            return editor.edit(inputStream, ByteStreams.nullOutputStream());
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static void writeDocument(Path path, long targetSize) throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        try {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<Configuration appVersion=\"16.0.482\" publisher=\"Turbo.net\" version=\"10.6\">\n");
+            writer.write("  <Layers>\n    <Layer name=\"Default\">\n      <Filesystem>\n");
+            writer.write("        <Directory hide=\"False\" isolation=\"Merge\" name=\"@SYSDRIVE@\" noSync=\"False\" readOnly=\"False\">\n");
+            writer.write("          <Directory hide=\"False\" isolation=\"Merge\" name=\"tmp\" noSync=\"False\" readOnly=\"False\">\n");
+            writer.write("            <File hide=\"False\" isolation=\"Full\" name=\"vagrant-shell.ps1\" readOnly=\"False\" source=\".\\Files\\@SYSDRIVE@\\tmp\\vagrant-shell.ps1\" upgradeable=\"True\"/>\n");
+            writer.write("          </Directory>\n        </Directory>\n");
+            writer.write("        <Directory hide=\"False\" isolation=\"Merge\" name=\"@PROGRAMFILES@\" noSync=\"False\" readOnly=\"False\">\n");
+            writer.write("          <Directory hide=\"False\" isolation=\"Full\" name=\"Application\" noSync=\"False\" readOnly=\"False\">\n");
+
+            long written = 0;
+            int directoryIndex = 0;
+            while (written < targetSize) {
+                String directoryElement = String.format(
+                        "            <Directory hide=\"False\" isolation=\"Full\" name=\"dir%d\" noSync=\"False\" readOnly=\"False\">\n", directoryIndex);
+                writer.write(directoryElement);
+                written += directoryElement.length();
+
+                for (int fileIndex = 0; fileIndex < FILES_PER_DIRECTORY; ++fileIndex) {
+                    String fileElement = String.format(
+                            "              <File created=\"2015-12-16T12:01:57.1573743Z\" hide=\"False\" isolation=\"Full\" modified=\"2015-12-16T12:08:35.561968Z\" name=\"file%d.dll\" readOnly=\"False\" source=\".\\Files\\@PROGRAMFILES@\\Application\\dir%d\\file%d.dll\" upgradeable=\"True\"/>\n",
+                            fileIndex, directoryIndex, fileIndex);
+                    writer.write(fileElement);
+                    written += fileElement.length();
+                }
+
+                writer.write("            </Directory>\n");
+                ++directoryIndex;
+            }
+
+            writer.write("          </Directory>\n        </Directory>\n");
+            writer.write("      </Filesystem>\n    </Layer>\n  </Layers>\n</Configuration>\n");
+        } finally {
+            writer.close();
+        }
+    }
+}
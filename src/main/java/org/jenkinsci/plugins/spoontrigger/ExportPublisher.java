@@ -16,7 +16,6 @@ import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 
 import java.io.File;
-import java.io.IOException;
 
 import static com.google.common.base.Preconditions.checkState;
 import static org.jenkinsci.plugins.spoontrigger.Messages.*;
@@ -33,11 +32,6 @@ public class ExportPublisher extends SpoonBasePublisher {
         this.outputFile = Util.fixEmptyAndTrim(outputFile);
     }
 
-    private static IllegalStateException onFailedResolveOutputFile(String filePath, Exception ex) {
-        String msg = String.format(FAILED_RESOLVE_SP, "output file", filePath);
-        return new IllegalStateException(msg, ex);
-    }
-
     @Override
     public void beforePublish(SpoonBuild build, BuildListener listener) throws IllegalStateException {
         super.beforePublish(build, listener);
@@ -67,18 +61,12 @@ public class ExportPublisher extends SpoonBasePublisher {
 
         checkState(env.isPresent(), REQUIRE_PRESENT_S, "build environment variables");
 
-        Optional<FilePath> outputFilePath = FileResolver.create().env(env.get()).build(build).listener(listener).resolve(this.outputFile);
+        Optional<FileResolver.Resolution> outputFilePath = FileResolver.create().env(env.get()).build(build).listener(listener).probe(this.outputFile);
 
         if (outputFilePath.isPresent()) {
-            try {
-                checkState(!outputFilePath.isPresent() || !outputFilePath.get().isDirectory(), PATH_NOT_POINT_TO_ITEM_SPS, "output file", this.outputFile, "a file");
-            } catch (IOException ex) {
-                throw onFailedResolveOutputFile(this.outputFile, ex);
-            } catch (InterruptedException ex) {
-                throw onFailedResolveOutputFile(this.outputFile, ex);
-            }
+            checkState(!outputFilePath.get().directory, PATH_NOT_POINT_TO_ITEM_SPS, "output file", this.outputFile, "a file");
 
-            return outputFilePath.get();
+            return outputFilePath.get().path;
         }
 
         String expandedFilepath = env.get().expand(this.outputFile);
@@ -1,6 +1,7 @@
 package org.jenkinsci.plugins.spoontrigger;
 
 import com.google.common.base.Optional;
+import com.google.common.io.Closeables;
 import com.google.common.reflect.TypeToken;
 import hudson.Extension;
 import hudson.FilePath;
@@ -19,6 +20,8 @@ import org.jenkinsci.plugins.spoontrigger.commands.turbo.ModelCommand;
 import org.jenkinsci.plugins.spoontrigger.commands.turbo.PushModelCommand;
 import org.jenkinsci.plugins.spoontrigger.hub.Image;
 import org.jenkinsci.plugins.spoontrigger.scheduledtasks.ScheduledTasksApi;
+import org.jenkinsci.plugins.spoontrigger.utils.TempRoots;
+import org.jenkinsci.plugins.spoontrigger.utils.TrashCan;
 import org.jenkinsci.plugins.spoontrigger.validation.*;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
@@ -26,7 +29,6 @@ import org.kohsuke.stapler.QueryParameter;
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -36,13 +38,14 @@ import java.util.Locale;
 import static com.google.common.base.Preconditions.checkState;
 import static org.jenkinsci.plugins.spoontrigger.Messages.IGNORE_PARAMETER;
 import static org.jenkinsci.plugins.spoontrigger.Messages.REQUIRE_OUTPUT_IMAGE;
-import static org.jenkinsci.plugins.spoontrigger.utils.FileUtils.deleteDirectoryTree;
 import static org.jenkinsci.plugins.spoontrigger.utils.LogUtils.log;
 
 public class ModelBuilder extends BaseBuilder {
 
     private static final String TRANSCRIPT_DIR = "transcripts";
     private static final String MODEL_DIR = "model";
+    private static final String PROFILE_EXIT_CODE_FILE = "profile-exitcode.txt";
+    private static final long PROFILE_TIMEOUT_MS = 5 * 60 * 1000;
 
     @Nullable
     private final PushGuardSettings pushGuardSettings;
@@ -76,7 +79,8 @@ public class ModelBuilder extends BaseBuilder {
         Image outputImage = build.getOutputImage().orNull();
         checkState(outputImage != null, REQUIRE_OUTPUT_IMAGE);
 
-        Path tempDir = Files.createTempDirectory(Paths.get("C:/CI/Temp"),"jenkins-model-" + build.getSanitizedProjectName() + "-build-");
+        TempRoots.Lease tempDirLease = TempRoots.forNode(build.getBuiltOn()).createTempDirectory("jenkins-model-" + build.getSanitizedProjectName() + "-build-");
+        Path tempDir = tempDirLease.directory;
         try {
             ModelWorker worker = new ModelWorker(tempDir, build, launcher, listener, hubUrlsAsList());
             worker.buildModel();
@@ -89,7 +93,17 @@ public class ModelBuilder extends BaseBuilder {
             }
         }
         finally {
-            deleteDirectoryTree(tempDir);
+            try {
+                // the trash can collects directories on the controller only
+                FilePath tempDirOnNode = tempDirLease.getDirectoryOnNode();
+                if (tempDirOnNode.isRemote()) {
+                    tempDirOnNode.deleteRecursive();
+                } else {
+                    TrashCan.getInstance().discard(tempDir);
+                }
+            } finally {
+                tempDirLease.release();
+            }
         }
         return true;
     }
@@ -138,7 +152,13 @@ public class ModelBuilder extends BaseBuilder {
         }
 
         public void buildModel() throws IOException, InterruptedException {
-            profile();
+            try {
+                profile();
+            } finally {
+                final boolean swallowException = true;
+                Closeables.close(tasksApi, swallowException);
+            }
+
             model();
             if (shouldPush()) {
                 push();
@@ -225,20 +245,15 @@ public class ModelBuilder extends BaseBuilder {
                     .add(transcriptDir);
 
             log(listener, workingDir, profileCommand);
-            tasksApi.create(taskName, profileCommand.toString());
+            FilePath exitCodeFile = new FilePath(workingDir.toFile()).child(PROFILE_EXIT_CODE_FILE);
+            tasksApi.create(taskName, profileCommand.toString(), exitCodeFile);
             try {
-                final int MaxAttempts = 60;
-                final int SleepTime = 5000;
-
                 tasksApi.run(taskName);
 
-                boolean isProfileRunning = true;
-                for (int attempt = 1; attempt <= MaxAttempts && isProfileRunning; ++attempt) {
-                    Thread.sleep(SleepTime);
-                    isProfileRunning = tasksApi.isRunning(taskName);
+                int exitCode = tasksApi.waitForCompletion(taskName, exitCodeFile, PROFILE_TIMEOUT_MS);
+                if (exitCode != 0) {
+                    log(listener, String.format("Profiling finished with exit code %d", exitCode));
                 }
-
-                checkState(!isProfileRunning, "Profiling is running too long");
                 checkState(isTranscriptSaved(), "Transcript files not found in directory %s", transcriptDir);
             } finally {
                 try {
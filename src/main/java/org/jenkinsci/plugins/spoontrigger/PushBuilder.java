@@ -1,5 +1,7 @@
 package org.jenkinsci.plugins.spoontrigger;
 
+import com.google.common.base.Joiner;
+import com.google.common.base.Stopwatch;
 import com.google.common.reflect.TypeToken;
 import hudson.Extension;
 import hudson.Launcher;
@@ -30,8 +32,10 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Preconditions.checkState;
+import static org.jenkinsci.plugins.spoontrigger.utils.LogUtils.log;
 import static org.jenkinsci.plugins.spoontrigger.Messages.*;
 
 public class PushBuilder extends BaseBuilder {
@@ -94,12 +98,7 @@ public class PushBuilder extends BaseBuilder {
 
         if (this.hubUrls != null) {
             // if multiple hubs specified, push to each one of them
-            for (String hubUrl : hubUrlsAsList()) {
-                switchHub(client, hubUrl, build);
-
-                Pusher pusher = new Pusher(client);
-                pusher.push(build, buildExe);
-            }
+            pushToHubs(client, build, listener);
         } else {
             // push without changing current hub
             Pusher pusher = new Pusher(client);
@@ -109,6 +108,34 @@ public class PushBuilder extends BaseBuilder {
         return true;
     }
 
+    /**
+     * Pushes to every hub, even if pushing to one of them failed, and fails the build step afterwards if any
+     * push did not succeed. Hubs are switched through the shared turbo configuration, so pushes run one at a time.
+     */
+    private void pushToHubs(CommandDriver client, SpoonBuild build, BuildListener listener) throws InterruptedException, IOException {
+        List<String> failedHubs = new ArrayList<String>();
+        List<String> summary = new ArrayList<String>();
+        Stopwatch totalStopwatch = Stopwatch.createStarted();
+        for (String hubUrl : hubUrlsAsList()) {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            try {
+                switchHub(client, hubUrl, build);
+
+                Pusher pusher = new Pusher(client);
+                pusher.push(build, buildExe);
+                summary.add(String.format("%s: pushed in %d ms", hubUrl, stopwatch.elapsed(TimeUnit.MILLISECONDS)));
+            } catch (IllegalStateException ex) {
+                failedHubs.add(hubUrl);
+                summary.add(String.format("%s: failed after %d ms (%s)", hubUrl, stopwatch.elapsed(TimeUnit.MILLISECONDS), ex.getMessage()));
+            }
+        }
+
+        log(listener, String.format("Pushed to %d of %d hubs in %d ms:%n%s",
+                summary.size() - failedHubs.size(), summary.size(), totalStopwatch.elapsed(TimeUnit.MILLISECONDS),
+                Joiner.on(String.format("%n")).join(summary)));
+        checkState(failedHubs.isEmpty(), "Failed to push image to hubs: %s", Joiner.on(", ").join(failedHubs));
+    }
+
     private List<String> hubUrlsAsList() {
         List<String> result = new ArrayList<String>();
         if (this.hubUrls != null) {
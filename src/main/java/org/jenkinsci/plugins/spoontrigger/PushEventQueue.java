@@ -0,0 +1,176 @@
+package org.jenkinsci.plugins.spoontrigger;
+
+import hudson.init.Terminator;
+import net.sf.json.JSONObject;
+import org.jenkinsci.plugins.spoontrigger.git.PushCause;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded queue of push events received by {@link SpoonWebHook}.
+ * <p>
+ * Events wait in the queue for a short quiet period. A push to a repository and branch that already has a waiting
+ * event replaces its head, so a burst of pushes triggers a single build of the newest commit. Events are passed to
+ * the matching triggers by a single dispatcher thread. Once Jenkins is shutting down the queue rejects new events.
+ * <p>
+ * Limits can be changed with system properties prefixed with the class name: <code>capacity</code> and
+ * <code>quietPeriodMillis</code>.
+ */
+public class PushEventQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(PushEventQueue.class.getName());
+
+    private static final int CAPACITY = Integer.getInteger(PushEventQueue.class.getName() + ".capacity", 1000);
+    private static final long QUIET_PERIOD_MILLIS = Long.getLong(PushEventQueue.class.getName() + ".quietPeriodMillis", 2000L);
+
+    private static final PushEventQueue INSTANCE = new PushEventQueue(CAPACITY, QUIET_PERIOD_MILLIS);
+
+    private final int capacity;
+    private final long quietPeriodNanos;
+    private final LinkedHashMap<String, PendingEvent> events;
+
+    private long received;
+    private long coalesced;
+    private long rejected;
+    private long dispatched;
+
+    private Thread dispatcher;
+    private boolean terminated;
+
+    PushEventQueue(int capacity, long quietPeriodMillis) {
+        this.capacity = capacity;
+        this.quietPeriodNanos = TimeUnit.MILLISECONDS.toNanos(quietPeriodMillis);
+        this.events = new LinkedHashMap<String, PendingEvent>();
+    }
+
+    public static PushEventQueue getInstance() {
+        return INSTANCE;
+    }
+
+    @Terminator
+    public static void shutdown() {
+        INSTANCE.terminate();
+    }
+
+    /**
+     * @return false if the queue is full or terminated and the event was dropped
+     */
+    public synchronized boolean offer(PushCause cause) {
+        ++received;
+
+        if (terminated) {
+            ++rejected;
+            return false;
+        }
+
+        String key = getKey(cause);
+        PendingEvent pendingEvent = events.get(key);
+        if (pendingEvent != null) {
+            pendingEvent.cause = cause;
+            ++coalesced;
+            return true;
+        }
+
+        if (events.size() >= capacity) {
+            ++rejected;
+            return false;
+        }
+
+        events.put(key, new PendingEvent(cause, System.nanoTime()));
+        startDispatcher();
+        notifyAll();
+        return true;
+    }
+
+    public synchronized JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        metrics.put("depth", events.size());
+        metrics.put("capacity", capacity);
+        metrics.put("received", received);
+        metrics.put("coalesced", coalesced);
+        metrics.put("rejected", rejected);
+        metrics.put("dispatched", dispatched);
+        return metrics;
+    }
+
+    private static String getKey(PushCause cause) {
+        String repositoryUrl = SpoonTriggerIndex.normalize(cause.repository.url);
+        return repositoryUrl + "#" + cause.branch.name;
+    }
+
+    private synchronized PushCause take() throws InterruptedException {
+        while (true) {
+            Iterator<Map.Entry<String, PendingEvent>> iterator = events.entrySet().iterator();
+            if (!iterator.hasNext()) {
+                wait();
+                continue;
+            }
+
+            PendingEvent oldestEvent = iterator.next().getValue();
+            long remainingNanos = oldestEvent.enqueuedAtNanos + quietPeriodNanos - System.nanoTime();
+            if (remainingNanos > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+                continue;
+            }
+
+            iterator.remove();
+            ++dispatched;
+            return oldestEvent.cause;
+        }
+    }
+
+    void dispatch(PushCause cause) {
+        for (SpoonTrigger trigger : SpoonTriggerIndex.lookup(cause.repository.url)) {
+            trigger.run(cause);
+        }
+    }
+
+    private synchronized void startDispatcher() {
+        if (dispatcher != null) {
+            return;
+        }
+
+        dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        PushCause cause = take();
+                        try {
+                            dispatch(cause);
+                        } catch (RuntimeException ex) {
+                            LOGGER.log(Level.WARNING, String.format("Failed to dispatch push event: %s", cause.getShortDescription()), ex);
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    // shutting down
+                }
+            }
+        }, "Turbo push event dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    synchronized void terminate() {
+        terminated = true;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+            dispatcher = null;
+        }
+    }
+
+    private static final class PendingEvent {
+        private final long enqueuedAtNanos;
+        private PushCause cause;
+
+        PendingEvent(PushCause cause, long enqueuedAtNanos) {
+            this.cause = cause;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.jenkinsci.plugins.spoontrigger;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Strings;
 import com.google.common.reflect.TypeToken;
 import hudson.*;
 import hudson.model.*;
@@ -8,21 +9,36 @@ import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
+import net.sf.json.JSONObject;
 import org.jenkinsci.plugins.spoontrigger.commands.CommandDriver;
 import org.jenkinsci.plugins.spoontrigger.commands.turbo.BuildCommand;
+import org.jenkinsci.plugins.spoontrigger.commands.turbo.ExportCommand;
+import org.jenkinsci.plugins.spoontrigger.commands.turbo.ImportCommand;
 import org.jenkinsci.plugins.spoontrigger.commands.turbo.VersionCommand;
+import org.jenkinsci.plugins.spoontrigger.hub.HubApi;
 import org.jenkinsci.plugins.spoontrigger.hub.Image;
+import org.jenkinsci.plugins.spoontrigger.snapshot.SnapshotCache;
 import org.jenkinsci.plugins.spoontrigger.utils.AutoCompletion;
 import org.jenkinsci.plugins.spoontrigger.utils.Credentials;
 import org.jenkinsci.plugins.spoontrigger.utils.FileResolver;
+import org.jenkinsci.plugins.spoontrigger.utils.JsonOption;
 import org.jenkinsci.plugins.spoontrigger.validation.*;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
 
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
 import static com.google.common.base.Preconditions.checkState;
 import static org.jenkinsci.plugins.spoontrigger.Messages.*;
@@ -30,6 +46,12 @@ import static org.jenkinsci.plugins.spoontrigger.utils.LogUtils.log;
 
 public class ScriptBuilder extends LoginBuilder {
 
+    private static final Pattern BASE_IMAGE_SEPARATOR_PATTERN = Pattern.compile("[,\\s]+");
+    private static final String[] BASE_IMAGE_INSTRUCTIONS = {"from", "layer", "using"};
+
+    private static final AtomicLong CACHE_HITS = new AtomicLong();
+    private static final AtomicLong CACHE_MISSES = new AtomicLong();
+
     @Nullable
     private final String scriptFilePath;
     @Nullable
@@ -111,12 +133,24 @@ public class ScriptBuilder extends LoginBuilder {
 
         checkSpoonPluginIsRunning(client);
 
+        Optional<SnapshotCache> buildCache = getBuildCache(build, listener);
+        Optional<String> cacheKey = Optional.absent();
+        if (buildCache.isPresent()) {
+            cacheKey = computeCacheKey(build, listener);
+            if (cacheKey.isPresent() && importCachedImage(buildCache.get(), cacheKey.get(), build, client, listener)) {
+                return true;
+            }
+        }
+
         BuildCommand command = createBuildCommand(build.getScript().get());
         command.run(client);
 
         Optional<Image> outputImage = command.getOutputImage();
         if (outputImage.isPresent()) {
             build.setOutputImage(outputImage.get());
+            if (cacheKey.isPresent()) {
+                cacheImage(buildCache.get(), cacheKey.get(), outputImage.get(), build, client, listener);
+            }
             return true;
         }
 
@@ -177,6 +211,154 @@ public class ScriptBuilder extends LoginBuilder {
                 && BuildCommand.BuildFailure.ImageAlreadyExists.equals(buildFailure);
     }
 
+    private Optional<SnapshotCache> getBuildCache(SpoonBuild build, BuildListener listener) {
+        DescriptorImpl globalConfig = (DescriptorImpl) getDescriptor();
+        String buildCachePath = globalConfig.getBuildCachePath();
+        if (Strings.isNullOrEmpty(buildCachePath)) {
+            return Optional.absent();
+        }
+
+        FilePath workspace = build.getWorkspace();
+        if (workspace == null || workspace.isRemote()) {
+            log(listener, "Build cache is available only for builds running on the master node");
+            return Optional.absent();
+        }
+
+        long maxSizeBytes = globalConfig.getBuildCacheMaxSizeMb() * 1024L * 1024L;
+        return Optional.of(SnapshotCache.forDirectory(Paths.get(buildCachePath), maxSizeBytes));
+    }
+
+    private Optional<String> computeCacheKey(SpoonBuild build, BuildListener listener) {
+        try {
+            Path scriptPath = Paths.get(build.getScript().get().getRemote());
+            SnapshotCache.KeyBuilder keyBuilder = SnapshotCache.keyBuilder()
+                    .put("builder", "turbo build")
+                    .putFile("script", scriptPath)
+                    .put("imageName", imageName)
+                    .put("vmVersion", vmVersion)
+                    .put("containerWorkingDir", containerWorkingDir)
+                    .put("noBase", noBase);
+
+            if (routeFile != null) {
+                keyBuilder.putFile("routeFile", Paths.get(routeFile));
+            }
+
+            if (mountSettings != null) {
+                keyBuilder.put("sourceContainer", mountSettings.sourceContainer)
+                        .put("targetFolder", mountSettings.targetFolder);
+
+                Path sourceFolder = Paths.get(mountSettings.sourceFolder);
+                if (mountSettings.sourceContainer == null && Files.isDirectory(sourceFolder)) {
+                    keyBuilder.putDirectory("sourceFolder", sourceFolder);
+                } else {
+                    keyBuilder.put("sourceFolder", mountSettings.sourceFolder);
+                }
+            }
+
+            // base images without a tag are resolved, so a new release of a base image invalidates the cached image
+            HubApi hubApi = HubApi.create(build, listener);
+            for (Image baseImage : getBaseImages(scriptPath, build)) {
+                if (baseImage.tag == null && baseImage.namespace != null) {
+                    baseImage = hubApi.getLatestVersion(baseImage);
+                }
+                keyBuilder.put("baseImage", baseImage.printIdentifier());
+            }
+
+            return Optional.of(keyBuilder.build());
+        } catch (Exception ex) {
+            log(listener, "Failed to compute the build cache key. The image will be built.", ex);
+            return Optional.absent();
+        }
+    }
+
+    private static List<Image> getBaseImages(Path scriptPath, SpoonBuild build) throws IOException {
+        List<Image> baseImages = new ArrayList<Image>();
+        for (String line : Files.readAllLines(scriptPath, build.getCharset())) {
+            String lineToUse = line.trim();
+            String lowerCaseLine = lineToUse.toLowerCase(Locale.ROOT);
+            for (String instruction : BASE_IMAGE_INSTRUCTIONS) {
+                if (!lowerCaseLine.startsWith(instruction + " ")) {
+                    continue;
+                }
+
+                String images = lineToUse.substring(instruction.length()).trim();
+                for (String image : BASE_IMAGE_SEPARATOR_PATTERN.split(images)) {
+                    if (!image.isEmpty()) {
+                        baseImages.add(Image.parse(image));
+                    }
+                }
+            }
+        }
+        return baseImages;
+    }
+
+    private boolean importCachedImage(SnapshotCache buildCache, String cacheKey, SpoonBuild build, CommandDriver client, BuildListener listener) throws IOException {
+        Optional<SnapshotCache.Entry> cacheEntry = buildCache.lookup(cacheKey);
+        if (!cacheEntry.isPresent() || !cacheEntry.get().imageName.isPresent()) {
+            if (cacheEntry.isPresent()) {
+                buildCache.release(cacheEntry.get());
+            }
+            log(listener, String.format("Build cache miss for inputs %s (hits: %d, misses: %d)",
+                    cacheKey, CACHE_HITS.get(), CACHE_MISSES.incrementAndGet()));
+            return false;
+        }
+
+        log(listener, String.format("Build cache hit for inputs %s (hits: %d, misses: %d)",
+                cacheKey, CACHE_HITS.incrementAndGet(), CACHE_MISSES.get()));
+
+        ImportCommand command = ImportCommand.builder()
+                .type("svm")
+                .path(cacheEntry.get().imagePath.toString())
+                .name(cacheEntry.get().imageName.get().printIdentifier())
+                .overwrite(overwrite)
+                .build();
+        try {
+            command.run(client);
+        } finally {
+            buildCache.release(cacheEntry.get());
+        }
+
+        Optional<Image> outputImage = command.getOutputImage();
+        if (!outputImage.isPresent()) {
+            log(listener, "Failed to import the cached image. The image will be built.");
+            return false;
+        }
+
+        build.setOutputImage(outputImage.get());
+        return true;
+    }
+
+    private void cacheImage(SnapshotCache buildCache, String cacheKey, Image outputImage, SpoonBuild build, CommandDriver client, BuildListener listener) {
+        FilePath imageFile = null;
+        try {
+            imageFile = build.getWorkspace().createTempFile("turbo-build-cache", ".svm");
+            imageFile.delete();
+
+            ExportCommand command = ExportCommand.builder()
+                    .image(outputImage.printIdentifier())
+                    .outputFile(imageFile)
+                    .build();
+            command.run(client);
+
+            if (!imageFile.exists() || imageFile.length() == 0) {
+                log(listener, String.format("Failed to export %s to the build cache", outputImage.printIdentifier()));
+                return;
+            }
+
+            buildCache.store(cacheKey, Paths.get(imageFile.getRemote()), Optional.of(outputImage));
+        } catch (Exception ex) {
+            log(listener, "Failed to store the image in the build cache", ex);
+        } finally {
+            if (imageFile != null) {
+                try {
+                    imageFile.delete();
+                } catch (Exception ex) {
+                    // no-op
+                }
+            }
+        }
+    }
+
     private void checkMountSettings() {
         if (this.mountSettings == null) {
             return;
@@ -285,6 +467,8 @@ public class ScriptBuilder extends LoginBuilder {
         private static final Validator<File> FILE_PATH_FILE_VALIDATOR;
         private static final Validator<String> VERSION_NUMBER_VALIDATOR;
         private static final Validator<String> NULL_OR_SINGLE_WORD_VALIDATOR;
+        private static final Validator<File> DIR_PATH_VALIDATOR;
+        private static final Validator<String> INTEGER_VALIDATOR;
 
         static {
             IGNORE_NULL_VALIDATOR = StringValidators.isNotNull(IGNORE_PARAMETER, Level.OK);
@@ -300,6 +484,50 @@ public class ScriptBuilder extends LoginBuilder {
             NULL_OR_SINGLE_WORD_VALIDATOR = Validators.chain(
                     IGNORE_NULL_VALIDATOR,
                     StringValidators.isSingleWord(String.format(REQUIRE_SINGLE_WORD_S, "Parameter")));
+            DIR_PATH_VALIDATOR = Validators.chain(
+                    FileValidators.exists(String.format(DOES_NOT_EXIST_S, "Directory")),
+                    FileValidators.isDirectory(String.format(PATH_NOT_POINT_TO_ITEM_S, "a directory")),
+                    FileValidators.isPathAbsolute(PATH_SHOULD_BE_ABSOLUTE, Level.WARNING));
+            INTEGER_VALIDATOR = Validators.chain(
+                    IGNORE_NULL_VALIDATOR,
+                    StringValidators.isInteger("Parameter should be an integer"));
+        }
+
+        public static final int DEFAULT_BUILD_CACHE_MAX_SIZE_MB = 20 * 1024;
+
+        private String buildCachePath;
+
+        private int buildCacheMaxSizeMb = DEFAULT_BUILD_CACHE_MAX_SIZE_MB;
+
+        public DescriptorImpl() {
+            load();
+        }
+
+        @Override
+        public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+            JsonOption.ObjectWrapper jsonWrapper = JsonOption.wrap(json);
+            buildCachePath = Util.fixEmptyAndTrim(jsonWrapper.getString("buildCachePath").orNull());
+            buildCacheMaxSizeMb = DEFAULT_BUILD_CACHE_MAX_SIZE_MB;
+            String maxSizeMb = Util.fixEmptyAndTrim(jsonWrapper.getString("buildCacheMaxSizeMb").orNull());
+            if (maxSizeMb != null) {
+                try {
+                    buildCacheMaxSizeMb = Math.max(Integer.parseInt(maxSizeMb), 0);
+                } catch (NumberFormatException ex) {
+                    // keep the default size
+                }
+            }
+
+            save();
+
+            return super.configure(req, json);
+        }
+
+        public String getBuildCachePath() {
+            return buildCachePath;
+        }
+
+        public int getBuildCacheMaxSizeMb() {
+            return buildCacheMaxSizeMb;
         }
 
         private static boolean doNotHasPermissions(Item project) {
@@ -338,6 +566,19 @@ public class ScriptBuilder extends LoginBuilder {
             }
         }
 
+        public FormValidation doCheckBuildCachePath(@QueryParameter String value) {
+            String directoryPath = Util.fixEmptyAndTrim(value);
+            if (directoryPath == null) {
+                return Validators.validate(IGNORE_NULL_VALIDATOR, directoryPath);
+            }
+            return Validators.validate(DIR_PATH_VALIDATOR, new File(directoryPath));
+        }
+
+        public FormValidation doCheckBuildCacheMaxSizeMb(@QueryParameter String value) {
+            String maxSizeMb = Util.fixEmptyAndTrim(value);
+            return Validators.validate(INTEGER_VALIDATOR, maxSizeMb);
+        }
+
         public AutoCompletionCandidates doAutoCompleteScriptFilePath(@QueryParameter String value) {
             return AutoCompletion.suggestFiles(value);
         }
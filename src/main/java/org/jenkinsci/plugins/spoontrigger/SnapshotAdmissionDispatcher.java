@@ -0,0 +1,72 @@
+package org.jenkinsci.plugins.spoontrigger;
+
+import com.google.common.base.Optional;
+import hudson.Extension;
+import hudson.model.Node;
+import hudson.model.Queue;
+import hudson.model.queue.CauseOfBlockage;
+import hudson.model.queue.QueueTaskDispatcher;
+import hudson.tasks.Builder;
+import org.jenkinsci.plugins.spoontrigger.vagrant.VagrantVmPool;
+import org.jenkinsci.plugins.spoontrigger.vagrant.VmAdmissionController;
+import org.jenkinsci.plugins.spoontrigger.vagrant.VmCapacityProperty;
+import org.jenkinsci.plugins.spoontrigger.vagrant.VmResources;
+
+/**
+ * Keeps snapshot builds in the queue while the node does not have capacity for another snapshot VM. Builds which can
+ * reuse an idle pooled VM on the controller do not need capacity for another VM.
+ */
+@Extension
+public class SnapshotAdmissionDispatcher extends QueueTaskDispatcher {
+
+    @Override
+    public CauseOfBlockage canTake(Node node, Queue.BuildableItem item) {
+        if (!(item.task instanceof SpoonProject)) {
+            return null;
+        }
+
+        Optional<VmResources> demand = getVmDemand((SpoonProject) item.task);
+        if (!demand.isPresent()) {
+            return null;
+        }
+
+        if (node.getNodeName().isEmpty() && canUseIdlePooledVm((SpoonProject) item.task)) {
+            return null;
+        }
+
+        VmResources capacity = VmCapacityProperty.getCapacity(node);
+        final Optional<String> blockage = VmAdmissionController.getInstance().checkAdmission(node.getNodeName(), capacity, demand.get());
+        if (!blockage.isPresent()) {
+            return null;
+        }
+
+        return new CauseOfBlockage() {
+            @Override
+            public String getShortDescription() {
+                return blockage.get();
+            }
+        };
+    }
+
+    private static boolean canUseIdlePooledVm(SpoonProject project) {
+        for (Builder builder : project.getBuilders()) {
+            if (builder instanceof SnapshotBuilder) {
+                SnapshotBuilder snapshotBuilder = (SnapshotBuilder) builder;
+                return VagrantVmPool.getInstance().hasIdle(snapshotBuilder.getVagrantBox(), snapshotBuilder.getVmResources());
+            }
+        }
+        return false;
+    }
+
+    private static Optional<VmResources> getVmDemand(SpoonProject project) {
+        for (Builder builder : project.getBuilders()) {
+            if (builder instanceof SnapshotBuilder) {
+                return Optional.of(((SnapshotBuilder) builder).getVmResources());
+            }
+            if (builder instanceof VboxSnapshotBuilder) {
+                return Optional.of(VmResources.DEFAULT);
+            }
+        }
+        return Optional.absent();
+    }
+}
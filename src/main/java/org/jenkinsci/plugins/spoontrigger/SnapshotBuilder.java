@@ -7,6 +7,7 @@ import com.google.common.io.Closeables;
 import com.google.common.reflect.TypeToken;
 import hudson.*;
 import hudson.model.AbstractProject;
+import hudson.model.Action;
 import hudson.model.AutoCompletionCandidates;
 import hudson.model.BuildListener;
 import hudson.model.Result;
@@ -17,35 +18,42 @@ import net.sf.json.JSONObject;
 import org.jenkinsci.plugins.spoontrigger.commands.CommandDriver;
 import org.jenkinsci.plugins.spoontrigger.commands.powershell.PowerShellCommand;
 import org.jenkinsci.plugins.spoontrigger.commands.turbo.ImportCommand;
-import org.jenkinsci.plugins.spoontrigger.commands.turbo.PullCommand;
 import org.jenkinsci.plugins.spoontrigger.commands.xstudio.BuildCommand;
 import org.jenkinsci.plugins.spoontrigger.hub.HubApi;
 import org.jenkinsci.plugins.spoontrigger.hub.Image;
 import org.jenkinsci.plugins.spoontrigger.scheduledtasks.ScheduledTasksApi;
+import org.jenkinsci.plugins.spoontrigger.snapshot.DependencyResolver;
 import org.jenkinsci.plugins.spoontrigger.snapshot.InstallScriptStrategy;
+import org.jenkinsci.plugins.spoontrigger.snapshot.PhaseTimelineAction;
+import org.jenkinsci.plugins.spoontrigger.snapshot.PhaseTrendAction;
+import org.jenkinsci.plugins.spoontrigger.snapshot.SnapshotCache;
+import org.jenkinsci.plugins.spoontrigger.snapshot.SnapshotFiles;
+import org.jenkinsci.plugins.spoontrigger.snapshot.SnapshotPhase;
 import org.jenkinsci.plugins.spoontrigger.snapshot.StartupFileStrategy;
-import org.jenkinsci.plugins.spoontrigger.snapshot.XapplEditor;
-import org.jenkinsci.plugins.spoontrigger.utils.FileUtils;
 import org.jenkinsci.plugins.spoontrigger.utils.JsonOption;
+import org.jenkinsci.plugins.spoontrigger.utils.TempRoots;
+import org.jenkinsci.plugins.spoontrigger.utils.TrashCan;
 import org.jenkinsci.plugins.spoontrigger.vagrant.VagrantEnvironment;
+import org.jenkinsci.plugins.spoontrigger.vagrant.VagrantVmPool;
+import org.jenkinsci.plugins.spoontrigger.vagrant.VmAdmissionController;
+import org.jenkinsci.plugins.spoontrigger.vagrant.VmResources;
 import org.jenkinsci.plugins.spoontrigger.validation.*;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 
 import javax.annotation.Nullable;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -53,14 +61,10 @@ import static com.google.common.base.Preconditions.checkState;
 import static org.jenkinsci.plugins.spoontrigger.Messages.*;
 import static org.jenkinsci.plugins.spoontrigger.utils.AutoCompletion.suggestDirectories;
 import static org.jenkinsci.plugins.spoontrigger.utils.AutoCompletion.suggestFiles;
-import static org.jenkinsci.plugins.spoontrigger.utils.FileUtils.deleteDirectoryTreeRetryOnFailure;
-import static org.jenkinsci.plugins.spoontrigger.utils.FileUtils.quietDeleteChildren;
 import static org.jenkinsci.plugins.spoontrigger.utils.LogUtils.log;
 
 public class SnapshotBuilder extends BaseBuilder {
 
-    private static final String IMAGE_NAME_FILE = "image.txt";
-
     private final InstallScriptSettings installScriptSettings;
 
     private final StartupFileSettings startupFileSettings;
@@ -171,6 +175,13 @@ public class SnapshotBuilder extends BaseBuilder {
         return vagrantBox;
     }
 
+    /**
+     * @return host resources used by the snapshot VM, configured globally
+     */
+    public VmResources getVmResources() {
+        return ((DescriptorImpl) getDescriptor()).getVmResources();
+    }
+
     @Override
     protected void prebuild(SpoonBuild build, BuildListener listener) {
 
@@ -192,22 +203,34 @@ public class SnapshotBuilder extends BaseBuilder {
 
     @Override
     public boolean perform(SpoonBuild build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
-        String workspace = Paths.get(build.getWorkspace().getRemote()).toString();
+        FilePath workspace = build.getWorkspace();
+        PhaseTimelineAction timeline = PhaseTimelineAction.getOrCreate(build);
         try {
-            importAsImage = loadImportImageName(workspace);
+            importAsImage = SnapshotFiles.loadImageName(workspace);
 
             if (shouldAbort(build, listener)) {
                 build.setResult(Result.ABORTED);
                 return false;
             }
 
-            takeSnapshot(workspace, build, launcher, listener);
+            takeSnapshot(workspace, build, launcher, listener, timeline);
             return true;
         } finally {
-            quietDeleteChildren(Paths.get(workspace));
+            timeline.begin(SnapshotPhase.CLEANUP);
+            if (workspace.isRemote()) {
+                workspace.deleteContents();
+            } else {
+                TrashCan.getInstance().discardChildren(Paths.get(workspace.getRemote()));
+            }
+            timeline.end();
         }
     }
 
+    @Override
+    public Collection<? extends Action> getProjectActions(AbstractProject<?, ?> project) {
+        return Collections.singletonList(new PhaseTrendAction(project));
+    }
+
     public String getDependencies() {
         if (dependencies.isEmpty()) {
             return null;
@@ -228,127 +251,311 @@ public class SnapshotBuilder extends BaseBuilder {
         return importAsImage.isPresent() && isAvailableRemotely(importAsImage.get(), build, listener);
     }
 
-    private void takeSnapshot(String workspace, SpoonBuild build, Launcher launcher, BuildListener listener) throws IOException, InterruptedException {
-        VagrantEnvironment vagrantEnv = createVagrantEnvironment(build, workspace);
+    private void takeSnapshot(FilePath workspace, SpoonBuild build, Launcher launcher, BuildListener listener, PhaseTimelineAction timeline) throws IOException, InterruptedException {
+        // the snapshot cache and the VM pool keep their files on the controller, builds on agents do not use them
+        final boolean remote = workspace.isRemote();
+        Optional<String> cacheKey = Optional.absent();
+        Optional<SnapshotCache> snapshotCache = remote ? Optional.<SnapshotCache>absent() : getSnapshotCache();
+        if (snapshotCache.isPresent()) {
+            timeline.begin(SnapshotPhase.CACHE_LOOKUP);
+            cacheKey = Optional.of(computeCacheKey(workspace, build, listener));
+            Optional<SnapshotCache.Entry> cacheEntry = snapshotCache.get().lookup(cacheKey.get());
+            if (cacheEntry.isPresent()) {
+                log(listener, String.format("Snapshot cache hit for inputs %s. Importing the cached image.", cacheKey.get()));
+                CommandDriver commandDriver = createCommandDriver(build, launcher, listener, workspace);
+                timeline.begin(SnapshotPhase.IMPORT_IMAGE);
+                try {
+                    importImage(commandDriver, build, cacheEntry.get().imagePath, cacheEntry.get().imageName.or(importAsImage));
+                } finally {
+                    snapshotCache.get().release(cacheEntry.get());
+                }
+                return;
+            }
+            log(listener, String.format("Snapshot cache miss for inputs %s", cacheKey.get()));
+        }
+
+        timeline.begin(SnapshotPhase.VM_ADMISSION);
+        // resources of pooled VMs are counted by the admission controller while the VM stays in the pool
+        Optional<VagrantVmPool.PooledVm> idleVm = remote
+                ? Optional.<VagrantVmPool.PooledVm>absent()
+                : VagrantVmPool.getInstance().leaseIdle(vagrantBox, getVmResources());
+        if (idleVm.isPresent()) {
+            takeSnapshot(workspace, build, launcher, listener, timeline, idleVm.get(), cacheKey);
+            return;
+        }
+
+        VmAdmissionController.Reservation reservation = VmAdmissionController.getInstance().reserve(build, getVmResources(), listener);
         try {
-            SnapshotTaker snapshotTaker = new SnapshotTaker(build, vagrantEnv, launcher, listener);
+            TempRoots tempRoots = TempRoots.forNode(build.getBuiltOn());
+            Optional<VagrantVmPool.PooledVm> pooledVm = remote
+                    ? Optional.<VagrantVmPool.PooledVm>absent()
+                    : VagrantVmPool.getInstance().lease(vagrantBox, getVmResources(), tempRoots);
+            if (pooledVm.isPresent()) {
+                VmAdmissionController.getInstance().release(reservation);
+                takeSnapshot(workspace, build, launcher, listener, timeline, pooledVm.get(), cacheKey);
+            } else {
+                takeSnapshot(workspace, build, launcher, listener, timeline, tempRoots, cacheKey);
+            }
+        } finally {
+            VmAdmissionController.getInstance().release(reservation);
+        }
+    }
+
+    private void takeSnapshot(FilePath workspace, SpoonBuild build, Launcher launcher, BuildListener listener, PhaseTimelineAction timeline,
+                              TempRoots tempRoots, Optional<String> cacheKey) throws IOException, InterruptedException {
+        timeline.begin(SnapshotPhase.STAGING);
+        TempRoots.Lease workingDirLease = tempRoots.createTempDirectory("jenkins-" + build.getSanitizedProjectName() + "-build-");
+        FilePath workingDir = workingDirLease.getDirectoryOnNode();
+        log(listener, String.format("Vagrant working directory: %s", workingDir.getRemote()));
+        try {
+            VagrantEnvironment vagrantEnv = createVagrantEnvironment(workingDir, workspace);
+            SnapshotTaker snapshotTaker = new SnapshotTaker(build, vagrantEnv, workingDir, Optional.<VagrantVmPool.PooledVm>absent(), cacheKey, timeline, launcher, listener);
             snapshotTaker.takeSnapshot();
         } finally {
             // Vagrant working dir was moved to temp, because the Vagrant process running as a scheduled task
             // does not have write access to the build workspace in Program Files
-            deleteDirectoryTreeRetryOnFailure(vagrantEnv.workingDir, listener);
+            timeline.begin(SnapshotPhase.CLEANUP);
+            try {
+                discard(workingDir, listener);
+            } finally {
+                workingDirLease.release();
+                timeline.end();
+            }
         }
     }
 
-    private VagrantEnvironment createVagrantEnvironment(SpoonBuild build, String buildWorkspace) throws IOException {
-        Path workingDir = Files.createTempDirectory(Paths.get("C:/CI/Temp"),"jenkins-" + build.getSanitizedProjectName() + "-build-");
-        VagrantEnvironment.EnvironmentBuilder environmentBuilder = VagrantEnvironment.builder(workingDir)
-                .box(vagrantBox)
-                .xStudioPath(xStudioPath);
+    private void takeSnapshot(FilePath workspace, SpoonBuild build, Launcher launcher, BuildListener listener, PhaseTimelineAction timeline,
+                              VagrantVmPool.PooledVm pooledVm, Optional<String> cacheKey) throws IOException, InterruptedException {
+        log(listener, String.format("Using pooled Vagrant VM in %s", pooledVm.workingDir));
 
-        List<Path> installerPaths = getInstallerPaths(buildWorkspace);
-        if (!installerPaths.isEmpty()) {
-            environmentBuilder.installerPaths(installerPaths);
+        boolean restored = false;
+        try {
+            timeline.begin(SnapshotPhase.STAGING);
+            pooledVm.removeStagedFiles();
+            FilePath workingDir = new FilePath(pooledVm.workingDir.toFile());
+            VagrantEnvironment vagrantEnv = createVagrantEnvironment(workingDir, workspace);
+            SnapshotTaker snapshotTaker = new SnapshotTaker(build, vagrantEnv, workingDir, Optional.of(pooledVm), cacheKey, timeline, launcher, listener);
+            try {
+                snapshotTaker.takeSnapshot();
+            } finally {
+                restored = snapshotTaker.restored;
+            }
+        } finally {
+            timeline.begin(SnapshotPhase.CLEANUP);
+            if (restored) {
+                pooledVm.removeStagedFiles();
+                VagrantVmPool.getInstance().release(pooledVm, true);
+            } else {
+                VagrantVmPool.getInstance().release(pooledVm, false);
+                try {
+                    discard(new FilePath(pooledVm.workingDir.toFile()), listener);
+                } finally {
+                    pooledVm.releaseWorkingDir();
+                }
+            }
+            timeline.end();
+        }
+    }
+
+    private static void discard(FilePath directory, BuildListener listener) throws IOException, InterruptedException {
+        if (directory.isRemote()) {
+            directory.deleteRecursive();
+            return;
+        }
+
+        Path trashed = TrashCan.getInstance().discard(Paths.get(directory.getRemote()));
+        log(listener, String.format("Scheduled %s for deletion in the background", trashed));
+    }
+
+    private Optional<SnapshotCache> getSnapshotCache() {
+        DescriptorImpl globalConfig = (DescriptorImpl) getDescriptor();
+        String snapshotCachePath = globalConfig.getSnapshotCachePath();
+        if (Strings.isNullOrEmpty(snapshotCachePath)) {
+            return Optional.absent();
+        }
+
+        long maxSizeBytes = globalConfig.getSnapshotCacheMaxSizeMb() * 1024L * 1024L;
+        return Optional.of(SnapshotCache.forDirectory(Paths.get(snapshotCachePath), maxSizeBytes));
+    }
+
+    private String computeCacheKey(FilePath buildWorkspace, SpoonBuild build, BuildListener listener) throws IOException, InterruptedException {
+        SnapshotCache.KeyBuilder keyBuilder = SnapshotCache.keyBuilder()
+                .put("vagrantBox", vagrantBox)
+                .putFile("xStudio", Paths.get(xStudioPath))
+                .put("installScriptStrategy", installScriptSettings.strategy.name())
+                .put("silentInstallArgs", installScriptSettings.silentInstallArgs)
+                .put("ignoreExitCode", installScriptSettings.ignoreExitCode)
+                .put("startupFileStrategy", startupFileSettings.getStrategy().name())
+                .put("startupFilePath", startupFileSettings.getStartupFilePath());
+
+        if (installScriptSettings.strategy == InstallScriptStrategy.FIXED) {
+            keyBuilder.putFile("installScript", Paths.get(installScriptSettings.installScriptPath));
         }
 
         if (preInstallScriptPath != null) {
-            environmentBuilder.preInstallScriptPath(preInstallScriptPath);
+            keyBuilder.putFile("preInstallScript", Paths.get(preInstallScriptPath));
         }
 
         if (postSnapshotScriptPath != null) {
-            environmentBuilder.postSnapshotScriptPath(postSnapshotScriptPath);
+            keyBuilder.putFile("postSnapshotScript", Paths.get(postSnapshotScriptPath));
         }
 
         if (resourceDirectoryPath != null) {
-            environmentBuilder.resourceDirectoryPath(resourceDirectoryPath);
+            keyBuilder.putDirectory("resources", Paths.get(resourceDirectoryPath));
         }
 
-        installScriptSettings.configure(environmentBuilder);
+        for (String installer : SnapshotFiles.listInstallers(buildWorkspace)) {
+            Path installerPath = Paths.get(installer);
+            keyBuilder.putFile("installer/" + installerPath.getFileName(), installerPath);
+        }
+
+        // dependencies without a tag are resolved, so a new release of a dependency invalidates the cached image
+        HubApi hubApi = HubApi.create(build, listener);
+        for (String dependency : dependencies) {
+            Image image = Image.parse(dependency);
+            if (image.tag == null) {
+                image = hubApi.getLatestVersion(image);
+            }
+            keyBuilder.put("dependency", image.printIdentifier());
+        }
+
+        for (String snapshotPathToDelete : snapshotPathsToDelete) {
+            keyBuilder.put("snapshotPathToDelete", snapshotPathToDelete);
+        }
 
-        return environmentBuilder.build();
+        return keyBuilder.build();
     }
 
-    private List<Path> getInstallerPaths(String buildWorkspace) {
-        File workspace = new File(buildWorkspace);
-        File[] workspaceFiles = workspace.listFiles();
-        checkState(workspaceFiles != null, "Failed to list files in %s directory", buildWorkspace);
+    private CommandDriver createCommandDriver(SpoonBuild build, Launcher launcher, BuildListener listener, FilePath pwd) {
+        return CommandDriver.builder()
+                .charset(build.getCharset())
+                .env(build.getEnv().get())
+                .pwd(pwd)
+                .launcher(launcher)
+                .listener(listener)
+                .metrics(build)
+                .build();
+    }
 
-        List<Path> installerPaths = new ArrayList<Path>();
-        for (File workspaceFile : workspaceFiles) {
-            final String extension = FileUtils.getExtension(workspaceFile.toPath());
-            if ("exe".equals(extension) || "msi".equals(extension)) {
-                installerPaths.add(workspaceFile.toPath());
-            }
+    private void importImage(CommandDriver commandDriver, SpoonBuild build, Path imagePath, Optional<Image> imageToUse) {
+        ImportCommand.CommandBuilder commandBuilder = ImportCommand.builder()
+                .type("svm")
+                .path(imagePath.toString())
+                .overwrite(overwrite);
+
+        if (imageToUse.isPresent()) {
+            commandBuilder.name(imageToUse.get().printIdentifier());
         }
 
-        return installerPaths;
+        ImportCommand command = commandBuilder.build();
+        command.run(commandDriver);
+
+        Optional<Image> outputImage = command.getOutputImage();
+        checkState(outputImage.isPresent(), "Failed to find imported image in command output");
+
+        build.setOutputImage(outputImage.get());
     }
 
-    private Optional<Image> loadImportImageName(String workspacePath) throws IOException {
-        Path imageFilePath = Paths.get(workspacePath, IMAGE_NAME_FILE);
-        if (imageFilePath.toFile().exists()) {
-            BufferedReader reader = Files.newBufferedReader(imageFilePath, Charset.defaultCharset());
-            try {
-                String imageName = reader.readLine();
-                return Optional.of(Image.parse(imageName));
-            } finally {
-                final boolean swallowException = true;
-                Closeables.close(reader, swallowException);
-            }
+    private VagrantEnvironment createVagrantEnvironment(FilePath workingDir, FilePath buildWorkspace) throws IOException, InterruptedException {
+        VagrantEnvironment.EnvironmentBuilder environmentBuilder = VagrantEnvironment.builder(Paths.get(workingDir.getRemote()))
+                .box(vagrantBox)
+                .xStudioPath(xStudioPath)
+                .vmResources(getVmResources());
+
+        String stagingStorePath = ((DescriptorImpl) getDescriptor()).getStagingStorePath();
+        if (!Strings.isNullOrEmpty(stagingStorePath)) {
+            environmentBuilder.stagingStorePath(stagingStorePath);
+        }
+
+        List<String> installerPaths = SnapshotFiles.listInstallers(buildWorkspace);
+        if (!installerPaths.isEmpty()) {
+            environmentBuilder.installerPaths(installerPaths);
+        }
+
+        if (preInstallScriptPath != null) {
+            environmentBuilder.preInstallScriptPath(preInstallScriptPath);
         }
-        return Optional.absent();
+
+        if (postSnapshotScriptPath != null) {
+            environmentBuilder.postSnapshotScriptPath(postSnapshotScriptPath);
+        }
+
+        if (resourceDirectoryPath != null) {
+            environmentBuilder.resourceDirectoryPath(resourceDirectoryPath);
+        }
+
+        installScriptSettings.configure(environmentBuilder);
+
+        return environmentBuilder.build(workingDir);
     }
 
     private class SnapshotTaker {
         private final SpoonBuild build;
         private final VagrantEnvironment vagrantEnv;
+        private final FilePath vagrantDir;
+        private final Optional<VagrantVmPool.PooledVm> pooledVm;
+        private final Optional<String> cacheKey;
+        private final PhaseTimelineAction timeline;
         private final BuildListener listener;
         private final ScheduledTasksApi scheduledTasksApi;
         private final CommandDriver commandDriver;
+        private boolean restored;
 
-        public SnapshotTaker(SpoonBuild build, VagrantEnvironment vagrantEnv, Launcher launcher, BuildListener listener) {
+        public SnapshotTaker(SpoonBuild build, VagrantEnvironment vagrantEnv, FilePath vagrantDir, Optional<VagrantVmPool.PooledVm> pooledVm,
+                             Optional<String> cacheKey, PhaseTimelineAction timeline, Launcher launcher, BuildListener listener) {
             checkArgument(build.getEnv().isPresent(), "build");
 
             this.build = build;
             this.vagrantEnv = vagrantEnv;
+            this.vagrantDir = vagrantDir;
+            this.pooledVm = pooledVm;
+            this.cacheKey = cacheKey;
+            this.timeline = timeline;
             this.listener = listener;
 
             EnvVars env = this.build.getEnv().get();
-            FilePath vagrantDir = new FilePath(vagrantEnv.workingDir.toFile());
-            this.commandDriver = CommandDriver.builder()
-                    .charset(this.build.getCharset())
-                    .env(env)
-                    .pwd(vagrantDir)
-                    .launcher(launcher)
-                    .listener(this.listener)
-                    .build();
+            this.commandDriver = createCommandDriver(build, launcher, listener, vagrantDir);
             final boolean quiet = false;
             this.scheduledTasksApi = new ScheduledTasksApi(env, vagrantDir, build.getCharset(), launcher, this.listener, quiet);
         }
 
         private void takeSnapshot() {
             try {
-                provisionVagrantVm();
-                executePostSnapshotScript();
-                removeFilesFromSnapshot();
-                buildImage();
-                importImage();
-            } catch (Throwable buildError) {
-                // do not swallow the initial build error
-                destroyVagrantVm(true);
-                throw new IllegalStateException("`vagrant up` failed with exception", buildError);
+                try {
+                    timeline.begin(SnapshotPhase.PROVISION);
+                    provisionVagrantVm();
+                    timeline.begin(SnapshotPhase.POST_SNAPSHOT_SCRIPT);
+                    executePostSnapshotScript();
+                    timeline.begin(SnapshotPhase.REMOVE_FILES);
+                    removeFilesFromSnapshot();
+                    timeline.begin(SnapshotPhase.BUILD_IMAGE);
+                    buildImage();
+                    timeline.begin(SnapshotPhase.IMPORT_IMAGE);
+                    importImage();
+                    timeline.begin(SnapshotPhase.CACHE_IMAGE);
+                    cacheImage();
+                } catch (Throwable buildError) {
+                    // do not swallow the initial build error
+                    timeline.begin(SnapshotPhase.RELEASE_VM);
+                    releaseVagrantVm(true);
+                    throw new IllegalStateException("`vagrant up` failed with exception", buildError);
+                }
+                timeline.begin(SnapshotPhase.RELEASE_VM);
+                releaseVagrantVm(false);
+            } finally {
+                timeline.end();
+                try {
+                    final boolean swallowException = true;
+                    Closeables.close(scheduledTasksApi, swallowException);
+                } catch (IOException ex) {
+                    // no-op
+                }
             }
-            destroyVagrantVm(false);
         }
 
-        private void pull(Image image) {
-            PullCommand command = PullCommand.builder().image(image.printIdentifier()).build();
-            command.run(commandDriver);
-        }
-
-        private void executePostSnapshotScript() {
+        private void executePostSnapshotScript() throws IOException, InterruptedException {
             Path postSnapshotScriptPath = vagrantEnv.getPostSnapshotScriptPath();
-            if (!postSnapshotScriptPath.toFile().exists()) {
+            if (!onNode(postSnapshotScriptPath).exists()) {
                 return;
             }
 
@@ -363,42 +570,15 @@ public class SnapshotBuilder extends BaseBuilder {
 
             log(listener, "Removing redundant files from snapshot...");
 
-            XapplEditor editor = new XapplEditor();
-            Path xapplPath = vagrantEnv.getXapplPath();
-            editor.load(xapplPath);
-
+            Set<String> removedPaths = SnapshotFiles.removeFromSnapshot(onNode(vagrantEnv.getOutputPath()), snapshotPathsToDelete);
             for (String path : snapshotPathsToDelete) {
-                if (editor.fileExists(path)) {
-                    editor.removeFile(path);
-                } else {
+                if (!removedPaths.contains(path)) {
                     log(listener, String.format("File %s was not found in the snapshot", path));
                 }
             }
-
-            editor.save(xapplPath);
-
-            String snapshotDir = vagrantEnv.getSnapshotPath().toString();
-            for (String relativePath : snapshotPathsToDelete) {
-                Path pathToRemove = Paths.get(snapshotDir, relativePath);
-                try {
-                    File fileToRemove = pathToRemove.toFile();
-                    if (!fileToRemove.exists()) {
-                        continue;
-                    }
-
-                    if (fileToRemove.isDirectory()) {
-                        FileUtils.deleteDirectoryTree(pathToRemove);
-                    } else {
-                        Files.delete(pathToRemove);
-                    }
-                } catch (Throwable th) {
-                    String errorMsg = String.format("Failed to remove %s from snapshot", pathToRemove);
-                    throw new IllegalStateException(errorMsg, th);
-                }
-            }
         }
 
-        private void buildImage() {
+        private void buildImage() throws InterruptedException {
             BuildCommand.CommandBuilder commandBuilder = BuildCommand.builder(xStudioPath)
                     .xapplPath(vagrantEnv.getXapplPath().toString())
                     .imagePath(vagrantEnv.getImagePath().toString());
@@ -412,15 +592,9 @@ public class SnapshotBuilder extends BaseBuilder {
                 commandBuilder.startupFilePath(startupFile.get());
             }
 
-            HubApi hubApi = HubApi.create(build, listener);
-            for (String dependency : dependencies) {
-                Image buildDependency = Image.parse(dependency);
-                Image dependencyToUse = buildDependency.tag == null ?
-                        hubApi.getLatestVersion(buildDependency) : buildDependency;
-
-                pull(dependencyToUse);
-
-                commandBuilder.dependency(dependencyToUse.printIdentifier());
+            DependencyResolver dependencyResolver = new DependencyResolver(HubApi.create(build, listener), commandDriver, listener);
+            for (Image dependency : dependencyResolver.resolveAndPull(dependencies)) {
+                commandBuilder.dependency(dependency.printIdentifier());
             }
 
             BuildCommand command = commandBuilder.build();
@@ -428,41 +602,73 @@ public class SnapshotBuilder extends BaseBuilder {
         }
 
         private void importImage() {
-            ImportCommand.CommandBuilder commandBuilder = ImportCommand.builder()
-                    .type("svm")
-                    .path(vagrantEnv.getImagePath().toString())
-                    .overwrite(overwrite);
+            SnapshotBuilder.this.importImage(commandDriver, build, vagrantEnv.getImagePath(), getOutputImage());
+        }
 
-            Optional<Image> imageToUse = getOutputImage();
-            if (imageToUse.isPresent()) {
-                commandBuilder.name(imageToUse.get().printIdentifier());
+        private void cacheImage() {
+            if (!cacheKey.isPresent()) {
+                return;
             }
 
-            ImportCommand command = commandBuilder.build();
-            command.run(commandDriver);
-
-            Optional<Image> outputImage = command.getOutputImage();
-            checkState(outputImage.isPresent(), "Failed to find imported image in command output");
+            Optional<SnapshotCache> snapshotCache = getSnapshotCache();
+            if (!snapshotCache.isPresent()) {
+                return;
+            }
 
-            build.setOutputImage(outputImage.get());
+            try {
+                // only the name extracted during installation is cached, the workspace name may change between builds
+                Optional<Image> installedImageName = SnapshotFiles.loadImageName(vagrantDir);
+                snapshotCache.get().store(cacheKey.get(), vagrantEnv.getImagePath(), installedImageName);
+            } catch (Throwable th) {
+                log(listener, "Failed to store the image in the snapshot cache", th);
+            }
         }
 
         private Optional<Image> getOutputImage() {
             // load image name from Vagrant working directory, because some snapshot projects extract product version after installation completed
             // otherwise use image name specified during build setup
-            String vagrantWorkingDirPath = vagrantEnv.workingDir.toString();
             try {
-                Optional<Image> imageNameOpt = loadImportImageName(vagrantWorkingDirPath);
+                Optional<Image> imageNameOpt = SnapshotFiles.loadImageName(vagrantDir);
                 return imageNameOpt.or(importAsImage);
             } catch (Throwable th) {
-                String errMsg = String.format("Failed to load image name from %s", Paths.get(vagrantWorkingDirPath, IMAGE_NAME_FILE).toString());
+                String errMsg = String.format("Failed to load image name from %s", Paths.get(vagrantDir.getRemote(), SnapshotFiles.IMAGE_NAME_FILE).toString());
                 log(listener, errMsg, th);
                 return importAsImage;
             }
         }
 
+        private FilePath onNode(Path path) {
+            return new FilePath(vagrantDir.getChannel(), path.toString());
+        }
+
         private void provisionVagrantVm() throws IOException, InterruptedException {
-            scheduledTasksApi.run(build.getProject().getName() + " - vagrant up", "vagrant up");
+            if (!pooledVm.isPresent()) {
+                scheduledTasksApi.run(build.getProject().getName() + " - vagrant up", "vagrant up");
+                return;
+            }
+
+            VagrantVmPool.PooledVm vm = pooledVm.get();
+            if (!vm.isCheckpointed()) {
+                scheduledTasksApi.run(build.getProject().getName() + " - vagrant up", "vagrant up --no-provision");
+                scheduledTasksApi.run(build.getProject().getName() + " - vagrant snapshot save", "vagrant snapshot save " + VagrantVmPool.CLEAN_CHECKPOINT);
+                vm.markCheckpointed();
+            }
+            scheduledTasksApi.run(build.getProject().getName() + " - vagrant provision", "vagrant provision");
+        }
+
+        private void releaseVagrantVm(boolean swallowException) {
+            if (pooledVm.isPresent() && pooledVm.get().isCheckpointed()) {
+                try {
+                    scheduledTasksApi.run(build.getProject().getName() + " - vagrant snapshot restore",
+                            "vagrant snapshot restore --no-provision " + VagrantVmPool.CLEAN_CHECKPOINT);
+                    restored = true;
+                    return;
+                } catch (Throwable th) {
+                    log(listener, "`vagrant snapshot restore` failed with exception. The virtual machine will be destroyed.", th);
+                }
+            }
+
+            destroyVagrantVm(swallowException);
         }
 
         private void destroyVagrantVm(boolean swallowException) {
@@ -580,6 +786,12 @@ public class SnapshotBuilder extends BaseBuilder {
     @Extension
     public static final class DescriptorImpl extends BuildStepDescriptor<Builder> {
         public static final String DEFAULT_VAGRANT_BOX = "opentable/win-2012r2-standard-amd64-nocm";
+        public static final int DEFAULT_VM_POOL_MAX_VMS = 2;
+        public static final int DEFAULT_VM_POOL_IDLE_MINUTES = 60;
+        public static final int DEFAULT_SNAPSHOT_CACHE_MAX_SIZE_MB = 50 * 1024;
+        public static final int DEFAULT_VM_MEMORY_MB = VmResources.DEFAULT_MEMORY_MB;
+        public static final int DEFAULT_VM_CPUS = VmResources.DEFAULT_CPUS;
+        public static final int DEFAULT_VM_DISK_GB = VmResources.DEFAULT_DISK_GB;
         private static final Validator<File> HOST_FILE_PATH_VALIDATOR;
         private static final Validator<File> HOST_DIR_PATH_VALIDATOR;
         private static final Validator<String> VAGRANT_DEFAULT_BOX_VALIDATOR;
@@ -588,6 +800,7 @@ public class SnapshotBuilder extends BaseBuilder {
         private static final Validator<String> SILENT_INSTALL_ARGS_VALIDATOR;
         private static final Validator<String> VIRTUAL_PATHS_TO_DELETE_VALIDATOR;
         private static final Validator<String> DEPENDENCY_VALIDATOR;
+        private static final Validator<String> NON_NEGATIVE_INTEGER_VALIDATOR;
 
         private static final Pattern SPLIT_DEPENDENCIES_PATTERN = Pattern.compile("/s+|,|;");
 
@@ -613,6 +826,9 @@ public class SnapshotBuilder extends BaseBuilder {
             SILENT_INSTALL_ARGS_VALIDATOR = StringValidators.isNotNull(String.format(IGNORE_PARAMETER, "Parameter"), Level.OK);
             VIRTUAL_PATHS_TO_DELETE_VALIDATOR = new VirtualPathsToDeleteValidator();
             DEPENDENCY_VALIDATOR = StringValidators.isNotNull(String.format(IGNORE_PARAMETER, "Parameter"), Level.OK);
+            NON_NEGATIVE_INTEGER_VALIDATOR = Validators.chain(
+                    StringValidators.isNotNull(String.format(REQUIRE_NON_EMPTY_STRING_S, "Parameter"), Level.ERROR),
+                    StringValidators.isInteger("Parameter should be an integer"));
         }
 
         private String xStudioPath;
@@ -621,10 +837,29 @@ public class SnapshotBuilder extends BaseBuilder {
 
         private String vagrantBox;
 
+        private String stagingStorePath;
+
+        private int vmPoolSize;
+
+        private String snapshotCachePath;
+
+        private int snapshotCacheMaxSizeMb = DEFAULT_SNAPSHOT_CACHE_MAX_SIZE_MB;
+
+        private int vmPoolMaxVms = DEFAULT_VM_POOL_MAX_VMS;
+
+        private int vmPoolIdleMinutes = DEFAULT_VM_POOL_IDLE_MINUTES;
+
+        private int vmMemoryMb = DEFAULT_VM_MEMORY_MB;
+
+        private int vmCpus = DEFAULT_VM_CPUS;
+
+        private int vmDiskGb = DEFAULT_VM_DISK_GB;
+
         public DescriptorImpl() {
             super(SnapshotBuilder.class);
 
             this.load();
+            this.configureVmPool();
         }
 
         @Override
@@ -633,8 +868,18 @@ public class SnapshotBuilder extends BaseBuilder {
             xStudioPath = jsonWrapper.getString("xStudioPath").orNull();
             xStudioLicensePath = jsonWrapper.getString("xStudioLicensePath").orNull();
             vagrantBox = jsonWrapper.getString("vagrantBox").or(DEFAULT_VAGRANT_BOX);
+            stagingStorePath = jsonWrapper.getString("stagingStorePath").orNull();
+            vmPoolSize = parseNonNegativeInteger(jsonWrapper.getString("vmPoolSize").orNull(), 0);
+            vmPoolMaxVms = parseNonNegativeInteger(jsonWrapper.getString("vmPoolMaxVms").orNull(), DEFAULT_VM_POOL_MAX_VMS);
+            vmPoolIdleMinutes = parseNonNegativeInteger(jsonWrapper.getString("vmPoolIdleMinutes").orNull(), DEFAULT_VM_POOL_IDLE_MINUTES);
+            snapshotCachePath = jsonWrapper.getString("snapshotCachePath").orNull();
+            snapshotCacheMaxSizeMb = parseNonNegativeInteger(jsonWrapper.getString("snapshotCacheMaxSizeMb").orNull(), DEFAULT_SNAPSHOT_CACHE_MAX_SIZE_MB);
+            vmMemoryMb = parseNonNegativeInteger(jsonWrapper.getString("vmMemoryMb").orNull(), DEFAULT_VM_MEMORY_MB);
+            vmCpus = parseNonNegativeInteger(jsonWrapper.getString("vmCpus").orNull(), DEFAULT_VM_CPUS);
+            vmDiskGb = parseNonNegativeInteger(jsonWrapper.getString("vmDiskGb").orNull(), DEFAULT_VM_DISK_GB);
 
             save();
+            configureVmPool();
 
             return super.configure(req, json);
         }
@@ -647,6 +892,46 @@ public class SnapshotBuilder extends BaseBuilder {
             return xStudioLicensePath;
         }
 
+        public String getStagingStorePath() {
+            return stagingStorePath;
+        }
+
+        public int getVmPoolSize() {
+            return vmPoolSize;
+        }
+
+        public int getVmPoolMaxVms() {
+            return vmPoolMaxVms;
+        }
+
+        public int getVmPoolIdleMinutes() {
+            return vmPoolIdleMinutes;
+        }
+
+        public String getSnapshotCachePath() {
+            return snapshotCachePath;
+        }
+
+        public int getSnapshotCacheMaxSizeMb() {
+            return snapshotCacheMaxSizeMb;
+        }
+
+        public int getVmMemoryMb() {
+            return vmMemoryMb;
+        }
+
+        public int getVmCpus() {
+            return vmCpus;
+        }
+
+        public int getVmDiskGb() {
+            return vmDiskGb;
+        }
+
+        public VmResources getVmResources() {
+            return new VmResources(vmMemoryMb, vmCpus, vmDiskGb);
+        }
+
         @Override
         public SnapshotBuilder newInstance(StaplerRequest req, JSONObject json)
                 throws FormException {
@@ -755,6 +1040,11 @@ public class SnapshotBuilder extends BaseBuilder {
             return Validators.validate(DEPENDENCY_VALIDATOR, dependencies);
         }
 
+        public FormValidation doCheckNonNegativeInteger(@QueryParameter String value) {
+            String number = Util.fixEmptyAndTrim(value);
+            return Validators.validate(NON_NEGATIVE_INTEGER_VALIDATOR, number);
+        }
+
         public String defaultSilentInstallArgs() {
             return "/S";
         }
@@ -775,6 +1065,23 @@ public class SnapshotBuilder extends BaseBuilder {
             return TypeToken.of(SpoonProject.class).isAssignableFrom(aClass);
         }
 
+        private void configureVmPool() {
+            VagrantVmPool.getInstance().configure(vmPoolSize, vmPoolMaxVms, TimeUnit.MINUTES.toMillis(vmPoolIdleMinutes));
+        }
+
+        private static int parseNonNegativeInteger(@Nullable String value, int defaultValue) {
+            String valueToUse = Util.fixEmptyAndTrim(value);
+            if (valueToUse == null) {
+                return defaultValue;
+            }
+
+            try {
+                return Math.max(Integer.parseInt(valueToUse), 0);
+            } catch (NumberFormatException ex) {
+                return defaultValue;
+            }
+        }
+
         @Override
         public String getDisplayName() {
             return "Take Studio snapshot";
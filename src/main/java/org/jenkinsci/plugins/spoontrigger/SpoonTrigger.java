@@ -48,6 +48,19 @@ public class SpoonTrigger extends Trigger<AbstractProject<?, ?>> {
     @Override
     public void start(AbstractProject<?, ?> project, boolean newInstance) {
         super.start(project, newInstance);
+
+        SpoonTriggerIndex.register(this);
+    }
+
+    @Override
+    public void stop() {
+        SpoonTriggerIndex.unregister(this);
+
+        super.stop();
+    }
+
+    AbstractProject<?, ?> getJob() {
+        return super.job;
     }
 
     private static final class ScheduledBuild implements Runnable {
@@ -0,0 +1,153 @@
+package org.jenkinsci.plugins.spoontrigger;
+
+import com.google.common.base.Strings;
+import hudson.Extension;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
+import jenkins.model.Jenkins;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.logging.Logger;
+
+/**
+ * Maps normalized repository URLs to the triggers listening for pushes to them.
+ * <p>
+ * Triggers register themselves when started and unregister when stopped. The index is rebuilt after all items are
+ * loaded to recover from reloads of the configuration. Updates are serialized, so a repository URL is removed from
+ * the index together with its last trigger, while lookups do not block.
+ */
+public final class SpoonTriggerIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(SpoonTriggerIndex.class.getName());
+
+    private static final ConcurrentMap<String, Set<SpoonTrigger>> TRIGGERS = new ConcurrentHashMap<String, Set<SpoonTrigger>>();
+
+    private SpoonTriggerIndex() {
+    }
+
+    static synchronized void register(SpoonTrigger trigger) {
+        String key = normalize(trigger.repositoryUrl);
+        if (key == null) {
+            return;
+        }
+
+        Set<SpoonTrigger> triggers = TRIGGERS.get(key);
+        if (triggers == null) {
+            triggers = new CopyOnWriteArraySet<SpoonTrigger>();
+            TRIGGERS.put(key, triggers);
+        }
+        triggers.add(trigger);
+    }
+
+    static synchronized void unregister(SpoonTrigger trigger) {
+        String key = normalize(trigger.repositoryUrl);
+        if (key == null) {
+            return;
+        }
+
+        Set<SpoonTrigger> triggers = TRIGGERS.get(key);
+        if (triggers != null) {
+            triggers.remove(trigger);
+            if (triggers.isEmpty()) {
+                TRIGGERS.remove(key);
+            }
+        }
+    }
+
+    static Set<SpoonTrigger> lookup(String repositoryUrl) {
+        String key = normalize(repositoryUrl);
+        if (key == null) {
+            return Collections.emptySet();
+        }
+
+        Set<SpoonTrigger> triggers = TRIGGERS.get(key);
+        if (triggers == null) {
+            return Collections.emptySet();
+        }
+        return triggers;
+    }
+
+    static Set<String> getRepositoryUrls() {
+        return Collections.unmodifiableSet(TRIGGERS.keySet());
+    }
+
+    /**
+     * Repository URLs are compared ignoring case, trailing slashes and the <code>.git</code> suffix.
+     */
+    @Nullable
+    static String normalize(@Nullable String repositoryUrl) {
+        if (Strings.isNullOrEmpty(repositoryUrl)) {
+            return null;
+        }
+
+        String url = repositoryUrl.trim().toLowerCase(Locale.ROOT);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            if (url.endsWith("/")) {
+                url = url.substring(0, url.length() - 1);
+                changed = true;
+            }
+            if (url.endsWith(".git")) {
+                url = url.substring(0, url.length() - ".git".length());
+                changed = true;
+            }
+        }
+        return url.isEmpty() ? null : url;
+    }
+
+    private static synchronized void rebuild(Jenkins server) {
+        TRIGGERS.clear();
+
+        int count = 0;
+        for (AbstractProject<?, ?> project : server.getAllItems(AbstractProject.class)) {
+            SpoonTrigger trigger = project.getTrigger(SpoonTrigger.class);
+            if (trigger != null) {
+                register(trigger);
+                ++count;
+            }
+        }
+        LOGGER.fine(String.format("Indexed %d Turbo triggers", count));
+    }
+
+    private static synchronized void remove(Item item) {
+        Iterator<Map.Entry<String, Set<SpoonTrigger>>> entries = TRIGGERS.entrySet().iterator();
+        while (entries.hasNext()) {
+            Set<SpoonTrigger> triggers = entries.next().getValue();
+            for (SpoonTrigger trigger : triggers) {
+                if (trigger.getJob() == item) {
+                    triggers.remove(trigger);
+                }
+            }
+            if (triggers.isEmpty()) {
+                entries.remove();
+            }
+        }
+    }
+
+    @Extension
+    public static final class ItemListenerImpl extends ItemListener {
+
+        @Override
+        public void onLoaded() {
+            Jenkins server = Jenkins.getInstance();
+            if (server != null) {
+                rebuild(server);
+            }
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            remove(item);
+        }
+    }
+}
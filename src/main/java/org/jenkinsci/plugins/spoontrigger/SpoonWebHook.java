@@ -1,12 +1,7 @@
 package org.jenkinsci.plugins.spoontrigger;
 
-import com.google.common.base.Function;
-import com.google.common.base.Predicates;
 import com.google.common.base.Strings;
-import com.google.common.collect.FluentIterable;
 import hudson.Extension;
-import hudson.Util;
-import hudson.model.AbstractProject;
 import hudson.model.RootAction;
 import hudson.model.UnprotectedRootAction;
 import jenkins.model.Jenkins;
@@ -14,7 +9,6 @@ import net.sf.json.JSONException;
 import net.sf.json.JSONObject;
 import org.jenkinsci.main.modules.instance_identity.InstanceIdentity;
 import org.jenkinsci.plugins.spoontrigger.git.PushCause;
-import org.jenkinsci.plugins.spoontrigger.git.Repository;
 import org.jenkinsci.plugins.spoontrigger.utils.Identity;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
@@ -22,6 +16,7 @@ import org.kohsuke.stapler.interceptor.RequirePOST;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
+import java.io.IOException;
 import java.util.Locale;
 
 import static com.google.common.base.Preconditions.checkState;
@@ -30,9 +25,10 @@ import static com.google.common.base.Preconditions.checkState;
 public class SpoonWebHook implements UnprotectedRootAction {
 
     public static final int HTTP_OK = 200;
+    public static final int HTTP_ACCEPTED = 202;
+    public static final int HTTP_SERVICE_UNAVAILABLE = 503;
 
     private static final String URL_NAME = "turbo-webhook";
-    private static final Function<AbstractProject, SpoonTrigger> GET_SPOON_TRIGGER = new GetSpoonTrigger();
 
     static final String URL_VALIDATION_HEADER = "X-Jenkins-Validation";
     static final String X_INSTANCE_IDENTITY = "X-Instance-Identity";
@@ -81,7 +77,7 @@ public class SpoonWebHook implements UnprotectedRootAction {
                 break;
             case PUSH:
                 PushCause cause = createCause(payload);
-                this.triggerBuilds(Jenkins.getInstance(), cause);
+                response.setStatus(enqueue(PushEventQueue.getInstance(), cause));
                 break;
             case UNKNOWN:
                 String msg = String.format("Turbo WebHook event type (%s) is not supported. Only push and support events are supported", eventName);
@@ -89,21 +85,14 @@ public class SpoonWebHook implements UnprotectedRootAction {
         }
     }
 
-    void triggerBuilds(Jenkins server, PushCause cause) {
-        for (SpoonTrigger trigger : getAllTriggers(server)) {
-            if(shouldRun(trigger, cause)) {
-                trigger.run(cause);
-            }
-        }
-    }
+    public void doMetrics(StaplerRequest request, StaplerResponse response) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
 
-    private static Iterable<SpoonTrigger> getAllTriggers(Jenkins server) {
-        return FluentIterable.from(server.getAllItems(AbstractProject.class))
-                .transform(GET_SPOON_TRIGGER)
-                .filter(Predicates.notNull());
+        response.setContentType("application/json;charset=UTF-8");
+        response.getWriter().print(PushEventQueue.getInstance().getMetrics().toString());
     }
 
-    private static PushCause createCause(String payload) throws IllegalStateException {
+    static PushCause createCause(String payload) throws IllegalStateException {
         try {
             JSONObject json = JSONObject.fromObject(payload);
             String repository = json.getJSONObject("repository").getString("url");
@@ -116,10 +105,11 @@ public class SpoonWebHook implements UnprotectedRootAction {
         }
     }
 
-    private static boolean shouldRun(SpoonTrigger trigger, PushCause cause) {
-        String triggerRepo = Util.fixNull(trigger.repositoryUrl);
-        Repository causeRepo = cause.repository;
-        return triggerRepo.equalsIgnoreCase(causeRepo.url);
+    /**
+     * @return status of the response, {@link #HTTP_SERVICE_UNAVAILABLE} if the queue did not accept the event
+     */
+    static int enqueue(PushEventQueue queue, PushCause cause) {
+        return queue.offer(cause) ? HTTP_ACCEPTED : HTTP_SERVICE_UNAVAILABLE;
     }
 
     private static boolean isJenkinsValidation(StaplerRequest request) {
@@ -152,15 +142,4 @@ public class SpoonWebHook implements UnprotectedRootAction {
             }
         }
     }
-
-    private static final class GetSpoonTrigger implements Function<AbstractProject, SpoonTrigger> {
-        @Nullable
-        @Override
-        public SpoonTrigger apply(@Nullable AbstractProject project) {
-            if(project == null) {
-                return null;
-            }
-            return (SpoonTrigger) project.getTrigger(SpoonTrigger.class);
-        }
-    }
 }
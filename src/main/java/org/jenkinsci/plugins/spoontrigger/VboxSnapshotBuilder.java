@@ -17,6 +17,8 @@ import net.sf.json.JSONObject;
 import org.jenkinsci.plugins.spoontrigger.commands.CommandDriver;
 import org.jenkinsci.plugins.spoontrigger.commands.turbo.ImportCommand;
 import org.jenkinsci.plugins.spoontrigger.hub.Image;
+import org.jenkinsci.plugins.spoontrigger.vagrant.VmAdmissionController;
+import org.jenkinsci.plugins.spoontrigger.vagrant.VmResources;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.StaplerRequest;
 import org.w3c.dom.Document;
@@ -97,6 +99,7 @@ public class VboxSnapshotBuilder extends BaseBuilder {
                 .pwd(build.getWorkspace())
                 .launcher(launcher)
                 .listener(listener)
+                .metrics(build)
                 .build();
 
         ArgumentListBuilder vboxSnapshotCommand = generateBuildCommand();
@@ -138,7 +141,13 @@ public class VboxSnapshotBuilder extends BaseBuilder {
     }
 
     private int takeVboxSnapshot(SpoonBuild build, Launcher launcher, BuildListener listener, ArgumentListBuilder vboxSnapshotCommand) throws IOException, InterruptedException {
-        return runCmdCommand(build, launcher, listener, vboxSnapshotCommand, listener.getLogger());
+        // the VM is created by the build script, which uses the default size
+        VmAdmissionController.Reservation reservation = VmAdmissionController.getInstance().reserve(build, VmResources.DEFAULT, listener);
+        try {
+            return runCmdCommand(build, launcher, listener, vboxSnapshotCommand, listener.getLogger());
+        } finally {
+            VmAdmissionController.getInstance().release(reservation);
+        }
     }
 
     private static int runCmdCommand(SpoonBuild build, Launcher launcher, BuildListener listener, ArgumentListBuilder argumentList, OutputStream outputStream) throws IOException, InterruptedException {
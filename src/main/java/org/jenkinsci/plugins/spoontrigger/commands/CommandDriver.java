@@ -3,6 +3,7 @@ package org.jenkinsci.plugins.spoontrigger.commands;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.util.ArgumentListBuilder;
 import org.jenkinsci.plugins.spoontrigger.SpoonBuild;
@@ -11,6 +12,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
@@ -25,6 +27,7 @@ public final class CommandDriver {
     private TaskListener listener;
     private Launcher launcher;
     private boolean ignoreErrorCode = false;
+    private CommandMetricsAction buildMetrics;
 
     private Charset charset;
 
@@ -40,7 +43,8 @@ public final class CommandDriver {
         return new DriverBuilder()
                 .charset(build.getCharset())
                 .env(build.getEnv().get())
-                .pwd(build.getWorkspace());
+                .pwd(build.getWorkspace())
+                .metrics(build);
     }
 
     /**
@@ -52,7 +56,25 @@ public final class CommandDriver {
         return new DriverBuilder()
                 .charset(build.getCharset())
                 .env(build.getEnv().get())
-                .pwd(build.getScript().get().getParent());
+                .pwd(build.getScript().get().getParent())
+                .metrics(build);
+    }
+
+    /**
+     * @return driver launching commands in the same environment, which writes their output to the listener
+     */
+    public CommandDriver withListener(TaskListener listener) {
+        checkArgument(listener != null, "listener must be not null");
+
+        CommandDriver copy = new CommandDriver();
+        copy.env = this.env;
+        copy.pwd = this.pwd;
+        copy.listener = listener;
+        copy.launcher = this.launcher;
+        copy.ignoreErrorCode = this.ignoreErrorCode;
+        copy.buildMetrics = this.buildMetrics;
+        copy.charset = this.charset;
+        return copy;
     }
 
     int launch(ArgumentListBuilder argumentList) throws IllegalStateException {
@@ -60,13 +82,18 @@ public final class CommandDriver {
     }
 
     int launch(ArgumentListBuilder argumentList, OutputStream out) throws IllegalStateException {
-        int errorCode;
+        MeteredOutputStream meteredOut = new MeteredOutputStream(out);
+        long startNanos = System.nanoTime();
+        int errorCode = CommandSample.LAUNCH_FAILED;
         try {
-            errorCode = this.createLauncher().cmds(argumentList).stdout(out).join();
+            errorCode = this.createLauncher().cmds(argumentList).stdout(meteredOut).join();
         } catch (IOException ex) {
             throw onLaunchFailure(argumentList, ex);
         } catch (InterruptedException ex) {
             throw onLaunchFailure(argumentList, ex);
+        } finally {
+            long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            record(new CommandSample(CommandSample.typeOf(argumentList), durationMillis, meteredOut.getBytes(), meteredOut.getLines(), errorCode));
         }
 
         if (!ignoreErrorCode && errorCode != NO_ERROR) {
@@ -81,6 +108,17 @@ public final class CommandDriver {
         return this.listener.getLogger();
     }
 
+    private void record(CommandSample sample) {
+        if (this.buildMetrics != null) {
+            this.buildMetrics.record(sample);
+        }
+
+        CommandMetrics controllerMetrics = CommandMetrics.getInstance();
+        if (controllerMetrics != null) {
+            controllerMetrics.record(sample);
+        }
+    }
+
     private IllegalStateException onLaunchFailure(ArgumentListBuilder args, Exception ex) {
         String errMsg = String.format("Execution of command (%s) failed", args);
         return new IllegalStateException(errMsg, ex);
@@ -123,6 +161,14 @@ public final class CommandDriver {
             return this;
         }
 
+        /**
+         * Records statistics of launched commands in the build.
+         */
+        public DriverBuilder metrics(Run<?, ?> build) {
+            this.client.buildMetrics = CommandMetricsAction.getOrCreate(build);
+            return this;
+        }
+
         public DriverBuilder ignoreErrorCode(boolean ignoreErrorCode) {
             this.client.ignoreErrorCode = ignoreErrorCode;
             return this;
@@ -0,0 +1,71 @@
+package org.jenkinsci.plugins.spoontrigger.commands;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import jenkins.model.Jenkins;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Statistics of all commands launched by {@link CommandDriver} since the controller was started, grouped by the
+ * command type. Exposed on the <i>Manage Jenkins</i> page.
+ */
+@Extension
+public final class CommandMetrics extends ManagementLink {
+
+    private static final String URL_NAME = "turbo-command-metrics";
+
+    private final Map<String, CommandStatistics> statistics = new TreeMap<String, CommandStatistics>();
+
+    public static CommandMetrics getInstance() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return null;
+        }
+        return jenkins.getExtensionList(ManagementLink.class).get(CommandMetrics.class);
+    }
+
+    public synchronized void record(CommandSample sample) {
+        getOrCreate(statistics, sample.type).record(sample);
+    }
+
+    public synchronized List<CommandStatistics> getStatistics() {
+        return new ArrayList<CommandStatistics>(statistics.values());
+    }
+
+    public String[] getBucketLabels() {
+        return CommandStatistics.getBucketLabels();
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "graph.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Turbo Command Metrics";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Duration, output size and exit codes of turbo, xStudio, Vagrant and PowerShell commands run by builds.";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    static CommandStatistics getOrCreate(Map<String, CommandStatistics> statistics, String type) {
+        CommandStatistics typeStatistics = statistics.get(type);
+        if (typeStatistics == null) {
+            typeStatistics = new CommandStatistics(type);
+            statistics.put(type, typeStatistics);
+        }
+        return typeStatistics;
+    }
+}
@@ -0,0 +1,80 @@
+package org.jenkinsci.plugins.spoontrigger.commands;
+
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Statistics of commands launched by a single build, persisted with the build.
+ */
+public final class CommandMetricsAction implements RunAction2 {
+
+    private static final String URL_NAME = "commandMetrics";
+
+    private final Map<String, CommandStatistics> statistics = new TreeMap<String, CommandStatistics>();
+    private transient Run<?, ?> owner;
+
+    /**
+     * Builders of the same build may create command drivers from several threads, e.g. while pushing to many hubs
+     * in parallel, so the action is attached under a lock.
+     */
+    public static CommandMetricsAction getOrCreate(Run<?, ?> build) {
+        synchronized (CommandMetricsAction.class) {
+            CommandMetricsAction action = build.getAction(CommandMetricsAction.class);
+            if (action == null) {
+                action = new CommandMetricsAction();
+                build.addAction(action);
+            }
+            return action;
+        }
+    }
+
+    public synchronized void record(CommandSample sample) {
+        CommandMetrics.getOrCreate(statistics, sample.type).record(sample);
+    }
+
+    public synchronized List<CommandStatistics> getStatistics() {
+        return new ArrayList<CommandStatistics>(statistics.values());
+    }
+
+    public synchronized long getTotalMillis() {
+        long totalMillis = 0;
+        for (CommandStatistics typeStatistics : statistics.values()) {
+            totalMillis += typeStatistics.getTotalMillis();
+        }
+        return totalMillis;
+    }
+
+    public Run<?, ?> getOwner() {
+        return owner;
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> run) {
+        this.owner = run;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> run) {
+        this.owner = run;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "clock.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Command Metrics";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+}
@@ -0,0 +1,70 @@
+package org.jenkinsci.plugins.spoontrigger.commands;
+
+import hudson.util.ArgumentListBuilder;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.jenkinsci.plugins.spoontrigger.commands.BaseCommand.SPOON_CLIENT;
+import static org.jenkinsci.plugins.spoontrigger.commands.BaseCommand.VAGRANT_CLIENT;
+
+/**
+ * Measurements of a single command launched by {@link CommandDriver}.
+ */
+public final class CommandSample {
+
+    /**
+     * Exit code recorded for processes which could not be started or were interrupted.
+     */
+    public static final int LAUNCH_FAILED = -1;
+
+    private static final String UNKNOWN_TYPE = "unknown";
+
+    public final String type;
+    public final long durationMillis;
+    public final long stdoutBytes;
+    public final long stdoutLines;
+    public final int exitCode;
+
+    public CommandSample(String type, long durationMillis, long stdoutBytes, long stdoutLines, int exitCode) {
+        this.type = type;
+        this.durationMillis = durationMillis;
+        this.stdoutBytes = stdoutBytes;
+        this.stdoutLines = stdoutLines;
+        this.exitCode = exitCode;
+    }
+
+    /**
+     * Groups commands by the executable and, for turbo and vagrant, by the subcommand, e.g. <code>turbo push</code>
+     * or <code>vagrant up</code>. Arguments which vary between builds are never part of the type.
+     */
+    public static String typeOf(ArgumentListBuilder argumentList) {
+        List<String> args = argumentList.toList();
+        if (args.isEmpty()) {
+            return UNKNOWN_TYPE;
+        }
+
+        String executable = getExecutableName(args.get(0));
+        if ((SPOON_CLIENT.equals(executable) || VAGRANT_CLIENT.equals(executable)) && args.size() > 1) {
+            String subcommand = args.get(1);
+            if (!subcommand.startsWith("-")) {
+                return executable + " " + subcommand.toLowerCase(Locale.ROOT);
+            }
+        }
+        return executable;
+    }
+
+    private static String getExecutableName(String path) {
+        String name = path;
+        int separator = Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\'));
+        if (separator >= 0) {
+            name = name.substring(separator + 1);
+        }
+
+        name = name.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".exe")) {
+            name = name.substring(0, name.length() - ".exe".length());
+        }
+        return name.isEmpty() ? UNKNOWN_TYPE : name;
+    }
+}
@@ -0,0 +1,98 @@
+package org.jenkinsci.plugins.spoontrigger.commands;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregated measurements of commands of a single type, with a histogram of durations.
+ */
+public final class CommandStatistics {
+
+    /**
+     * Upper bounds of the duration histogram buckets. The last bucket holds all longer commands.
+     */
+    private static final long[] BUCKET_BOUNDS_MILLIS = {
+            TimeUnit.SECONDS.toMillis(1),
+            TimeUnit.SECONDS.toMillis(10),
+            TimeUnit.MINUTES.toMillis(1),
+            TimeUnit.MINUTES.toMillis(5),
+            TimeUnit.MINUTES.toMillis(15),
+            TimeUnit.HOURS.toMillis(1)
+    };
+
+    private static final String[] BUCKET_LABELS = {"< 1 s", "< 10 s", "< 1 min", "< 5 min", "< 15 min", "< 1 h", ">= 1 h"};
+
+    private final String type;
+    private long count;
+    private long failures;
+    private long totalMillis;
+    private long maxMillis;
+    private long stdoutBytes;
+    private long stdoutLines;
+    private long[] durationBuckets;
+
+    public CommandStatistics(String type) {
+        this.type = type;
+        this.durationBuckets = new long[BUCKET_BOUNDS_MILLIS.length + 1];
+    }
+
+    public static String[] getBucketLabels() {
+        return BUCKET_LABELS.clone();
+    }
+
+    public synchronized void record(CommandSample sample) {
+        ++count;
+        if (sample.exitCode != 0) {
+            ++failures;
+        }
+        totalMillis += sample.durationMillis;
+        maxMillis = Math.max(maxMillis, sample.durationMillis);
+        stdoutBytes += sample.stdoutBytes;
+        stdoutLines += sample.stdoutLines;
+        ++durationBuckets[getBucket(sample.durationMillis)];
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    public synchronized long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public synchronized long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public synchronized long getAverageMillis() {
+        return count == 0 ? 0 : totalMillis / count;
+    }
+
+    public synchronized long getStdoutBytes() {
+        return stdoutBytes;
+    }
+
+    public synchronized long getStdoutLines() {
+        return stdoutLines;
+    }
+
+    public synchronized long[] getDurationBuckets() {
+        return durationBuckets.clone();
+    }
+
+    static int getBucket(long durationMillis) {
+        for (int bucket = 0; bucket < BUCKET_BOUNDS_MILLIS.length; ++bucket) {
+            if (durationMillis < BUCKET_BOUNDS_MILLIS[bucket]) {
+                return bucket;
+            }
+        }
+        return BUCKET_BOUNDS_MILLIS.length;
+    }
+}
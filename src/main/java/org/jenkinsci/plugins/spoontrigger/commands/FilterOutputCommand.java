@@ -6,19 +6,37 @@ import hudson.util.ArgumentListBuilder;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.regex.Pattern;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Base class for commands that extract information from the process output. Patterns are registered
+ * in the constructor and matched while the process is running, so the output is never kept in memory.
+ */
 public class FilterOutputCommand extends BaseCommand {
 
     private int errorCode = 0;
     private OutputStreamCollector outputStream;
+    private final Map<Pattern, PatternGroupMatcher> matchers;
 
-    protected FilterOutputCommand(ArgumentListBuilder argumentList) {
+    protected FilterOutputCommand(ArgumentListBuilder argumentList, Pattern... outputPatterns) {
         super(argumentList);
+
+        this.matchers = new IdentityHashMap<Pattern, PatternGroupMatcher>();
+        for (Pattern pattern : outputPatterns) {
+            this.matchers.put(pattern, new PatternGroupMatcher(pattern));
+        }
     }
 
     public void run(CommandDriver client) throws IllegalStateException {
-        this.outputStream = new OutputStreamCollector(client.getLogger(), client.getCharset());
+        for (PatternGroupMatcher matcher : this.matchers.values()) {
+            matcher.reset();
+        }
+
+        this.outputStream = new OutputStreamCollector(client.getLogger(), client.getCharset(), this.matchers.values());
         try {
             errorCode = client.launch(this.argumentList, this.outputStream);
         } finally {
@@ -32,10 +50,13 @@ public class FilterOutputCommand extends BaseCommand {
     }
 
     protected Collection<String> findInOutput(Pattern pattern) {
+        PatternGroupMatcher matcher = this.matchers.get(pattern);
+        checkArgument(matcher != null, "pattern (%s) must be registered in the command constructor", pattern);
+
         if (outputStream == null) {
             return Collections.emptyList();
         }
 
-        return outputStream.findAll(pattern);
+        return matcher.getValues();
     }
 }
@@ -0,0 +1,9 @@
+package org.jenkinsci.plugins.spoontrigger.commands;
+
+/**
+ * Receives every distinct non-empty line of a process output as soon as the line is read.
+ */
+public interface LineMatcher {
+
+    void match(String line);
+}
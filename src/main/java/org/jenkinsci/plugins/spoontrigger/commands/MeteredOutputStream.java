@@ -0,0 +1,53 @@
+package org.jenkinsci.plugins.spoontrigger.commands;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Counts bytes and lines written to the process output before passing them on. The underlying stream is not closed,
+ * because it is owned by the caller of {@link CommandDriver}.
+ */
+final class MeteredOutputStream extends FilterOutputStream {
+
+    private long bytes;
+    private long lines;
+
+    MeteredOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        ++bytes;
+        if (b == '\n') {
+            ++lines;
+        }
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        out.write(buffer, offset, length);
+        bytes += length;
+        final int end = offset + length;
+        for (int position = offset; position < end; ++position) {
+            if (buffer[position] == '\n') {
+                ++lines;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    long getLines() {
+        return lines;
+    }
+}
@@ -8,7 +8,10 @@ import org.jenkinsci.plugins.spoontrigger.utils.Patterns;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -17,62 +20,200 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static com.google.common.base.Preconditions.checkArgument;
-
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Forwards deduplicated lines of the process output to the build log. Progress lines are rate limited by
+ * {@link ProgressThrottle}, lines retained or passed to matchers are not.
+ * <p>
+ * In the default mode lines are retained in memory and searched after the process exits. In the streaming mode
+ * lines are passed to the registered {@link LineMatcher}s as they arrive and nothing is retained, so the memory
+ * used by the collector does not grow with the length of the output.
+ */
 public class OutputStreamCollector extends LineTransformationOutputStream {
 
-    private static final int MAX_LENGTH = 32 * 1024 * 10204;
-    private static final Pattern MarqueePattern = Pattern.compile("^(?<line>.*?)[\\\\|/\\-]?$");
+    private static final int MAX_LENGTH = 32 * 1024 * 1024;
+    private static final int INITIAL_LINE_CAPACITY = 256;
 
     private final ArrayList<String> lines;
-    private String lastLine;
+    private final List<LineMatcher> matchers;
     private int totalBytes;
 
-    private final PrintStream out;
-    private final Charset charset;
+    // buffers are reused between lines, so duplicated and marquee lines are dropped without allocations
+    private ByteBuffer byteBuffer;
+    private CharBuffer charBuffer;
+    private char[] lastLine;
+    private int lastLineLength;
+
+    private final ProgressThrottle progress;
+    private final CharsetDecoder decoder;
 
     public OutputStreamCollector(PrintStream out, Charset charset) {
-        this.out = out;
-        this.charset = charset;
+        this(out, charset, new ArrayList<String>(), Collections.<LineMatcher>emptyList());
+    }
 
-        this.lines = new ArrayList<String>();
-        this.lastLine = null;
+    public OutputStreamCollector(PrintStream out, Charset charset, Collection<? extends LineMatcher> matchers) {
+        this(out, charset, null, matchers);
+    }
+
+    private OutputStreamCollector(PrintStream out, Charset charset, ArrayList<String> lines, Collection<? extends LineMatcher> matchers) {
+        checkArgument(matchers != null, "matchers must be not null");
+
+        this.progress = new ProgressThrottle(out);
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        this.lines = lines;
+        this.matchers = new ArrayList<LineMatcher>(matchers);
         this.totalBytes = 0;
+
+        this.charBuffer = CharBuffer.allocate(INITIAL_LINE_CAPACITY);
+        this.lastLine = null;
+        this.lastLineLength = 0;
+    }
+
+    public boolean isStreaming() {
+        return lines == null;
     }
 
     public List<String> getLines() {
+        checkState(!isStreaming(), "Lines are not retained in the streaming mode");
+
         return Collections.unmodifiableList(lines);
     }
 
     @Override
     protected void eol(byte[] bytes, int length) throws IOException {
-        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
-        String line = this.charset.decode(buffer).toString();
-
-        String lineToUse = line.trim();
-        Matcher matcher = MarqueePattern.matcher(lineToUse);
-        if (matcher.matches()) {
-            lineToUse = matcher.group("line");
+        CharBuffer decoded = decode(bytes, length);
+        char[] chars = decoded.array();
+        final int decodedLength = decoded.limit();
+
+        int begin = 0;
+        int end = decodedLength;
+        while (begin < end && chars[begin] <= ' ') {
+            ++begin;
+        }
+        while (end > begin && chars[end - 1] <= ' ') {
+            --end;
         }
+        end = stripMarquee(chars, begin, end);
 
-        if (lineToUse.equals(lastLine)) {
+        final int lineLength = end - begin;
+        if (isLastLine(chars, begin, lineLength)) {
             // ignore duplicated lines
             return;
         }
+        saveLastLine(chars, begin, lineLength);
+
+        String lineToUse = new String(chars, begin, lineLength);
+        if (lineLength > 0) {
+            if (isStreaming()) {
+                for (LineMatcher lineMatcher : matchers) {
+                    lineMatcher.match(lineToUse);
+                }
+            } else if (totalBytes + length <= MAX_LENGTH) {
+                lines.add(lineToUse);
+                totalBytes += length;
+            }
+        }
+
+        final boolean newLine = decodedLength > 0 && chars[decodedLength - 1] == '\n';
+        progress.write(lineToUse, newLine);
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        progress.flush();
+    }
+
+    /**
+     * Removes a trailing spinner character (one of <code>\ | / -</code>) that turbo prints while a task is in progress.
+     */
+    static int stripMarquee(char[] chars, int begin, int end) {
+        if (end == begin) {
+            return end;
+        }
+
+        for (int pos = begin; pos < end; ++pos) {
+            if (isLineTerminator(chars[pos])) {
+                return end;
+            }
+        }
+
+        switch (chars[end - 1]) {
+            case '\\':
+            case '|':
+            case '/':
+            case '-':
+                return end - 1;
+            default:
+                return end;
+        }
+    }
+
+    private static boolean isLineTerminator(char value) {
+        return value == '\n' || value == '\r' || value == '\u0085' || value == '\u2028' || value == '\u2029';
+    }
 
-        if (lineToUse.length() > 0 && totalBytes + length <= MAX_LENGTH) {
-            lines.add(lineToUse);
-            totalBytes += length;
+    private CharBuffer decode(byte[] bytes, int length) {
+        if (byteBuffer == null || byteBuffer.array() != bytes) {
+            byteBuffer = ByteBuffer.wrap(bytes);
         }
+        byteBuffer.limit(length);
+        byteBuffer.position(0);
 
-        lastLine = lineToUse;
-        if (line.endsWith("\n")) {
-            this.out.println(lineToUse);
-        } else {
-            this.out.print(lineToUse);
+        final int maxChars = (int) Math.ceil(length * (double) decoder.maxCharsPerByte());
+        if (charBuffer.capacity() < maxChars) {
+            charBuffer = CharBuffer.allocate(Math.max(maxChars, 2 * charBuffer.capacity()));
         }
+        charBuffer.clear();
+
+        decoder.reset();
+        decoder.decode(byteBuffer, charBuffer, true);
+        decoder.flush(charBuffer);
+        charBuffer.flip();
+        return charBuffer;
     }
 
+    private boolean isLastLine(char[] chars, int begin, int length) {
+        if (lastLine == null || lastLineLength != length) {
+            return false;
+        }
+
+        for (int pos = 0; pos < length; ++pos) {
+            if (lastLine[pos] != chars[begin + pos]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void saveLastLine(char[] chars, int begin, int length) {
+        if (lastLine == null || lastLine.length < length) {
+            lastLine = new char[Math.max(length, INITIAL_LINE_CAPACITY)];
+        }
+        System.arraycopy(chars, begin, lastLine, 0, length);
+        lastLineLength = length;
+    }
+
+    /**
+     * In the streaming mode only the patterns of registered {@link PatternGroupMatcher}s can be searched.
+     */
     public Collection<String> findAll(Pattern pattern) {
+        if (isStreaming()) {
+            for (LineMatcher lineMatcher : matchers) {
+                if (lineMatcher instanceof PatternGroupMatcher) {
+                    PatternGroupMatcher groupMatcher = (PatternGroupMatcher) lineMatcher;
+                    if (groupMatcher.getPattern() == pattern) {
+                        return groupMatcher.getValues();
+                    }
+                }
+            }
+            throw new IllegalArgumentException(String.format("pattern (%s) was not registered before the process was launched", pattern));
+        }
+
         PatternGroupExtractor patternGroupExtractor = new PatternGroupExtractor(pattern);
         ArrayList<String> results = new ArrayList<String>();
         for (String line : lines) {
@@ -86,12 +227,10 @@ public class OutputStreamCollector extends LineTransformationOutputStream {
 
     private static final class PatternGroupExtractor {
 
-        private static final Pattern CONTAINS_GROUP_PATTERN = Pattern.compile("[^\\\\]*\\(.*[^\\\\]\\)");
-
         private final Pattern pattern;
 
         public PatternGroupExtractor(Pattern pattern) {
-            checkArgument(pattern != null && Patterns.matches(pattern.toString(), CONTAINS_GROUP_PATTERN),
+            checkArgument(Patterns.containsGroup(pattern),
                     "pattern (%s) must be a not null regex with a matching group", pattern);
 
             this.pattern = pattern;
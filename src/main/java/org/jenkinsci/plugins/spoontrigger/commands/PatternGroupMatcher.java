@@ -0,0 +1,54 @@
+package org.jenkinsci.plugins.spoontrigger.commands;
+
+import org.jenkinsci.plugins.spoontrigger.utils.Patterns;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Captures the first group of a pattern in lines of the process output. Only the most recent matches are kept,
+ * so memory used by the matcher does not depend on the length of the output.
+ */
+public final class PatternGroupMatcher implements LineMatcher {
+
+    private static final int MAX_VALUES = 1024;
+
+    private final Pattern pattern;
+    private final ArrayDeque<String> values;
+
+    public PatternGroupMatcher(Pattern pattern) {
+        checkArgument(Patterns.containsGroup(pattern),
+                "pattern (%s) must be a not null regex with a matching group", pattern);
+
+        this.pattern = pattern;
+        this.values = new ArrayDeque<String>();
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    @Override
+    public synchronized void match(String line) {
+        Matcher matcher = this.pattern.matcher(line);
+        if (matcher.find() && matcher.groupCount() > 0) {
+            if (values.size() == MAX_VALUES) {
+                values.removeFirst();
+            }
+            values.addLast(matcher.group(1));
+        }
+    }
+
+    public synchronized Collection<String> getValues() {
+        return new ArrayList<String>(values);
+    }
+
+    public synchronized void reset() {
+        values.clear();
+    }
+}
@@ -0,0 +1,148 @@
+package org.jenkinsci.plugins.spoontrigger.commands;
+
+import com.google.common.base.Ticker;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how often progress lines like <code>Downloading layer 42%</code> are written to the build log.
+ * <p>
+ * Consecutive lines with the same text before the percentage form a progress run. The first line of a run is written,
+ * the next ones only if the percentage advanced by the configured step or the interval elapsed since the last
+ * written line. The last line of a run is always written before any other line and when the output ends, so the log
+ * shows the final state. Lines which do not report progress are written verbatim.
+ */
+final class ProgressThrottle {
+
+    static final long DEFAULT_INTERVAL_MILLIS = Long.getLong(ProgressThrottle.class.getName() + ".intervalMillis", TimeUnit.SECONDS.toMillis(5));
+    static final int DEFAULT_PERCENT_STEP = Integer.getInteger(ProgressThrottle.class.getName() + ".percentStep", 10);
+
+    private static final int MAX_PERCENT = 100;
+    private static final int NOT_PROGRESS = -1;
+
+    private final PrintStream out;
+    private final Ticker ticker;
+    private final long intervalNanos;
+    private final int percentStep;
+
+    private String runKey;
+    private int lastPercent;
+    private long lastWrittenNanos;
+
+    private String pendingLine;
+    private boolean pendingNewLine;
+
+    ProgressThrottle(PrintStream out) {
+        this(out, Ticker.systemTicker(), DEFAULT_INTERVAL_MILLIS, DEFAULT_PERCENT_STEP);
+    }
+
+    ProgressThrottle(PrintStream out, Ticker ticker, long intervalMillis, int percentStep) {
+        this.out = out;
+        this.ticker = ticker;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.percentStep = percentStep;
+    }
+
+    void write(String line, boolean newLine) {
+        int percentageStart = findPercentage(line);
+        if (percentageStart == NOT_PROGRESS) {
+            flush();
+            runKey = null;
+            print(line, newLine);
+            return;
+        }
+
+        int percent = parsePercent(line, percentageStart);
+        long now = ticker.read();
+        if (isSameRun(line, percentageStart, percent)) {
+            boolean advanced = percent - lastPercent >= percentStep || percent >= MAX_PERCENT;
+            boolean elapsed = now - lastWrittenNanos >= intervalNanos;
+            if (!advanced && !elapsed) {
+                pendingLine = line;
+                pendingNewLine = newLine;
+                return;
+            }
+        } else {
+            flush();
+            runKey = line.substring(0, percentageStart);
+        }
+
+        pendingLine = null;
+        lastPercent = percent;
+        lastWrittenNanos = now;
+        print(line, newLine);
+    }
+
+    /**
+     * Writes the last suppressed progress line.
+     */
+    void flush() {
+        if (pendingLine != null) {
+            print(pendingLine, pendingNewLine);
+            pendingLine = null;
+        }
+    }
+
+    private boolean isSameRun(String line, int percentageStart, int percent) {
+        return runKey != null
+                && percent >= lastPercent
+                && runKey.length() == percentageStart
+                && line.startsWith(runKey);
+    }
+
+    private void print(String line, boolean newLine) {
+        if (newLine) {
+            out.println(line);
+        } else {
+            out.print(line);
+        }
+    }
+
+    /**
+     * Finds the last number followed by a percent sign, for example <code>42%</code>, <code>42 %</code> or
+     * <code>42.5%</code>.
+     *
+     * @return position of the first digit or -1 if the line does not report progress
+     */
+    static int findPercentage(String line) {
+        int percentSign = line.lastIndexOf('%');
+        if (percentSign <= 0) {
+            return NOT_PROGRESS;
+        }
+
+        int pos = percentSign - 1;
+        if (line.charAt(pos) == ' ') {
+            --pos;
+        }
+
+        int digitsEnd = pos;
+        while (pos >= 0 && isDigit(line.charAt(pos))) {
+            --pos;
+        }
+        if (pos >= 1 && pos < digitsEnd && (line.charAt(pos) == '.' || line.charAt(pos) == ',') && isDigit(line.charAt(pos - 1))) {
+            --pos;
+            while (pos >= 0 && isDigit(line.charAt(pos))) {
+                --pos;
+            }
+        }
+
+        int start = pos + 1;
+        if (start > digitsEnd) {
+            return NOT_PROGRESS;
+        }
+        return start;
+    }
+
+    private static int parsePercent(String line, int start) {
+        int percent = 0;
+        for (int pos = start; pos < line.length() && isDigit(line.charAt(pos)) && percent <= MAX_PERCENT; ++pos) {
+            percent = percent * 10 + (line.charAt(pos) - '0');
+        }
+        return percent;
+    }
+
+    private static boolean isDigit(char value) {
+        return value >= '0' && value <= '9';
+    }
+}
@@ -36,7 +36,7 @@ public final class BuildCommand extends FilterOutputCommand {
     }
 
     private BuildCommand(ArgumentListBuilder argumentList) {
-        super(argumentList);
+        super(argumentList, OUTPUT_IMAGE_PATTERN, OUTPUT_ERROR_PATTERN);
     }
 
     @Override
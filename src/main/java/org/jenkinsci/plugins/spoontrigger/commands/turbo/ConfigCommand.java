@@ -21,7 +21,7 @@ public class ConfigCommand extends FilterOutputCommand {
     }
 
     ConfigCommand(ArgumentListBuilder argumentList) {
-        super(argumentList);
+        super(argumentList, HUB_URL_PATTERN);
     }
 
     @Override
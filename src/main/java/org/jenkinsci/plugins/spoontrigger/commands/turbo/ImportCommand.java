@@ -20,7 +20,7 @@ public class ImportCommand extends FilterOutputCommand {
     private Optional<Image> outputImage = Optional.absent();
 
     protected ImportCommand(ArgumentListBuilder argumentList) {
-        super(argumentList);
+        super(argumentList, OUTPUT_IMAGE_PATTERN);
     }
 
     @Override
@@ -14,7 +14,7 @@ public class VersionCommand extends FilterOutputCommand {
     private static final Pattern VERSION_PATTERN = Pattern.compile("\\s*Version:\\s+(\\S+)", Pattern.CASE_INSENSITIVE);
 
     private VersionCommand(ArgumentListBuilder argumentList) {
-        super(argumentList);
+        super(argumentList, VERSION_PATTERN);
     }
 
     @Override
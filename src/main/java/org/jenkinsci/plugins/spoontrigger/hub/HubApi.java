@@ -1,18 +1,8 @@
 package org.jenkinsci.plugins.spoontrigger.hub;
 
 import com.google.common.base.Optional;
-import com.google.common.collect.Ordering;
 import hudson.model.BuildListener;
-import net.sf.json.JSONArray;
-import net.sf.json.JSONObject;
-import org.apache.commons.httpclient.HttpStatus;
-import org.apache.http.HttpEntity;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
 import org.jenkinsci.plugins.spoontrigger.SpoonBuild;
 import org.jenkinsci.plugins.spoontrigger.TurboTool;
 
@@ -20,7 +10,6 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static org.jenkinsci.plugins.spoontrigger.utils.LogUtils.log;
@@ -55,23 +44,12 @@ public class HubApi {
         checkArgument(image.namespace != null, "image");
 
         try {
-            Optional<JSONArray> tags = getTags(image);
-            if (tags.isPresent()) {
-                JSONArray jsonArray = tags.get();
-                final int length = jsonArray.size();
-                ArrayList<Version> versions = new ArrayList<Version>(length);
-                for (int position = 0; position < length; ++position) {
-                    String tag = jsonArray.getString(position);
-                    Optional<Version> versionOpt = Version.tryParse(tag);
-                    if (versionOpt.isPresent()) {
-                        versions.add(versionOpt.get());
-                    } else {
-                        log(listener, String.format("Failed to parse %s tag", tag));
-                    }
-                }
-                if (!versions.isEmpty()) {
-                    Version maxVersion = Ordering.<Version>natural().max(versions);
-                    return new Image(image.namespace, image.repo, maxVersion.toString());
+            Optional<String> repo = getRepo(image);
+            if (repo.isPresent()) {
+                LatestVersionVisitor visitor = new LatestVersionVisitor();
+                TagScanner.scan(repo.get(), visitor);
+                if (visitor.latestVersion != null) {
+                    return new Image(image.namespace, image.repo, visitor.latestVersion.toString());
                 }
             }
 
@@ -92,13 +70,21 @@ public class HubApi {
         checkArgument(image.namespace != null, "image");
 
         try {
-            Optional<JSONArray> tags = getTags(image);
+            // the image may have been pushed by another build a moment ago
+            final boolean revalidate = true;
+            Optional<String> repo = getRepo(image, revalidate);
 
             if (image.tag == null) {
                 return true;
             }
 
-            return tags.isPresent() && tags.get().contains(image.tag);
+            if (!repo.isPresent()) {
+                return false;
+            }
+
+            TagMatchVisitor visitor = new TagMatchVisitor(image.tag);
+            TagScanner.scan(repo.get(), visitor);
+            return visitor.found;
         } catch (Exception ex) {
             String msg = String.format(
                     "Failed to check if image %s is available in the remote repo: %s",
@@ -121,51 +107,53 @@ public class HubApi {
         return DEFAULT_HUB_URL;
     }
 
-    private Optional<JSONArray> getTags(Image image) throws Exception {
-        URI uri = getRepoUrl(image);
-        Optional<JSONObject> jsonObject = getJsonObject(uri);
-
-        if (!jsonObject.isPresent()) {
-            return Optional.absent();
-        }
+    private Optional<String> getRepo(Image image) throws IOException, URISyntaxException {
+        final boolean revalidate = false;
+        return getRepo(image, revalidate);
+    }
 
-        JSONObject repo = jsonObject.get();
-        if (!repo.has("tags")) {
-            return Optional.absent();
-        }
+    private Optional<String> getRepo(Image image, boolean revalidate) throws IOException, URISyntaxException {
+        URI uri = getRepoUrl(image);
+        return HubHttpClient.getInstance().getJson(uri, hubApiKey, revalidate);
+    }
 
-        JSONArray tags = repo.getJSONArray("tags");
-        return Optional.of(tags);
+    private URI getRepoUrl(Image image) throws URISyntaxException {
+        URIBuilder builder = new URIBuilder(hubUrl)
+                .setPath("/io/_hub/repo/" + image.namespace + "/" + image.repo);
+        return builder.build();
     }
 
-    private Optional<JSONObject> getJsonObject(URI url) throws IOException {
-        CloseableHttpClient httpclient = HttpClients.createDefault();
-        try {
-            HttpGet httpGet = new HttpGet(url);
-            httpGet.addHeader("Content-Type", "application/json");
-            httpGet.addHeader("X-Spoon-Hub-Key", hubApiKey);
-            CloseableHttpResponse response = httpclient.execute(httpGet);
-
-            int code = response.getStatusLine().getStatusCode();
-            if (code == HttpStatus.SC_NOT_FOUND) {
-                return Optional.absent();
+    private class LatestVersionVisitor implements TagScanner.TagVisitor {
+        private Version latestVersion;
+
+        @Override
+        public boolean visit(String text, int start, int end) {
+            Optional<Version> versionOpt = Version.tryParse(text, start, end);
+            if (!versionOpt.isPresent()) {
+                log(listener, String.format("Failed to parse %s tag", text.substring(start, end)));
+                return true;
             }
 
-            HttpEntity entity = response.getEntity();
-            try {
-                String rawJson = EntityUtils.toString(entity);
-                return Optional.of(JSONObject.fromObject(rawJson));
-            } finally {
-                EntityUtils.consume(entity);
+            Version version = versionOpt.get();
+            if (latestVersion == null || version.compareTo(latestVersion) > 0) {
+                latestVersion = version;
             }
-        } finally {
-            httpclient.close();
+            return true;
         }
     }
 
-    private URI getRepoUrl(Image image) throws URISyntaxException {
-        URIBuilder builder = new URIBuilder(hubUrl)
-                .setPath("/io/_hub/repo/" + image.namespace + "/" + image.repo);
-        return builder.build();
+    private static class TagMatchVisitor implements TagScanner.TagVisitor {
+        private final String tag;
+        private boolean found;
+
+        TagMatchVisitor(String tag) {
+            this.tag = tag;
+        }
+
+        @Override
+        public boolean visit(String text, int start, int end) {
+            found = end - start == tag.length() && text.regionMatches(start, tag, 0, tag.length());
+            return !found;
+        }
     }
 }
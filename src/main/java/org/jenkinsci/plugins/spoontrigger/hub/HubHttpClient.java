@@ -0,0 +1,211 @@
+package org.jenkinsci.plugins.spoontrigger.hub;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import hudson.init.Terminator;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keep-alive HTTP client shared by all {@link HubApi} instances of the controller.
+ * <p>
+ * Responses are cached for a short time and revalidated with <code>If-None-Match</code> afterwards. Callers asking
+ * for the same resource at the same time wait for a single request. Missing resources are not cached, because an
+ * image may be pushed right after the Hub reported it missing. Callers which must not see a stale response, such as
+ * checks whether an image was already pushed, ask for revalidation of the cached entry. The least recently used
+ * entries are evicted once the cache is full.
+ * <p>
+ * Limits can be changed with system properties prefixed with the class name: <code>maxConnections</code>,
+ * <code>maxConnectionsPerRoute</code>, <code>timeoutMillis</code> and <code>cacheTtlMillis</code>.
+ */
+final class HubHttpClient {
+
+    private static final Logger LOGGER = Logger.getLogger(HubHttpClient.class.getName());
+
+    private static final int MAX_CONNECTIONS = Integer.getInteger(HubHttpClient.class.getName() + ".maxConnections", 20);
+    private static final int MAX_CONNECTIONS_PER_ROUTE = Integer.getInteger(HubHttpClient.class.getName() + ".maxConnectionsPerRoute", 10);
+    private static final int TIMEOUT_MILLIS = Integer.getInteger(HubHttpClient.class.getName() + ".timeoutMillis", 30 * 1000);
+    private static final long CACHE_TTL_MILLIS = Long.getLong(HubHttpClient.class.getName() + ".cacheTtlMillis", 30 * 1000L);
+    private static final int MAX_CACHE_ENTRIES = 256;
+    // entries outlive the TTL, so the etag can be used to revalidate them
+    private static final long CACHE_RETENTION_MILLIS = 10 * CACHE_TTL_MILLIS;
+
+    private static HubHttpClient instance;
+
+    private final CloseableHttpClient httpClient;
+    private final Cache<String, CacheEntry> cache;
+
+    private HubHttpClient() {
+        this(MAX_CACHE_ENTRIES);
+    }
+
+    HubHttpClient(int maxCacheEntries) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(TIMEOUT_MILLIS)
+                .setConnectionRequestTimeout(TIMEOUT_MILLIS)
+                .setSocketTimeout(TIMEOUT_MILLIS)
+                .build();
+
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .useSystemProperties()
+                .build();
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxCacheEntries)
+                .expireAfterAccess(CACHE_RETENTION_MILLIS, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    static synchronized HubHttpClient getInstance() {
+        if (instance == null) {
+            instance = new HubHttpClient();
+        }
+        return instance;
+    }
+
+    @Terminator
+    public static synchronized void shutdown() {
+        if (instance == null) {
+            return;
+        }
+
+        try {
+            instance.close();
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to close the Hub http client", ex);
+        }
+        instance = null;
+    }
+
+    /**
+     * @return raw JSON returned by the Hub or absent if the resource does not exist
+     */
+    Optional<String> getJson(URI url, String hubApiKey) throws IOException {
+        final boolean revalidate = false;
+        return getJson(url, hubApiKey, revalidate);
+    }
+
+    /**
+     * @param revalidate check with the Hub that the cached response is still valid, even if it is fresh
+     * @return raw JSON returned by the Hub or absent if the resource does not exist
+     */
+    Optional<String> getJson(URI url, String hubApiKey, boolean revalidate) throws IOException {
+        final String key = hubApiKey + "@" + url;
+
+        CacheEntry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            CacheEntry newEntry = new CacheEntry();
+            entry = cache.asMap().putIfAbsent(key, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+
+        synchronized (entry) {
+            if (revalidate || !entry.isFresh()) {
+                refresh(entry, url, hubApiKey);
+            }
+            return Optional.fromNullable(entry.body);
+        }
+    }
+
+    private void refresh(CacheEntry entry, URI url, String hubApiKey) throws IOException {
+        HttpGet httpGet = new HttpGet(url);
+        httpGet.addHeader("Content-Type", "application/json");
+        httpGet.addHeader("X-Spoon-Hub-Key", hubApiKey);
+        if (entry.hasBody() && entry.etag != null) {
+            httpGet.addHeader(HttpHeaders.IF_NONE_MATCH, entry.etag);
+        }
+
+        CloseableHttpResponse response = httpClient.execute(httpGet);
+        try {
+            HttpEntity entity = response.getEntity();
+            try {
+                int code = response.getStatusLine().getStatusCode();
+                switch (code) {
+                    case HttpStatus.SC_NOT_MODIFIED:
+                        entry.revalidated();
+                        break;
+                    case HttpStatus.SC_NOT_FOUND:
+                        entry.invalidate();
+                        break;
+                    default:
+                        if (code >= HttpStatus.SC_BAD_REQUEST) {
+                            throw new IOException(String.format("Request to %s failed with status %d", url, code));
+                        }
+
+                        Header etagHeader = response.getFirstHeader(HttpHeaders.ETAG);
+                        String etag = etagHeader == null ? null : etagHeader.getValue();
+                        entry.update(EntityUtils.toString(entity), etag);
+                        break;
+                }
+            } finally {
+                EntityUtils.consume(entity);
+            }
+        } finally {
+            response.close();
+        }
+    }
+
+    void close() throws IOException {
+        httpClient.close();
+    }
+
+    long getCachedEntries() {
+        cache.cleanUp();
+        return cache.size();
+    }
+
+    private static final class CacheEntry {
+        private volatile long fetchedAtNanos;
+        private volatile boolean fetched;
+        private String body;
+        private String etag;
+
+        boolean hasBody() {
+            return body != null;
+        }
+
+        boolean isFresh() {
+            return fetched && System.nanoTime() - fetchedAtNanos < TimeUnit.MILLISECONDS.toNanos(CACHE_TTL_MILLIS);
+        }
+
+        void update(String body, String etag) {
+            this.body = body;
+            this.etag = etag;
+            revalidated();
+        }
+
+        void invalidate() {
+            this.body = null;
+            this.etag = null;
+            this.fetched = false;
+        }
+
+        void revalidated() {
+            this.fetchedAtNanos = System.nanoTime();
+            this.fetched = true;
+        }
+    }
+}
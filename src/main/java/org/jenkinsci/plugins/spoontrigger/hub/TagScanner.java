@@ -0,0 +1,238 @@
+package org.jenkinsci.plugins.spoontrigger.hub;
+
+/**
+ * Scans the <code>tags</code> array of a Hub repository document without building a JSON object tree.
+ * <p>
+ * Only keys of the top level object are inspected, values of other keys are skipped. Tags are passed to the visitor
+ * as ranges of the scanned document, so no string is allocated per tag unless it contains escape sequences.
+ */
+final class TagScanner {
+
+    interface TagVisitor {
+        /**
+         * @return false to stop scanning
+         */
+        boolean visit(String text, int start, int end);
+    }
+
+    private static final String TAGS_KEY = "tags";
+
+    private final String json;
+    private int position;
+
+    private TagScanner(String json) {
+        this.json = json;
+    }
+
+    /**
+     * @return false if the document does not contain the tags array
+     * @throws IllegalArgumentException if the document is not a valid JSON object
+     */
+    static boolean scan(String json, TagVisitor visitor) {
+        return new TagScanner(json).scanObject(visitor);
+    }
+
+    private boolean scanObject(TagVisitor visitor) {
+        expect('{');
+        if (tryConsume('}')) {
+            return false;
+        }
+
+        do {
+            expect('"');
+            int keyStart = position;
+            int keyEnd = skipString();
+            expect(':');
+
+            if (isTagsKey(keyStart, keyEnd)) {
+                skipWhitespace();
+                if (peek() != '[') {
+                    return false;
+                }
+                scanTags(visitor);
+                return true;
+            }
+
+            skipValue();
+        } while (tryConsume(','));
+
+        expect('}');
+        return false;
+    }
+
+    private void scanTags(TagVisitor visitor) {
+        expect('[');
+        if (tryConsume(']')) {
+            return;
+        }
+
+        do {
+            skipWhitespace();
+            if (peek() != '"') {
+                skipValue();
+                continue;
+            }
+
+            ++position;
+            int start = position;
+            boolean escaped = hasEscapeSequence(start);
+            int end = skipString();
+
+            boolean proceed = escaped
+                    ? visitEscaped(visitor, start, end)
+                    : visitor.visit(json, start, end);
+            if (!proceed) {
+                return;
+            }
+        } while (tryConsume(','));
+
+        expect(']');
+    }
+
+    private boolean visitEscaped(TagVisitor visitor, int start, int end) {
+        String tag = unescape(start, end);
+        return visitor.visit(tag, 0, tag.length());
+    }
+
+    private boolean isTagsKey(int start, int end) {
+        return end - start == TAGS_KEY.length() && json.regionMatches(start, TAGS_KEY, 0, TAGS_KEY.length());
+    }
+
+    private boolean hasEscapeSequence(int start) {
+        for (int index = start; index < json.length(); ++index) {
+            char character = json.charAt(index);
+            if (character == '"') {
+                return false;
+            }
+            if (character == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves past the closing quote of a string which starts at the current position.
+     *
+     * @return position of the closing quote
+     */
+    private int skipString() {
+        while (position < json.length()) {
+            char character = json.charAt(position++);
+            if (character == '\\') {
+                ++position;
+            } else if (character == '"') {
+                return position - 1;
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private void skipValue() {
+        skipWhitespace();
+        char character = peek();
+        if (character == '"') {
+            ++position;
+            skipString();
+            return;
+        }
+
+        if (character == '{' || character == '[') {
+            int depth = 0;
+            while (position < json.length()) {
+                character = json.charAt(position++);
+                if (character == '"') {
+                    skipString();
+                } else if (character == '{' || character == '[') {
+                    ++depth;
+                } else if (character == '}' || character == ']') {
+                    if (--depth == 0) {
+                        return;
+                    }
+                }
+            }
+            throw error("Unterminated value");
+        }
+
+        while (position < json.length()) {
+            character = json.charAt(position);
+            if (character == ',' || character == '}' || character == ']' || Character.isWhitespace(character)) {
+                return;
+            }
+            ++position;
+        }
+    }
+
+    private String unescape(int start, int end) {
+        StringBuilder builder = new StringBuilder(end - start);
+        for (int index = start; index < end; ++index) {
+            char character = json.charAt(index);
+            if (character != '\\' || index + 1 >= end) {
+                builder.append(character);
+                continue;
+            }
+
+            char escaped = json.charAt(++index);
+            switch (escaped) {
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    if (index + 4 >= end) {
+                        throw error("Invalid unicode escape sequence");
+                    }
+                    builder.append((char) Integer.parseInt(json.substring(index + 1, index + 5), 16));
+                    index += 4;
+                    break;
+                default:
+                    builder.append(escaped);
+                    break;
+            }
+        }
+        return builder.toString();
+    }
+
+    private void expect(char expected) {
+        if (!tryConsume(expected)) {
+            throw error(String.format("Expected '%s'", expected));
+        }
+    }
+
+    private boolean tryConsume(char expected) {
+        skipWhitespace();
+        if (position < json.length() && json.charAt(position) == expected) {
+            ++position;
+            return true;
+        }
+        return false;
+    }
+
+    private char peek() {
+        if (position >= json.length()) {
+            throw error("Unexpected end of document");
+        }
+        return json.charAt(position);
+    }
+
+    private void skipWhitespace() {
+        while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+            ++position;
+        }
+    }
+
+    private IllegalArgumentException error(String msg) {
+        return new IllegalArgumentException(String.format("%s at position %d of the repository document", msg, position));
+    }
+}
@@ -1,35 +1,67 @@
 package org.jenkinsci.plugins.spoontrigger.hub;
 
-import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 
-import java.util.ArrayList;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 public class Version implements Comparable<Version> {
 
-    public static final Version EMPTY = new Version(new ArrayList<Integer>());
-
-    private static final Pattern VERSION_PATTERN = Pattern.compile("^\\d+(?:\\.\\d+)*$");
+    public static final Version EMPTY = new Version(new int[0]);
 
-    private final ArrayList<Integer> numbers;
+    private final int[] numbers;
 
     public static Optional<Version> tryParse(String version) {
-        Matcher matcher = VERSION_PATTERN.matcher(version);
-        if (matcher.matches()) {
-            String match = matcher.group();
-            String[] segments = match.split("\\.");
-            ArrayList<Integer> numbers = new ArrayList<Integer>();
-            for (int position = 0; position < segments.length; ++position) {
-                numbers.add(Integer.parseInt(segments[position]));
+        return tryParse(version, 0, version.length());
+    }
+
+    /**
+     * Parses numbers separated by dots from <code>text</code> between <code>start</code> inclusive and
+     * <code>end</code> exclusive, so a tag can be parsed without copying it out of a larger document first.
+     */
+    public static Optional<Version> tryParse(CharSequence text, int start, int end) {
+        if (start >= end) {
+            return Optional.absent();
+        }
+
+        int segments = 1;
+        for (int position = start; position < end; ++position) {
+            char character = text.charAt(position);
+            if (character == '.') {
+                ++segments;
+            } else if (character < '0' || character > '9') {
+                return Optional.absent();
+            }
+        }
+
+        int[] numbers = new int[segments];
+        int segment = 0;
+        long number = 0;
+        boolean hasDigits = false;
+        for (int position = start; position < end; ++position) {
+            char character = text.charAt(position);
+            if (character == '.') {
+                if (!hasDigits) {
+                    return Optional.absent();
+                }
+                numbers[segment++] = (int) number;
+                number = 0;
+                hasDigits = false;
+            } else {
+                number = number * 10 + (character - '0');
+                if (number > Integer.MAX_VALUE) {
+                    return Optional.absent();
+                }
+                hasDigits = true;
             }
-            return Optional.of(new Version(numbers));
         }
-        return Optional.absent();
+
+        if (!hasDigits) {
+            return Optional.absent();
+        }
+        numbers[segment] = (int) number;
+
+        return Optional.of(new Version(numbers));
     }
 
-    private Version(ArrayList<Integer> numbers) {
+    private Version(int[] numbers) {
         this.numbers = numbers;
     }
 
@@ -39,24 +71,31 @@ public class Version implements Comparable<Version> {
 
     @Override
     public int compareTo(Version other) {
-        final int length = Math.min(numbers.size(), other.numbers.size());
+        final int length = Math.min(numbers.length, other.numbers.length);
         for (int position = 0; position < length; ++position) {
-            int result = numbers.get(position) - other.numbers.get(position);
+            int result = Integer.compare(numbers[position], other.numbers[position]);
             if (result != 0) {
                 return result;
             }
         }
-        return numbers.size() - other.numbers.size();
+        return numbers.length - other.numbers.length;
     }
 
     @Override
     public String toString() {
-        return Joiner.on(".").join(numbers);
+        StringBuilder builder = new StringBuilder(numbers.length * 4);
+        for (int position = 0; position < numbers.length; ++position) {
+            if (position > 0) {
+                builder.append('.');
+            }
+            builder.append(numbers[position]);
+        }
+        return builder.toString();
     }
 
     private int getSegment(int segment) {
-        if (segment < numbers.size()) {
-            return numbers.get(segment);
+        if (segment < numbers.length) {
+            return numbers[segment];
         }
         return 0;
     }
@@ -0,0 +1,200 @@
+package org.jenkinsci.plugins.spoontrigger.scheduledtasks;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Closeables;
+import com.google.common.io.Resources;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Proc;
+import hudson.model.TaskListener;
+import hudson.util.ArgumentListBuilder;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Executes commands in a single long-lived PowerShell process, so the start-up cost of PowerShell is paid once.
+ * <p>
+ * The host and the worker exchange UTF-8 lines:
+ * <pre>
+ * host:   BEGIN &lt;id&gt; &lt;command encoded with base64 from UTF-16LE&gt;
+ * worker: ACK &lt;id&gt;
+ * worker: ...output of the command...
+ * worker: END &lt;id&gt; &lt;exit code&gt;
+ * host:   EXIT
+ * </pre>
+ * The worker acknowledges a request before it executes the command. If the worker fails before the acknowledgement
+ * {@link NotAcknowledgedException} is thrown and the command can be safely executed again by another host.
+ * Output of commands is written in the charset passed to the host, like the output of {@link ProcessPowerShellHost}.
+ */
+public final class PersistentPowerShellHost implements PowerShellHost {
+
+    static final String BEGIN = "BEGIN";
+    static final String ACK = "ACK";
+    static final String END = "END";
+    static final String EXIT = "EXIT";
+
+    private static final long EXIT_TIMEOUT_SECONDS = 10;
+    private static final String WORKER_SCRIPT_RESOURCE_ID = "powershell-worker.ps1";
+
+    private final Proc process;
+    private final Writer stdin;
+    private final BufferedReader stdout;
+    private final String sessionId;
+    private final Charset outputCharset;
+    @Nullable
+    private final FilePath workerScript;
+
+    private long requestCount;
+    private boolean broken;
+
+    private PersistentPowerShellHost(Proc process, @Nullable FilePath workerScript, Charset outputCharset) {
+        this.process = process;
+        this.workerScript = workerScript;
+        this.outputCharset = outputCharset;
+        this.stdin = new OutputStreamWriter(process.getStdin(), Charsets.UTF_8);
+        this.stdout = new BufferedReader(new InputStreamReader(process.getStdout(), Charsets.UTF_8));
+        this.sessionId = UUID.randomUUID().toString().replace("-", "");
+        this.requestCount = 0;
+        this.broken = false;
+    }
+
+    /**
+     * @param outputCharset charset of the output written by {@link #execute(String, OutputStream)}
+     */
+    public static PersistentPowerShellHost start(EnvVars env, FilePath pwd, Launcher launcher, Charset outputCharset) throws IOException, InterruptedException {
+        String script = Resources.toString(Resources.getResource(PersistentPowerShellHost.class, WORKER_SCRIPT_RESOURCE_ID), Charsets.UTF_8);
+        final boolean inThisDirectory = false;
+        FilePath workerScript = pwd.createTextTempFile("powershell-worker", ".ps1", script, inThisDirectory);
+
+        ArgumentListBuilder workerCommand = new ArgumentListBuilder("powershell.exe")
+                .add("-NoProfile")
+                .add("-NonInteractive")
+                .add("-ExecutionPolicy")
+                .add("Bypass")
+                .add("-File")
+                .add(workerScript.getRemote());
+        try {
+            return start(env, pwd, launcher, workerCommand, workerScript, outputCharset);
+        } catch (IOException ex) {
+            workerScript.delete();
+            throw ex;
+        }
+    }
+
+    static PersistentPowerShellHost start(EnvVars env, FilePath pwd, Launcher launcher, ArgumentListBuilder workerCommand,
+                                          @Nullable FilePath workerScript, Charset outputCharset) throws IOException {
+        Proc process = launcher.launch()
+                .pwd(pwd)
+                .envs(env)
+                .cmds(workerCommand)
+                .readStdout()
+                .writeStdin()
+                .quiet(true)
+                .start();
+        return new PersistentPowerShellHost(process, workerScript, outputCharset);
+    }
+
+    /**
+     * @throws NotAcknowledgedException if the worker failed before it started to execute the command
+     * @throws IOException              if the worker failed while the command was executed
+     */
+    @Override
+    public synchronized int execute(String command, OutputStream out) throws IOException, InterruptedException {
+        checkState(!broken, "PowerShell worker is not available");
+
+        final String requestId = sessionId + Long.toString(++requestCount);
+        final String endMarker = END + " " + requestId + " ";
+        try {
+            acknowledge(command, requestId);
+
+            String line;
+            while ((line = stdout.readLine()) != null) {
+                if (line.startsWith(endMarker)) {
+                    return Integer.parseInt(line.substring(endMarker.length()).trim());
+                }
+                out.write((line + "\n").getBytes(outputCharset));
+            }
+        } catch (IOException ex) {
+            broken = true;
+            throw ex;
+        } catch (NumberFormatException ex) {
+            broken = true;
+            throw new IOException("PowerShell worker returned an invalid exit code", ex);
+        }
+
+        broken = true;
+        throw new IOException("PowerShell worker exited unexpectedly");
+    }
+
+    private void acknowledge(String command, String requestId) throws NotAcknowledgedException {
+        try {
+            stdin.write(BEGIN + " " + requestId + " " + ProcessPowerShellHost.encodeBase64(command) + "\n");
+            stdin.flush();
+
+            String line = stdout.readLine();
+            if (!(ACK + " " + requestId).equals(line)) {
+                throw new NotAcknowledgedException(String.format("PowerShell worker did not acknowledge the request: %s", line), null);
+            }
+        } catch (NotAcknowledgedException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            throw new NotAcknowledgedException("PowerShell worker failed to receive the request", ex);
+        }
+    }
+
+    public synchronized boolean isAlive() throws IOException, InterruptedException {
+        return !broken && process.isAlive();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        broken = true;
+        try {
+            try {
+                stdin.write(EXIT + "\n");
+                stdin.flush();
+            } catch (IOException ex) {
+                // the worker is already gone
+            }
+            Closeables.close(stdin, true);
+
+            try {
+                process.joinWithTimeout(EXIT_TIMEOUT_SECONDS, TimeUnit.SECONDS, TaskListener.NULL);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            Closeables.close(stdout, true);
+        } finally {
+            if (workerScript != null) {
+                try {
+                    workerScript.delete();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Thrown if the worker failed before it started to execute a command.
+     */
+    public static final class NotAcknowledgedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        NotAcknowledgedException(String message, @Nullable Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.jenkinsci.plugins.spoontrigger.scheduledtasks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Executes PowerShell commands and forwards their output.
+ */
+public interface PowerShellHost extends Closeable {
+
+    /**
+     * @return exit code of the command
+     */
+    int execute(String command, OutputStream out) throws IOException, InterruptedException;
+}
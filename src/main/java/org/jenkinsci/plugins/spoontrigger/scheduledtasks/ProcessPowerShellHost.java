@@ -0,0 +1,45 @@
+package org.jenkinsci.plugins.spoontrigger.scheduledtasks;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.util.ArgumentListBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Starts a new <code>powershell.exe</code> process for every command.
+ */
+public final class ProcessPowerShellHost implements PowerShellHost {
+
+    private final EnvVars env;
+    private final FilePath pwd;
+    private final Launcher launcher;
+    private final boolean quiet;
+
+    public ProcessPowerShellHost(EnvVars env, FilePath pwd, Launcher launcher, boolean quiet) {
+        this.env = env;
+        this.pwd = pwd;
+        this.launcher = launcher;
+        this.quiet = quiet;
+    }
+
+    @Override
+    public int execute(String command, OutputStream out) throws IOException, InterruptedException {
+        ArgumentListBuilder args = new ArgumentListBuilder("powershell.exe")
+                .add("-encodedCommand")
+                .add(encodeBase64(command));
+        return launcher.launch().pwd(pwd).envs(env).cmds(args).stdout(out).quiet(quiet).join();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    static String encodeBase64(String value) {
+        return BaseEncoding.base64().encode(value.getBytes(Charsets.UTF_16LE));
+    }
+}
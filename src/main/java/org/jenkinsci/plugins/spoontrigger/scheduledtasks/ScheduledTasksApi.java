@@ -2,27 +2,26 @@ package org.jenkinsci.plugins.spoontrigger.scheduledtasks;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Optional;
-import com.google.common.io.BaseEncoding;
 import com.google.common.io.Closeables;
-import com.google.common.io.Resources;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.TaskListener;
-import hudson.util.ArgumentListBuilder;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
 import org.apache.commons.io.output.NullOutputStream;
+import org.jenkinsci.plugins.spoontrigger.commands.LineMatcher;
 import org.jenkinsci.plugins.spoontrigger.commands.OutputStreamCollector;
-import org.jenkinsci.plugins.spoontrigger.utils.FileUtils;
 
-import java.io.FileOutputStream;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
-import java.net.URL;
+import java.io.RandomAccessFile;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -30,9 +29,16 @@ import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-public class ScheduledTasksApi {
-    private static final String SCHEDULED_TASKS_RUN_RESOURCE_ID = "run-task.ps1";
+import static com.google.common.base.Preconditions.checkState;
+
+public class ScheduledTasksApi implements Closeable {
     private static final Pattern QUOTES_PATTERN = Pattern.compile("^\"(?<value>.*)\"$");
+    private static final Pattern INTEGER_PATTERN = Pattern.compile("^-?\\d+$");
+    private static final long MIN_POLL_INTERVAL_MS = 100;
+    private static final long MAX_POLL_INTERVAL_MS = 5000;
+    private static final long STATUS_CHECK_INTERVAL_MS = 30000;
+    private static final int MAX_LOG_CHUNK_LENGTH = 1024 * 1024;
+    private static final boolean PERSISTENT_HOST = Boolean.getBoolean(ScheduledTasksApi.class.getName() + ".persistentHost");
 
     private final Charset charset;
     private final EnvVars env;
@@ -40,46 +46,179 @@ public class ScheduledTasksApi {
     private final Launcher launcher;
     private final TaskListener listener;
     private final boolean quiet;
+    private final boolean persistentHost;
+    private final long statusCheckIntervalMillis;
+
+    private PowerShellHost host;
 
     public ScheduledTasksApi(EnvVars env, FilePath pwd, Charset charset, Launcher launcher, TaskListener listener, boolean quiet) {
+        this(env, pwd, charset, launcher, listener, quiet, PERSISTENT_HOST);
+    }
+
+    /**
+     * @param persistentHost execute PowerShell commands in a single long-lived process, which must be released
+     *                       with {@link #close()}
+     */
+    public ScheduledTasksApi(EnvVars env, FilePath pwd, Charset charset, Launcher launcher, TaskListener listener, boolean quiet,
+                             boolean persistentHost) {
+        this(env, pwd, charset, launcher, listener, quiet, persistentHost, null, STATUS_CHECK_INTERVAL_MS);
+    }
+
+    ScheduledTasksApi(EnvVars env, FilePath pwd, Charset charset, TaskListener listener, PowerShellHost host,
+                      long statusCheckIntervalMillis) {
+        this(env, pwd, charset, null, listener, true, false, host, statusCheckIntervalMillis);
+    }
+
+    private ScheduledTasksApi(EnvVars env, FilePath pwd, Charset charset, Launcher launcher, TaskListener listener, boolean quiet,
+                              boolean persistentHost, @Nullable PowerShellHost host, long statusCheckIntervalMillis) {
         this.env = env;
         this.pwd = pwd;
         this.charset = charset;
         this.launcher = launcher;
         this.listener = listener;
         this.quiet = quiet;
+        this.persistentHost = persistentHost;
+        this.host = host;
+        this.statusCheckIntervalMillis = statusCheckIntervalMillis;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (host != null) {
+            host.close();
+            host = null;
+        }
     }
 
     public void create(String taskName, String command) throws IOException, InterruptedException {
-        ArgumentListBuilder args = getCreateCommand(taskName, command);
+        String args = getCreateCommand(taskName, command);
         executeCommandAssertExitCode(args, new NullOutputStream());
     }
 
     /**
      * Executes PowerShellCommand command using a scheduled task. If a scheduled task with the specified name already exists it will be deleted.
+     * Output of the command is forwarded to the build log while the task is running.
      */
     public void run(String taskName, String command) throws IOException, InterruptedException {
-        Path tempDir = Files.createTempDirectory("scheduledtask-");
+        if (isDefined(taskName)) {
+            log("Scheduled task '%s' was left by previous job. Removing it now.", taskName);
+            delete(taskName);
+        }
+
+        final String fileSuffix = Long.toString(System.currentTimeMillis());
+        FilePath logFile = pwd.child(String.format("log%s.txt", fileSuffix));
+        FilePath exitCodeFile = pwd.child(String.format("exitcode%s.txt", fileSuffix));
         try {
-            Path launchScriptPath = Paths.get(tempDir.toString(), SCHEDULED_TASKS_RUN_RESOURCE_ID);
-            URL resourceId = Resources.getResource(getClass(), SCHEDULED_TASKS_RUN_RESOURCE_ID);
-            FileOutputStream outputStream = new FileOutputStream(launchScriptPath.toFile());
+            String commandToUse = String.format(
+                    "& { %s } 2>&1 | ForEach-Object { [System.IO.File]::AppendAllText('%s', \"$_`r`n\") }",
+                    command,
+                    escapeSingleQuotes(logFile.getRemote()));
+            create(taskName, commandToUse, exitCodeFile);
+
+            log("Starting scheduled task '%s'", taskName);
+            run(taskName);
+
+            LogTail logTail = new LogTail(logFile);
             try {
-                Resources.copy(resourceId, outputStream);
+                int exitCode = waitForCompletion(taskName, exitCodeFile, Long.MAX_VALUE, logTail);
+                log("Scheduled task '%s' finished with exit code: '%d'", taskName, exitCode);
+                if (exitCode != 0) {
+                    String errMsg = String.format("Process returned error code %d", exitCode);
+                    throw new IllegalStateException(errMsg);
+                }
             } finally {
-                final boolean swallowIoException = true;
-                Closeables.close(outputStream, swallowIoException);
+                logTail.close();
             }
-
-            ArgumentListBuilder runCommand = getRunCommand(launchScriptPath, taskName, command);
-            executeCommandAssertExitCode(runCommand, listener.getLogger());
         } finally {
-            FileUtils.deleteDirectoryTree(tempDir);
+            try {
+                if (isDefined(taskName)) {
+                    log("Removing scheduled task '%s'", taskName);
+                    delete(taskName);
+                }
+            } finally {
+                logFile.delete();
+                exitCodeFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Creates a scheduled task which writes the exit code of the command to <code>exitCodeFile</code>
+     * after the command finished. Use {@link #waitForCompletion(String, FilePath, long)} to wait for the exit code.
+     */
+    public void create(String taskName, String command, FilePath exitCodeFile) throws IOException, InterruptedException {
+        exitCodeFile.delete();
+
+        String exitCodePath = escapeSingleQuotes(exitCodeFile.getRemote());
+        String commandToUse = String.format(
+                "$exitCode = 0; try { %s; if ($LASTEXITCODE) { $exitCode = $LASTEXITCODE } } catch { $exitCode = 1 }; " +
+                        "Set-Content -Path '%s.tmp' -Value $exitCode; Move-Item -Force -Path '%s.tmp' -Destination '%s'",
+                command,
+                exitCodePath,
+                exitCodePath,
+                exitCodePath);
+
+        String args = getCreateCommand(taskName, commandToUse, pwd.getRemote());
+        executeCommandAssertExitCode(args, new NullOutputStream());
+    }
+
+    /**
+     * Blocks until the scheduled task created by {@link #create(String, String, FilePath)} writes its exit code.
+     * The exit code file is checked with an increasing interval. The state of the task is checked from time to time
+     * as well, so a task that was terminated before writing the exit code does not block the build.
+     *
+     * @return exit code of the task
+     */
+    public int waitForCompletion(String taskName, FilePath exitCodeFile, long timeoutMillis) throws IOException, InterruptedException {
+        return waitForCompletion(taskName, exitCodeFile, timeoutMillis, null);
+    }
+
+    private int waitForCompletion(String taskName, FilePath exitCodeFile, long timeoutMillis, @Nullable LogTail logTail) throws IOException, InterruptedException {
+        final long startTime = System.currentTimeMillis();
+        long sleepTime = MIN_POLL_INTERVAL_MS;
+        long lastStatusCheck = startTime;
+
+        while (true) {
+            if (logTail != null) {
+                logTail.forward();
+            }
+
+            Optional<Integer> exitCode = readExitCode(exitCodeFile);
+            if (exitCode.isPresent()) {
+                if (logTail != null) {
+                    logTail.forward();
+                }
+                return exitCode.get();
+            }
+
+            final long now = System.currentTimeMillis();
+            checkState(now - startTime < timeoutMillis, "Scheduled task %s is running too long", taskName);
+
+            if (now - lastStatusCheck >= statusCheckIntervalMillis) {
+                lastStatusCheck = now;
+                if (!isRunning(taskName)) {
+                    // the task may have written the exit code just after the previous check
+                    exitCode = readExitCode(exitCodeFile);
+                    if (exitCode.isPresent()) {
+                        continue;
+                    }
+
+                    if (logTail != null) {
+                        logTail.forward();
+                    }
+                    Optional<Integer> lastTaskResult = getLastTaskResult(taskName);
+                    checkState(lastTaskResult.isPresent(), "Scheduled task %s stopped without reporting its exit code", taskName);
+                    return lastTaskResult.get();
+                }
+            }
+
+            Thread.sleep(sleepTime);
+            sleepTime = Math.min(2 * sleepTime, MAX_POLL_INTERVAL_MS);
         }
     }
 
     public void run(String taskName) throws IOException, InterruptedException {
-        ArgumentListBuilder runCommand = getRunCommand(taskName);
+        String runCommand = getRunCommand(taskName);
         executeCommandAssertExitCode(runCommand, new NullOutputStream());
     }
 
@@ -93,7 +232,7 @@ public class ScheduledTasksApi {
     }
 
     public void delete(String taskName) throws IOException, InterruptedException {
-        ArgumentListBuilder command = getDeleteCommand(taskName);
+        String command = getDeleteCommand(taskName);
         executeCommandAssertExitCode(command, new NullOutputStream());
     }
 
@@ -102,10 +241,49 @@ public class ScheduledTasksApi {
         return Optional.fromNullable(taskInfo.get("State"));
     }
 
+    public Optional<Integer> getLastTaskResult(String taskName) throws IOException, InterruptedException {
+        OutputStreamCollector outputStream = new OutputStreamCollector(new PrintStream(new NullOutputStream()), charset);
+        try {
+            String command = String.format("(Get-ScheduledTaskInfo -TaskName \"%s\").LastTaskResult", taskName);
+            int exitCode = executeCommand(command, outputStream);
+            if (exitCode == 0) {
+                for (String line : outputStream.getLines()) {
+                    if (INTEGER_PATTERN.matcher(line).matches()) {
+                        return Optional.of(Integer.valueOf(line));
+                    }
+                }
+            }
+            return Optional.absent();
+        } finally {
+            final boolean swallowException = true;
+            Closeables.close(outputStream, swallowException);
+        }
+    }
+
+    private static Optional<Integer> readExitCode(FilePath exitCodeFile) throws IOException, InterruptedException {
+        if (!exitCodeFile.exists()) {
+            return Optional.absent();
+        }
+
+        String content = exitCodeFile.readToString().trim();
+        if (!INTEGER_PATTERN.matcher(content).matches()) {
+            return Optional.absent();
+        }
+        return Optional.of(Integer.valueOf(content));
+    }
+
+    private void log(String format, Object... args) {
+        listener.getLogger().println("# " + String.format(format, args));
+    }
+
+    private static String escapeSingleQuotes(String value) {
+        return value.replace("'", "''");
+    }
+
     private Map<String, String> getTask(String taskName) throws IOException, InterruptedException {
         OutputStreamCollector outputStream = new OutputStreamCollector(new PrintStream(new NullOutputStream()), charset);
         try {
-            ArgumentListBuilder command = getTaskCommand(taskName);
+            String command = getTaskCommand(taskName);
 
             int exitCode = executeCommand(command, outputStream);
             if (exitCode == 0) {
@@ -152,63 +330,172 @@ public class ScheduledTasksApi {
         return values;
     }
 
-    private void executeCommandAssertExitCode(ArgumentListBuilder argumentList, OutputStream out) throws IOException, InterruptedException {
-        int errorCode = executeCommand(argumentList, out);
+    private void executeCommandAssertExitCode(String command, OutputStream out) throws IOException, InterruptedException {
+        int errorCode = executeCommand(command, out);
         if (errorCode != 0) {
             String errMsg = String.format("Process returned error code %d", errorCode);
             throw new IllegalStateException(errMsg);
         }
     }
 
-    private int executeCommand(ArgumentListBuilder argumentList, OutputStream out) throws IOException, InterruptedException {
+    private int executeCommand(String command, OutputStream out) throws IOException, InterruptedException {
         OutputStreamCollector outputCollector = new OutputStreamCollector(new PrintStream(out), charset);
-        return this.launcher.launch().pwd(this.pwd).envs(this.env).cmds(argumentList).stdout(outputCollector).quiet(quiet).join();
+        try {
+            PowerShellHost hostToUse = getHost();
+            try {
+                return hostToUse.execute(command, outputCollector);
+            } catch (PersistentPowerShellHost.NotAcknowledgedException ex) {
+                // the command was not started, so it is safe to execute it again
+                log("PowerShell worker failed, falling back to a process per command: %s", ex.getMessage());
+                replaceHost(hostToUse, new ProcessPowerShellHost(env, pwd, launcher, quiet));
+                return getHost().execute(command, outputCollector);
+            } catch (IOException ex) {
+                if (hostToUse instanceof PersistentPowerShellHost) {
+                    // commands such as Register-ScheduledTask are not idempotent, so the failed one is not repeated
+                    log("PowerShell worker failed while executing a command, falling back to a process per command");
+                    replaceHost(hostToUse, new ProcessPowerShellHost(env, pwd, launcher, quiet));
+                }
+                throw ex;
+            }
+        } finally {
+            final boolean swallowException = true;
+            Closeables.close(outputCollector, swallowException);
+        }
     }
 
-    private ArgumentListBuilder getRunCommand(Path launchScriptPath, String taskName, String command) {
-        return new ArgumentListBuilder("powershell")
-                .add("-WindowStyle")
-                .add("Hidden")
-                .add("-File")
-                .addQuoted(launchScriptPath.toAbsolutePath().toString())
-                .add("-TaskName")
-                .add(taskName)
-                .add("-Command")
-                .add(command)
-                .add("-WorkingDir")
-                .add(pwd.getRemote());
+    private synchronized PowerShellHost getHost() throws IOException, InterruptedException {
+        if (host != null) {
+            return host;
+        }
+
+        if (persistentHost) {
+            try {
+                host = PersistentPowerShellHost.start(env, pwd, launcher, charset);
+                return host;
+            } catch (IOException ex) {
+                log("Failed to start PowerShell worker, falling back to a process per command: %s", ex.getMessage());
+            }
+        }
+
+        host = new ProcessPowerShellHost(env, pwd, launcher, quiet);
+        return host;
+    }
+
+    private synchronized void replaceHost(PowerShellHost failedHost, PowerShellHost newHost) {
+        if (host == failedHost) {
+            final boolean swallowException = true;
+            try {
+                Closeables.close(failedHost, swallowException);
+            } catch (IOException ex) {
+                // no-op
+            }
+            host = newHost;
+        }
     }
 
-    private ArgumentListBuilder getRunCommand(String taskName) {
+    private String getRunCommand(String taskName) {
         String command = String.format("Start-ScheduledTask -TaskName \"%s\"", taskName);
-        return getPowerShellCommand(command);
+        return command;
     }
 
-    private ArgumentListBuilder getDeleteCommand(String taskName) {
+    private String getDeleteCommand(String taskName) {
         String command = String.format("Unregister-ScheduledTask -TaskName \"%s\" -Confirm:$False", taskName);
-        return getPowerShellCommand(command);
+        return command;
     }
 
-    private ArgumentListBuilder getTaskCommand(String taskName) {
+    private String getTaskCommand(String taskName) {
         String command = String.format("Get-ScheduledTask | Where-Object {$_.TaskName -like \"%s\"} | ConvertTo-CSV", taskName);
-        return getPowerShellCommand(command);
+        return command;
     }
 
-    private ArgumentListBuilder getCreateCommand(String taskName, String command) {
+    private String getCreateCommand(String taskName, String command) {
         String commandToUse = String.format(
                 "Register-ScheduledTask -Action (New-ScheduledTaskAction -Execute powershell.exe -Argument \"-WindowStyle Hidden -EncodedCommand %s\") -TaskName \"%s\"",
-                encodeBase64(command),
+                ProcessPowerShellHost.encodeBase64(command),
                 taskName);
-        return getPowerShellCommand(commandToUse);
+        return commandToUse;
     }
 
-    private ArgumentListBuilder getPowerShellCommand(String command) {
-        return new ArgumentListBuilder("powershell.exe")
-                .add("-encodedCommand")
-                .add(encodeBase64(command));
+    private String getCreateCommand(String taskName, String command, String workingDir) {
+        String commandToUse = String.format(
+                "Register-ScheduledTask -Action (New-ScheduledTaskAction -Execute powershell.exe -Argument \"-WindowStyle Hidden -EncodedCommand %s\" -WorkingDirectory \"%s\") -TaskName \"%s\"",
+                ProcessPowerShellHost.encodeBase64(command),
+                workingDir,
+                taskName);
+        return commandToUse;
     }
 
-    private String encodeBase64(String value) {
-        return BaseEncoding.base64().encode(value.getBytes(Charsets.UTF_16LE));
+    /**
+     * Forwards lines appended to the log file of a scheduled task to the build log. Only the new part of the file
+     * is read, on the node which runs the task.
+     */
+    private final class LogTail {
+        private final FilePath logFile;
+        private final OutputStreamCollector outputStream;
+        private long offset;
+
+        LogTail(FilePath logFile) {
+            this.logFile = logFile;
+            this.outputStream = new OutputStreamCollector(listener.getLogger(), Charsets.UTF_8, Collections.<LineMatcher>emptyList());
+            this.offset = 0;
+        }
+
+        void forward() throws IOException, InterruptedException {
+            while (true) {
+                byte[] chunk = logFile.act(new ReadLogChunk(offset, MAX_LOG_CHUNK_LENGTH));
+                if (chunk == null) {
+                    return;
+                }
+
+                outputStream.write(chunk);
+                offset += chunk.length;
+                if (chunk.length < MAX_LOG_CHUNK_LENGTH) {
+                    return;
+                }
+            }
+        }
+
+        void close() throws IOException {
+            final boolean swallowIoException = true;
+            Closeables.close(outputStream, swallowIoException);
+        }
+    }
+
+    /**
+     * Reads at most <code>maxLength</code> bytes of a file starting at <code>offset</code>.
+     *
+     * @return null if the file does not exist
+     */
+    static final class ReadLogChunk extends MasterToSlaveFileCallable<byte[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final long offset;
+        private final int maxLength;
+
+        ReadLogChunk(long offset, int maxLength) {
+            this.offset = offset;
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        public byte[] invoke(File file, VirtualChannel channel) throws IOException, InterruptedException {
+            RandomAccessFile input;
+            try {
+                input = new RandomAccessFile(file, "r");
+            } catch (FileNotFoundException ex) {
+                return null;
+            }
+
+            try {
+                long available = Math.max(0, input.length() - offset);
+                byte[] chunk = new byte[(int) Math.min(available, maxLength)];
+                input.seek(offset);
+                input.readFully(chunk);
+                return chunk;
+            } finally {
+                final boolean swallowIoException = true;
+                Closeables.close(input, swallowIoException);
+            }
+        }
     }
 }
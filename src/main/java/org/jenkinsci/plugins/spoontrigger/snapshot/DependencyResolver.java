@@ -0,0 +1,127 @@
+package org.jenkinsci.plugins.spoontrigger.snapshot;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import hudson.model.BuildListener;
+import hudson.model.TaskListener;
+import hudson.util.StreamTaskListener;
+import org.jenkinsci.plugins.spoontrigger.commands.CommandDriver;
+import org.jenkinsci.plugins.spoontrigger.commands.turbo.PullCommand;
+import org.jenkinsci.plugins.spoontrigger.hub.HubApi;
+import org.jenkinsci.plugins.spoontrigger.hub.Image;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.jenkinsci.plugins.spoontrigger.utils.LogUtils.log;
+
+/**
+ * Resolves the latest versions of snapshot dependencies and pulls them to the local repository.
+ * <p>
+ * All dependencies are resolved against the Hub at the same time, while the number of concurrent pulls is limited
+ * by the <code>pullParallelism</code> system property prefixed with the class name. Resolved images are returned
+ * in the order of the dependencies.
+ * <p>
+ * The output of each pull is buffered and written to the build log when the pull completes, so the output of
+ * concurrent pulls is not interleaved.
+ */
+public class DependencyResolver {
+
+    private static final int PULL_PARALLELISM = Math.max(1, Integer.getInteger(DependencyResolver.class.getName() + ".pullParallelism", 3));
+
+    private final HubApi hubApi;
+    private final CommandDriver commandDriver;
+    private final BuildListener listener;
+    private final Semaphore pullPermits;
+
+    public DependencyResolver(HubApi hubApi, CommandDriver commandDriver, BuildListener listener) {
+        this(hubApi, commandDriver, listener, PULL_PARALLELISM);
+    }
+
+    DependencyResolver(HubApi hubApi, CommandDriver commandDriver, BuildListener listener, int pullParallelism) {
+        checkArgument(hubApi != null, "hubApi must be not null");
+        checkArgument(commandDriver != null, "commandDriver must be not null");
+        checkArgument(listener != null, "listener must be not null");
+
+        this.hubApi = hubApi;
+        this.commandDriver = commandDriver;
+        this.listener = listener;
+        this.pullPermits = new Semaphore(pullParallelism);
+    }
+
+    public List<Image> resolveAndPull(List<String> dependencies) throws InterruptedException {
+        if (dependencies.isEmpty()) {
+            return new ArrayList<Image>();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(dependencies.size(), new ThreadFactoryBuilder()
+                .setNameFormat("turbo-dependency-%d")
+                .setDaemon(true)
+                .build());
+        try {
+            List<Future<Image>> pendingImages = new ArrayList<Future<Image>>(dependencies.size());
+            for (final String dependency : dependencies) {
+                pendingImages.add(executor.submit(new Callable<Image>() {
+                    @Override
+                    public Image call() throws Exception {
+                        return resolveAndPull(dependency);
+                    }
+                }));
+            }
+
+            List<Image> images = new ArrayList<Image>(dependencies.size());
+            for (int position = 0; position < pendingImages.size(); ++position) {
+                try {
+                    images.add(pendingImages.get(position).get());
+                } catch (ExecutionException ex) {
+                    String errMsg = String.format("Failed to resolve dependency %s", dependencies.get(position));
+                    throw new IllegalStateException(errMsg, ex.getCause());
+                }
+            }
+            return images;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Image resolveAndPull(String dependency) throws InterruptedException {
+        Image image = Image.parse(dependency);
+
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        if (image.tag == null) {
+            image = hubApi.getLatestVersion(image);
+            log(listener, String.format("Resolved %s to %s in %d ms",
+                    dependency, image.printIdentifier(), stopwatch.elapsed(TimeUnit.MILLISECONDS)));
+        }
+
+        Charset charset = commandDriver.getCharset();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        pullPermits.acquire();
+        try {
+            stopwatch.reset().start();
+            pull(image, new StreamTaskListener(output, charset));
+        } finally {
+            pullPermits.release();
+            synchronized (listener) {
+                listener.getLogger().print(new String(output.toByteArray(), charset));
+            }
+        }
+        log(listener, String.format("Pulled %s in %d ms", image.printIdentifier(), stopwatch.elapsed(TimeUnit.MILLISECONDS)));
+        return image;
+    }
+
+    void pull(Image image, TaskListener output) {
+        PullCommand command = PullCommand.builder().image(image.printIdentifier()).build();
+        command.run(commandDriver.withListener(output));
+    }
+}
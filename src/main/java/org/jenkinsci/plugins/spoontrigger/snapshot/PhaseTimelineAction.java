@@ -0,0 +1,164 @@
+package org.jenkinsci.plugins.spoontrigger.snapshot;
+
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Start and end times of the phases of a snapshot build, persisted with the build.
+ * <p>
+ * Phases run one after another, so starting a phase ends the running one. A phase may be recorded more than once,
+ * e.g. cleanup of the Vagrant working directory and of the workspace, in which case its durations are summed up.
+ */
+public final class PhaseTimelineAction implements RunAction2 {
+
+    private static final String URL_NAME = "phaseTimeline";
+
+    private final List<PhaseRecord> records = new ArrayList<PhaseRecord>();
+    private transient Run<?, ?> owner;
+
+    public static PhaseTimelineAction getOrCreate(Run<?, ?> build) {
+        synchronized (PhaseTimelineAction.class) {
+            PhaseTimelineAction action = build.getAction(PhaseTimelineAction.class);
+            if (action == null) {
+                action = new PhaseTimelineAction();
+                build.addAction(action);
+            }
+            return action;
+        }
+    }
+
+    public void begin(SnapshotPhase phase) {
+        begin(phase, System.currentTimeMillis());
+    }
+
+    public void end() {
+        end(System.currentTimeMillis());
+    }
+
+    synchronized void begin(SnapshotPhase phase, long nowMillis) {
+        end(nowMillis);
+        records.add(new PhaseRecord(phase, nowMillis));
+    }
+
+    synchronized void end(long nowMillis) {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        PhaseRecord lastRecord = records.get(records.size() - 1);
+        if (lastRecord.isRunning()) {
+            lastRecord.endMillis = nowMillis;
+        }
+    }
+
+    public synchronized List<PhaseRecord> getRecords() {
+        return new ArrayList<PhaseRecord>(records);
+    }
+
+    /**
+     * @return total time spent in the phase, 0 if the phase did not run or is still running
+     */
+    public synchronized long getDurationMillis(SnapshotPhase phase) {
+        long durationMillis = 0;
+        for (PhaseRecord record : records) {
+            if (record.phase == phase) {
+                durationMillis += record.getDurationMillis();
+            }
+        }
+        return durationMillis;
+    }
+
+    public long getDurationSeconds(SnapshotPhase phase) {
+        return getDurationMillis(phase) / 1000;
+    }
+
+    /**
+     * @return seconds elapsed between the start of the first phase and the start of the record
+     */
+    public synchronized long getOffsetSeconds(PhaseRecord record) {
+        if (records.isEmpty()) {
+            return 0;
+        }
+        return (record.startMillis - records.get(0).startMillis) / 1000;
+    }
+
+    public synchronized long getTotalMillis() {
+        long durationMillis = 0;
+        for (PhaseRecord record : records) {
+            durationMillis += record.getDurationMillis();
+        }
+        return durationMillis;
+    }
+
+    public long getTotalSeconds() {
+        return getTotalMillis() / 1000;
+    }
+
+    public Run<?, ?> getOwner() {
+        return owner;
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> run) {
+        this.owner = run;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> run) {
+        this.owner = run;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "clock.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Snapshot Timeline";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    public static final class PhaseRecord {
+        private final SnapshotPhase phase;
+        private final long startMillis;
+        private long endMillis;
+
+        PhaseRecord(SnapshotPhase phase, long startMillis) {
+            this.phase = phase;
+            this.startMillis = startMillis;
+            this.endMillis = -1;
+        }
+
+        public SnapshotPhase getPhase() {
+            return phase;
+        }
+
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        public long getEndMillis() {
+            return endMillis;
+        }
+
+        public boolean isRunning() {
+            return endMillis < 0;
+        }
+
+        public long getDurationMillis() {
+            return isRunning() ? 0 : endMillis - startMillis;
+        }
+
+        public long getDurationSeconds() {
+            return getDurationMillis() / 1000;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.jenkinsci.plugins.spoontrigger.snapshot;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Action;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Durations of snapshot build phases across the recent builds of a project.
+ */
+public final class PhaseTrendAction implements Action {
+
+    private static final String URL_NAME = "phaseTrend";
+    private static final int MAX_BUILDS = 30;
+
+    private final AbstractProject<?, ?> project;
+
+    public PhaseTrendAction(AbstractProject<?, ?> project) {
+        this.project = project;
+    }
+
+    public AbstractProject<?, ?> getProject() {
+        return project;
+    }
+
+    public SnapshotPhase[] getPhases() {
+        return SnapshotPhase.values();
+    }
+
+    /**
+     * @return recent builds which recorded a timeline, newest first
+     */
+    public List<AbstractBuild<?, ?>> getBuilds() {
+        List<AbstractBuild<?, ?>> builds = new ArrayList<AbstractBuild<?, ?>>();
+        for (AbstractBuild<?, ?> build : project.getBuilds()) {
+            if (builds.size() >= MAX_BUILDS) {
+                break;
+            }
+            if (build.getAction(PhaseTimelineAction.class) != null) {
+                builds.add(build);
+            }
+        }
+        return builds;
+    }
+
+    public PhaseTimelineAction getTimeline(AbstractBuild<?, ?> build) {
+        return build.getAction(PhaseTimelineAction.class);
+    }
+
+    /**
+     * @return average duration of the phase in seconds over the recent builds which ran it
+     */
+    public long getAverageSeconds(SnapshotPhase phase) {
+        long totalMillis = 0;
+        int count = 0;
+        for (AbstractBuild<?, ?> build : getBuilds()) {
+            long durationMillis = build.getAction(PhaseTimelineAction.class).getDurationMillis(phase);
+            if (durationMillis > 0) {
+                totalMillis += durationMillis;
+                ++count;
+            }
+        }
+        return count == 0 ? 0 : totalMillis / count / 1000;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "graph.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Snapshot Phase Trend";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+}
@@ -0,0 +1,301 @@
+package org.jenkinsci.plugins.spoontrigger.snapshot;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.jenkinsci.plugins.spoontrigger.hub.Image;
+import org.jenkinsci.plugins.spoontrigger.utils.FileHashIndex;
+import org.jenkinsci.plugins.spoontrigger.vagrant.StagingStore;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.jenkinsci.plugins.spoontrigger.utils.FileUtils.quietDeleteDirectoryTree;
+
+/**
+ * Cache of images keyed by a digest of all inputs of the build which produced them.
+ * <p>
+ * Every entry is a directory named after the key, which holds the image and the name it should be imported as, if
+ * known. Entries are written to a temporary directory and renamed, so builds sharing the
+ * cache never see a partial entry. Least recently used entries are evicted when the total size exceeds the limit.
+ * <p>
+ * Builds share one instance per directory, see {@link #forDirectory(Path, long)}, so evictions are serialized. An
+ * entry returned by {@link #lookup(String)} is pinned until {@link #release(Entry)} is called, so it cannot be evicted
+ * while its image is imported.
+ */
+public final class SnapshotCache {
+
+    private static final String IMAGE_FILE = "image.svm";
+    private static final String IMAGE_NAME_FILE = "image.txt";
+    private static final String TEMP_PREFIX = ".tmp-";
+
+    private static final ConcurrentMap<Path, SnapshotCache> CACHES = new ConcurrentHashMap<Path, SnapshotCache>();
+
+    private final Path root;
+    private volatile long maxSizeBytes;
+    // guarded by this
+    private final Map<Path, Integer> pinnedEntries;
+
+    SnapshotCache(Path root, long maxSizeBytes) {
+        this.root = root;
+        this.maxSizeBytes = maxSizeBytes;
+        this.pinnedEntries = new HashMap<Path, Integer>();
+    }
+
+    /**
+     * @param maxSizeBytes limit of the total size of entries, replaces the limit used by the cache so far
+     */
+    public static SnapshotCache forDirectory(Path root, long maxSizeBytes) {
+        Path key = root.toAbsolutePath().normalize();
+        SnapshotCache cache = CACHES.get(key);
+        if (cache == null) {
+            SnapshotCache newCache = new SnapshotCache(key, maxSizeBytes);
+            cache = CACHES.putIfAbsent(key, newCache);
+            if (cache == null) {
+                cache = newCache;
+            }
+        }
+        cache.maxSizeBytes = maxSizeBytes;
+        return cache;
+    }
+
+    public static KeyBuilder keyBuilder() {
+        return new KeyBuilder();
+    }
+
+    /**
+     * @return entry pinned until {@link #release(Entry)} is called, absent if the cache does not have the key
+     */
+    public Optional<Entry> lookup(String key) throws IOException {
+        Path entryDir = root.resolve(key);
+        pin(entryDir);
+        boolean found = false;
+        try {
+            Path imagePath = entryDir.resolve(IMAGE_FILE);
+            if (!Files.isRegularFile(imagePath)) {
+                return Optional.absent();
+            }
+
+            Files.setLastModifiedTime(entryDir, FileTime.fromMillis(System.currentTimeMillis()));
+
+            Optional<Image> imageName = Optional.absent();
+            Path imageNamePath = entryDir.resolve(IMAGE_NAME_FILE);
+            if (Files.isRegularFile(imageNamePath)) {
+                List<String> lines = Files.readAllLines(imageNamePath, Charsets.UTF_8);
+                if (!lines.isEmpty()) {
+                    imageName = Optional.of(Image.parse(lines.get(0)));
+                }
+            }
+
+            found = true;
+            return Optional.of(new Entry(entryDir, imagePath, imageName));
+        } finally {
+            if (!found) {
+                unpin(entryDir);
+            }
+        }
+    }
+
+    /**
+     * Allows the entry to be evicted again, called once the image of the entry is not used any more.
+     */
+    public void release(Entry entry) {
+        unpin(entry.entryDir);
+    }
+
+    public void store(String key, Path imagePath, Optional<Image> imageName) throws IOException {
+        Path entryDir = root.resolve(key);
+        if (Files.exists(entryDir)) {
+            return;
+        }
+
+        Files.createDirectories(root);
+        Path tempDir = Files.createTempDirectory(root, TEMP_PREFIX);
+        try {
+            StagingStore.copy(imagePath, tempDir.resolve(IMAGE_FILE));
+            if (imageName.isPresent()) {
+                Files.write(tempDir.resolve(IMAGE_NAME_FILE), imageName.get().printIdentifier().getBytes(Charsets.UTF_8));
+            }
+
+            try {
+                Files.move(tempDir, entryDir, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                if (!Files.exists(entryDir)) {
+                    throw ex;
+                }
+                // stored concurrently by another build
+            }
+        } finally {
+            if (Files.exists(tempDir)) {
+                quietDeleteDirectoryTree(tempDir);
+            }
+        }
+
+        evictIfNeeded(entryDir);
+    }
+
+    private synchronized void pin(Path entryDir) {
+        Integer count = pinnedEntries.get(entryDir);
+        pinnedEntries.put(entryDir, count == null ? 1 : count + 1);
+    }
+
+    private synchronized void unpin(Path entryDir) {
+        Integer count = pinnedEntries.get(entryDir);
+        if (count == null || count <= 1) {
+            pinnedEntries.remove(entryDir);
+        } else {
+            pinnedEntries.put(entryDir, count - 1);
+        }
+    }
+
+    private synchronized void evictIfNeeded(Path keep) throws IOException {
+        File[] entryDirs = root.toFile().listFiles();
+        if (entryDirs == null) {
+            return;
+        }
+
+        List<File> entries = new ArrayList<File>();
+        long totalSize = 0;
+        for (File entryDir : entryDirs) {
+            if (!entryDir.isDirectory() || entryDir.getName().startsWith(TEMP_PREFIX)) {
+                continue;
+            }
+            entries.add(entryDir);
+            totalSize += getSize(entryDir.toPath());
+        }
+
+        if (totalSize <= maxSizeBytes) {
+            return;
+        }
+
+        Collections.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare(File left, File right) {
+                long leftModified = left.lastModified();
+                long rightModified = right.lastModified();
+                return leftModified < rightModified ? -1 : (leftModified == rightModified ? 0 : 1);
+            }
+        });
+
+        for (File entry : entries) {
+            if (totalSize <= maxSizeBytes) {
+                break;
+            }
+            if (entry.toPath().equals(keep) || pinnedEntries.containsKey(entry.toPath())) {
+                continue;
+            }
+
+            long size = getSize(entry.toPath());
+            quietDeleteDirectoryTree(entry.toPath());
+            if (!entry.exists()) {
+                totalSize -= size;
+            }
+        }
+    }
+
+    private static long getSize(Path directory) throws IOException {
+        final long[] size = new long[1];
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                size[0] += attrs.size();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return size[0];
+    }
+
+    public static final class Entry {
+        public final Path imagePath;
+        public final Optional<Image> imageName;
+
+        private final Path entryDir;
+
+        Entry(Path entryDir, Path imagePath, Optional<Image> imageName) {
+            this.entryDir = entryDir;
+            this.imagePath = imagePath;
+            this.imageName = imageName;
+        }
+    }
+
+    /**
+     * Digest of named build inputs. Names and values are length-prefixed, so different inputs never produce the same
+     * sequence of bytes.
+     */
+    public static final class KeyBuilder {
+        private static final int FORMAT_VERSION = 1;
+
+        private final Hasher hasher;
+
+        private KeyBuilder() {
+            this.hasher = Hashing.sha256().newHasher();
+            this.hasher.putInt(FORMAT_VERSION);
+        }
+
+        public KeyBuilder put(String name, @Nullable String value) {
+            putString(name);
+            if (value == null) {
+                hasher.putBoolean(false);
+            } else {
+                hasher.putBoolean(true);
+                putString(value);
+            }
+            return this;
+        }
+
+        public KeyBuilder put(String name, boolean value) {
+            return put(name, Boolean.toString(value));
+        }
+
+        public KeyBuilder putFile(String name, Path file) throws IOException {
+            return put(name, FileHashIndex.sha256(file));
+        }
+
+        /**
+         * Adds relative paths and content of all files in the directory, in a stable order.
+         */
+        public KeyBuilder putDirectory(String name, final Path directory) throws IOException {
+            final TreeMap<String, Path> files = new TreeMap<String, Path>();
+            Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    files.put(directory.relativize(file).toString().replace('\\', '/'), file);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+
+            put(name, Integer.toString(files.size()));
+            for (Map.Entry<String, Path> file : files.entrySet()) {
+                putFile(name + "/" + file.getKey(), file.getValue());
+            }
+            return this;
+        }
+
+        public String build() {
+            return hasher.hash().toString();
+        }
+
+        private void putString(String value) {
+            hasher.putInt(value.length());
+            hasher.putString(value, Charsets.UTF_8);
+        }
+    }
+}
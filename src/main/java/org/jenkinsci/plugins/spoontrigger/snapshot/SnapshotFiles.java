@@ -0,0 +1,155 @@
+package org.jenkinsci.plugins.spoontrigger.snapshot;
+
+import com.google.common.base.Optional;
+import com.google.common.io.Closeables;
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.jenkinsci.plugins.spoontrigger.hub.Image;
+import org.jenkinsci.plugins.spoontrigger.utils.FileUtils;
+import org.jenkinsci.plugins.spoontrigger.vagrant.VagrantEnvironment;
+
+import javax.xml.stream.XMLStreamException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * File operations of snapshot builds, executed on the node which runs the build in a single remote call each, so
+ * the build workspace and the Vagrant working directory do not have to be accessible from the controller.
+ */
+public final class SnapshotFiles {
+
+    public static final String IMAGE_NAME_FILE = "image.txt";
+
+    private SnapshotFiles() {
+    }
+
+    /**
+     * @return paths of <code>exe</code> and <code>msi</code> files in the directory, sorted by name
+     */
+    public static List<String> listInstallers(FilePath directory) throws IOException, InterruptedException {
+        return directory.act(new ListInstallers());
+    }
+
+    /**
+     * @return image name from the first line of <code>image.txt</code> in the directory
+     */
+    public static Optional<Image> loadImageName(FilePath directory) throws IOException, InterruptedException {
+        String imageName = directory.act(new ReadImageName());
+        if (imageName == null) {
+            return Optional.absent();
+        }
+        return Optional.of(Image.parse(imageName));
+    }
+
+    /**
+     * Removes paths from the snapshot in the output directory of a {@link VagrantEnvironment}, both from the xappl
+     * file and from the captured files.
+     *
+     * @return paths which were found in the xappl file
+     */
+    public static Set<String> removeFromSnapshot(FilePath outputDir, Collection<String> paths) throws IOException, InterruptedException {
+        if (paths.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return outputDir.act(new RemoveFromSnapshot(paths));
+    }
+
+    static final class ListInstallers extends MasterToSlaveFileCallable<List<String>> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public List<String> invoke(File directory, VirtualChannel channel) throws IOException, InterruptedException {
+            File[] files = directory.listFiles();
+            checkState(files != null, "Failed to list files in %s directory", directory);
+
+            ArrayList<String> installerPaths = new ArrayList<String>();
+            for (File file : files) {
+                final String extension = FileUtils.getExtension(file.toPath());
+                if ("exe".equals(extension) || "msi".equals(extension)) {
+                    installerPaths.add(file.getPath());
+                }
+            }
+
+            Collections.sort(installerPaths);
+            return installerPaths;
+        }
+    }
+
+    static final class ReadImageName extends MasterToSlaveFileCallable<String> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String invoke(File directory, VirtualChannel channel) throws IOException, InterruptedException {
+            Path imageFilePath = Paths.get(directory.getPath(), IMAGE_NAME_FILE);
+            if (!imageFilePath.toFile().exists()) {
+                return null;
+            }
+
+            BufferedReader reader = Files.newBufferedReader(imageFilePath, Charset.defaultCharset());
+            try {
+                return reader.readLine();
+            } finally {
+                final boolean swallowException = true;
+                Closeables.close(reader, swallowException);
+            }
+        }
+    }
+
+    static final class RemoveFromSnapshot extends MasterToSlaveFileCallable<Set<String>> {
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<String> paths;
+
+        RemoveFromSnapshot(Collection<String> paths) {
+            this.paths = new ArrayList<String>(paths);
+        }
+
+        @Override
+        public Set<String> invoke(File outputDir, VirtualChannel channel) throws IOException, InterruptedException {
+            Path xapplPath = Paths.get(outputDir.getPath(), VagrantEnvironment.XAPPL_FILE);
+            Set<String> removedPaths;
+            try {
+                removedPaths = new XapplStreamEditor(paths).edit(xapplPath);
+            } catch (XMLStreamException ex) {
+                throw new IOException(String.format("Failed to edit %s", xapplPath), ex);
+            }
+
+            Path snapshotDir = Paths.get(outputDir.getPath(), VagrantEnvironment.SNAPSHOT_DIRECTORY);
+            for (String relativePath : paths) {
+                Path pathToRemove = Paths.get(snapshotDir.toString(), relativePath);
+                try {
+                    File fileToRemove = pathToRemove.toFile();
+                    if (!fileToRemove.exists()) {
+                        continue;
+                    }
+
+                    if (fileToRemove.isDirectory()) {
+                        FileUtils.deleteDirectoryTree(pathToRemove);
+                    } else {
+                        Files.delete(pathToRemove);
+                    }
+                } catch (Throwable th) {
+                    String errorMsg = String.format("Failed to remove %s from snapshot", pathToRemove);
+                    throw new IllegalStateException(errorMsg, th);
+                }
+            }
+
+            return new HashSet<String>(removedPaths);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.jenkinsci.plugins.spoontrigger.snapshot;
+
+/**
+ * Steps of a snapshot build recorded in the {@link PhaseTimelineAction}, in the order they are executed.
+ */
+public enum SnapshotPhase {
+    CACHE_LOOKUP("Cache lookup"),
+    VM_ADMISSION("Wait for VM capacity"),
+    STAGING("Staging"),
+    PROVISION("Provision VM"),
+    POST_SNAPSHOT_SCRIPT("Post-snapshot script"),
+    REMOVE_FILES("Remove files"),
+    BUILD_IMAGE("Build image"),
+    IMPORT_IMAGE("Import image"),
+    CACHE_IMAGE("Cache image"),
+    RELEASE_VM("Release VM"),
+    CLEANUP("Cleanup");
+
+    private final String displayName;
+
+    SnapshotPhase(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
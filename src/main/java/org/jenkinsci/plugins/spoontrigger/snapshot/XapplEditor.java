@@ -1,108 +1,105 @@
 package org.jenkinsci.plugins.spoontrigger.snapshot;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import static com.google.common.base.Preconditions.checkState;
 
+/**
+ * Edits an xappl configuration using {@link XapplStreamEditor}. Files are looked up in an index of paths built
+ * when the document is loaded, removals are applied in a single pass when the document is saved.
+ */
 public class XapplEditor {
 
-    private DocumentBuilderFactory documentBuilderFactory;
-    private XPathFactory xpathFactory;
-    private Document document;
+    private Path sourcePath;
+    private byte[] sourceContent;
+    private Set<String> paths;
+    private final Set<String> pathsToRemove = new LinkedHashSet<String>();
 
     public void load(Path path) throws Exception {
-        document = createDocumentBuilder().parse(path.toFile());
-        document.normalize();
+        InputStream inputStream = new BufferedInputStream(Files.newInputStream(path));
+        try {
+            paths = createIndex(inputStream);
+        } finally {
+            Closeables.close(inputStream, true);
+        }
+
+        sourcePath = path;
+        sourceContent = null;
+        pathsToRemove.clear();
     }
 
     public void load(InputStream inputStream) throws Exception {
-        document = createDocumentBuilder().parse(inputStream);
-        document.normalize();
+        byte[] content = ByteStreams.toByteArray(inputStream);
+        paths = createIndex(new ByteArrayInputStream(content));
+
+        sourcePath = null;
+        sourceContent = content;
+        pathsToRemove.clear();
     }
 
     public void removeFile(String path) throws Exception {
-        checkState(document != null, "Document not loaded");
-
-        NodeList fileSystemElements = findFileSystemElements(path);
-        for (int nodePos = 0; nodePos < fileSystemElements.getLength(); ++nodePos) {
-            Node node = fileSystemElements.item(nodePos);
-            Node parent = node.getParentNode();
-            if (parent != null) {
-                parent.removeChild(node);
+        checkState(paths != null, "Document not loaded");
+
+        pathsToRemove.add(path);
+
+        String normalizedPath = XapplStreamEditor.normalize(path);
+        String childPrefix = normalizedPath + "\\";
+        Iterator<String> iterator = paths.iterator();
+        while (iterator.hasNext()) {
+            String indexedPath = iterator.next();
+            if (indexedPath.equals(normalizedPath) || indexedPath.startsWith(childPrefix)) {
+                iterator.remove();
             }
         }
     }
 
     public boolean fileExists(String path) throws Exception {
-        checkState(document != null, "Document not loaded");
-
-        NodeList fileSystemElements = findFileSystemElements(path);
-        return fileSystemElements.getLength() > 0;
-    }
+        checkState(paths != null, "Document not loaded");
 
-    public void save(Path path) throws TransformerException {
-        checkState(document != null, "Document not loaded");
-        TransformerFactory transformerFactory = TransformerFactory.newInstance();
-        Transformer transformer = transformerFactory.newTransformer();
-        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
-        transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-        DOMSource domSource = new DOMSource(document);
-        StreamResult streamResult = new StreamResult(path.toFile());
-        transformer.transform(domSource, streamResult);
+        return paths.contains(XapplStreamEditor.normalize(path));
     }
 
-    private DocumentBuilder createDocumentBuilder() throws Exception {
-        if (documentBuilderFactory == null) {
-            documentBuilderFactory = DocumentBuilderFactory.newInstance();
-        }
-        return documentBuilderFactory.newDocumentBuilder();
-    }
+    public void save(Path path) throws IOException, XMLStreamException {
+        checkState(paths != null, "Document not loaded");
 
-    private XPath createXPath() {
-        if (xpathFactory == null) {
-            xpathFactory = XPathFactory.newInstance();
+        XapplStreamEditor editor = new XapplStreamEditor(pathsToRemove);
+        if (sourcePath != null && Files.exists(path) && Files.isSameFile(sourcePath, path)) {
+            editor.edit(path);
+            return;
         }
-        return xpathFactory.newXPath();
-    }
 
-    private NodeList findFileSystemElements(String path) throws XPathExpressionException {
-        XPath xpath = createXPath();
+        InputStream inputStream = sourcePath != null
+                ? new BufferedInputStream(Files.newInputStream(sourcePath))
+                : new ByteArrayInputStream(sourceContent);
         try {
-            StringBuilder pathBuilder = new StringBuilder("/Configuration/Layers/Layer/Filesystem");
-            String[] segments = path.split("\\\\|/");
-            int lastPos = segments.length - 1;
-            for (int segmentPos = 0; segmentPos < lastPos; ++segmentPos) {
-                pathBuilder.append("/Directory[@name='");
-                pathBuilder.append(segments[segmentPos]);
-                pathBuilder.append("']");
+            OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(path));
+            try {
+                editor.edit(inputStream, outputStream);
+            } finally {
+                Closeables.close(outputStream, false);
             }
-
-            pathBuilder.append("/*[@name='");
-            pathBuilder.append(segments[lastPos]);
-            pathBuilder.append("']");
-
-            return (NodeList) xpath.evaluate(pathBuilder.toString(), document, XPathConstants.NODESET);
         } finally {
-            xpath.reset();
+            Closeables.close(inputStream, true);
         }
     }
+
+    private static Set<String> createIndex(InputStream inputStream) throws XMLStreamException {
+        XapplStreamEditor indexer = new XapplStreamEditor(Collections.<String>emptySet());
+        return indexer.listPaths(inputStream);
+    }
 }
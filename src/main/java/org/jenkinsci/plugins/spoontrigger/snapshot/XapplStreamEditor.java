@@ -0,0 +1,280 @@
+package org.jenkinsci.plugins.spoontrigger.snapshot;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.io.Closeables;
+
+import javax.annotation.Nullable;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Removes files and directories from an xappl configuration in a single pass over the document, without loading
+ * it into memory.
+ * <p>
+ * Paths are relative to the virtual filesystem root, for example <code>@SYSDRIVE@\tmp\vagrant-shell.ps1</code>,
+ * and are matched in every layer of the configuration.
+ */
+public class XapplStreamEditor {
+
+    private static final Pattern PATH_SEPARATOR_PATTERN = Pattern.compile("\\\\|/");
+    private static final String[] FILESYSTEM_PATH = {"Configuration", "Layers", "Layer", "Filesystem"};
+    private static final String DIRECTORY_ELEMENT = "Directory";
+    private static final QName NAME_ATTRIBUTE = new QName("name");
+    private static final String SEPARATOR = "\\";
+
+    private final Map<String, String> removals;
+    private final Set<String> directoriesToVisit;
+
+    private XMLInputFactory inputFactory;
+    private XMLOutputFactory outputFactory;
+
+    public XapplStreamEditor(Collection<String> pathsToRemove) {
+        this.removals = new HashMap<String, String>();
+        this.directoriesToVisit = new HashSet<String>();
+
+        for (String path : pathsToRemove) {
+            List<String> segments = split(path);
+            checkArgument(!segments.isEmpty(), "path (%s) must be not empty", path);
+
+            this.removals.put(Joiner.on(SEPARATOR).join(segments), path);
+            for (int length = 1; length < segments.size(); ++length) {
+                this.directoriesToVisit.add(Joiner.on(SEPARATOR).join(segments.subList(0, length)));
+            }
+        }
+    }
+
+    /**
+     * Replaces the xappl file with the edited version.
+     *
+     * @return paths that were found and removed
+     */
+    public Set<String> edit(Path xapplPath) throws IOException, XMLStreamException {
+        Path tempPath = Files.createTempFile(xapplPath.toAbsolutePath().getParent(), "snapshot", ".xappl.tmp");
+        try {
+            Set<String> foundPaths;
+            InputStream inputStream = new BufferedInputStream(Files.newInputStream(xapplPath));
+            try {
+                OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(tempPath));
+                try {
+                    foundPaths = edit(inputStream, outputStream);
+                } finally {
+                    Closeables.close(outputStream, false);
+                }
+            } finally {
+                Closeables.close(inputStream, true);
+            }
+
+            Files.move(tempPath, xapplPath, StandardCopyOption.REPLACE_EXISTING);
+            return foundPaths;
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * @return paths that were found and removed
+     */
+    public Set<String> edit(InputStream inputStream, OutputStream outputStream) throws XMLStreamException {
+        Set<String> foundPaths = new LinkedHashSet<String>();
+        process(inputStream, outputStream, foundPaths, null);
+        return foundPaths;
+    }
+
+    /**
+     * @return normalized paths of all files and directories in the filesystem of the xappl configuration
+     */
+    Set<String> listPaths(InputStream inputStream) throws XMLStreamException {
+        Set<String> paths = new HashSet<String>();
+        process(inputStream, null, new HashSet<String>(), paths);
+        return paths;
+    }
+
+    static String normalize(String path) {
+        return Joiner.on(SEPARATOR).join(split(path));
+    }
+
+    private static List<String> split(String path) {
+        return Splitter.on(PATH_SEPARATOR_PATTERN).omitEmptyStrings().splitToList(path);
+    }
+
+    private void process(InputStream inputStream, @Nullable OutputStream outputStream, Set<String> foundPaths,
+                         @Nullable Set<String> allPaths) throws XMLStreamException {
+        XMLEventReader reader = getInputFactory().createXMLEventReader(inputStream);
+        XMLEventWriter writer = outputStream == null ? null : getOutputFactory().createXMLEventWriter(outputStream, "UTF-8");
+        try {
+            Deque<Frame> frames = new ArrayDeque<Frame>();
+            XMLEvent pendingWhitespace = null;
+            int skipDepth = 0;
+
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+
+                if (skipDepth > 0) {
+                    if (event.isStartElement()) {
+                        ++skipDepth;
+                    } else if (event.isEndElement()) {
+                        --skipDepth;
+                    }
+                    continue;
+                }
+
+                if (event.isCharacters() && event.asCharacters().isWhiteSpace()) {
+                    // hold indentation until we know whether the next element is removed
+                    if (pendingWhitespace != null && writer != null) {
+                        writer.add(pendingWhitespace);
+                    }
+                    pendingWhitespace = event;
+                    continue;
+                }
+
+                if (event.isStartElement()) {
+                    StartElement element = event.asStartElement();
+                    Frame parent = frames.peek();
+                    String path = getFilesystemPath(parent, element);
+
+                    if (path != null) {
+                        if (allPaths != null) {
+                            allPaths.add(path);
+                        }
+
+                        String pathToRemove = removals.get(path);
+                        if (pathToRemove != null) {
+                            foundPaths.add(pathToRemove);
+                            pendingWhitespace = null;
+                            skipDepth = 1;
+                            continue;
+                        }
+                    }
+
+                    frames.push(createFrame(parent, element, path, allPaths != null));
+                } else if (event.isEndElement()) {
+                    frames.pop();
+                }
+
+                if (writer != null) {
+                    if (pendingWhitespace != null) {
+                        writer.add(pendingWhitespace);
+                    }
+                    writer.add(event);
+                }
+                pendingWhitespace = null;
+            }
+
+            if (writer != null) {
+                if (pendingWhitespace != null) {
+                    writer.add(pendingWhitespace);
+                }
+                writer.flush();
+            }
+        } finally {
+            reader.close();
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    @Nullable
+    private static String getFilesystemPath(@Nullable Frame parent, StartElement element) {
+        if (parent == null || !parent.isFilesystemEntryContainer()) {
+            return null;
+        }
+
+        Attribute name = element.getAttributeByName(NAME_ATTRIBUTE);
+        if (name == null) {
+            return null;
+        }
+
+        return parent.path == null ? name.getValue() : parent.path + SEPARATOR + name.getValue();
+    }
+
+    private Frame createFrame(@Nullable Frame parent, StartElement element, @Nullable String path, boolean visitAll) {
+        String localName = element.getName().getLocalPart();
+
+        if (parent == null) {
+            return FILESYSTEM_PATH[0].equals(localName) ? Frame.onFilesystemPath(1) : Frame.IGNORED;
+        }
+
+        if (parent.filesystemPathDepth > 0 && parent.filesystemPathDepth < FILESYSTEM_PATH.length) {
+            String expectedName = FILESYSTEM_PATH[parent.filesystemPathDepth];
+            return expectedName.equals(localName) ? Frame.onFilesystemPath(parent.filesystemPathDepth + 1) : Frame.IGNORED;
+        }
+
+        if (path != null && DIRECTORY_ELEMENT.equals(localName) && (visitAll || directoriesToVisit.contains(path))) {
+            return Frame.directory(path);
+        }
+        return Frame.IGNORED;
+    }
+
+    private XMLInputFactory getInputFactory() {
+        if (inputFactory == null) {
+            inputFactory = XMLInputFactory.newInstance();
+            inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        }
+        return inputFactory;
+    }
+
+    private XMLOutputFactory getOutputFactory() {
+        if (outputFactory == null) {
+            outputFactory = XMLOutputFactory.newInstance();
+        }
+        return outputFactory;
+    }
+
+    private static final class Frame {
+        static final Frame IGNORED = new Frame(0, null, false);
+
+        // number of matched elements of /Configuration/Layers/Layer/Filesystem
+        final int filesystemPathDepth;
+        @Nullable
+        final String path;
+        final boolean directory;
+
+        private Frame(int filesystemPathDepth, @Nullable String path, boolean directory) {
+            this.filesystemPathDepth = filesystemPathDepth;
+            this.path = path;
+            this.directory = directory;
+        }
+
+        static Frame onFilesystemPath(int depth) {
+            return new Frame(depth, null, false);
+        }
+
+        static Frame directory(String path) {
+            return new Frame(0, path, true);
+        }
+
+        boolean isFilesystemEntryContainer() {
+            return directory || filesystemPathDepth == FILESYSTEM_PATH.length;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.jenkinsci.plugins.spoontrigger.utils;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+
+import java.util.List;
+
+/**
+ * Directories waiting for deletion by the {@link TrashCan}. Exposed on the <i>Manage Jenkins</i> page.
+ */
+@Extension
+public final class CleanupBacklog extends ManagementLink {
+
+    private static final String URL_NAME = "turbo-cleanup-backlog";
+
+    public List<TrashCan.Entry> getEntries() {
+        return TrashCan.getInstance().getEntries();
+    }
+
+    public int getPendingCount() {
+        return TrashCan.getInstance().getPendingCount();
+    }
+
+    public long getPendingBytes() {
+        return TrashCan.getInstance().getPendingBytes();
+    }
+
+    public long getDeletedCount() {
+        return TrashCan.getInstance().getDeletedCount();
+    }
+
+    public long getDeletedBytes() {
+        return TrashCan.getInstance().getDeletedBytes();
+    }
+
+    public long getFailedAttempts() {
+        return TrashCan.getInstance().getFailedAttempts();
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "folder-delete.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Turbo Cleanup Backlog";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Build working directories moved to trash and waiting for deletion in the background.";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+}
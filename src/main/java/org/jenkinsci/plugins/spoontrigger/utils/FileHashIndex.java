@@ -0,0 +1,51 @@
+package org.jenkinsci.plugins.spoontrigger.utils;
+
+import com.google.common.hash.Hashing;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * SHA-256 hashes of files cached by path, size and modification time, so large installers are read only once as
+ * long as they do not change.
+ */
+public final class FileHashIndex {
+
+    private static final ConcurrentMap<Path, Entry> INDEX = new ConcurrentHashMap<Path, Entry>();
+
+    public static String sha256(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return sha256(file, attributes);
+    }
+
+    public static String sha256(Path file, BasicFileAttributes attributes) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+
+        Entry entry = INDEX.get(key);
+        if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+            return entry.hash;
+        }
+
+        String hash = com.google.common.io.Files.hash(file.toFile(), Hashing.sha256()).toString();
+        INDEX.put(key, new Entry(size, lastModified, hash));
+        return hash;
+    }
+
+    private static final class Entry {
+        final long size;
+        final long lastModified;
+        final String hash;
+
+        Entry(long size, long lastModified, String hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+}
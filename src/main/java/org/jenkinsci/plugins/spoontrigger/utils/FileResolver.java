@@ -1,5 +1,6 @@
 package org.jenkinsci.plugins.spoontrigger.utils;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
@@ -9,17 +10,34 @@ import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.model.AbstractBuild;
 import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static org.jenkinsci.plugins.spoontrigger.Messages.*;
 
+/**
+ * Finds a file in the locations given by the probing strategy.
+ * <p>
+ * All locations are checked on the node running the build in a single remote call. Files found are remembered for
+ * the build, so later build steps resolving the same path do not call the node again. Files not found are not
+ * remembered, because they may be created by a later build step.
+ */
 public final class FileResolver {
 
+    private static final Map<AbstractBuild, Map<String, Resolution>> RESOLVED_FILES = new WeakHashMap<AbstractBuild, Map<String, Resolution>>();
+
     private Optional<TaskListener> taskListener = Optional.absent();
     private Optional<AbstractBuild> build = Optional.absent();
     private Optional<EnvVars> env = Optional.absent();
@@ -59,57 +77,170 @@ public final class FileResolver {
     }
 
     public Optional<FilePath> resolve(String filePath) {
+        Optional<Resolution> resolution = probe(filePath);
+        if (resolution.isPresent()) {
+            return Optional.of(resolution.get().path);
+        }
+        return Optional.absent();
+    }
+
+    public Optional<Resolution> probe(String filePath) {
         checkArgument(!Strings.isNullOrEmpty(filePath), REQUIRE_NOT_NULL_OR_EMPTY_S, "filePath");
         checkState(this.build.isPresent(), REQUIRE_PRESENT_S, "build");
         checkState(this.taskListener.isPresent(), REQUIRE_PRESENT_S, "listener");
 
         String expandedPath = this.env.isPresent() ? this.env.get().expand(filePath) : filePath;
+        AbstractBuild buildToUse = this.build.get();
+
+        List<String> candidates = new ArrayList<String>(this.probingStrategy.size());
         for (Probe strategy : this.probingStrategy) {
-            Optional<FilePath> resolvedPath = strategy.resolve(expandedPath, this.build.get(), this.taskListener.get());
-            if (resolvedPath.isPresent()) {
-                return resolvedPath;
+            Optional<String> candidate = strategy.getCandidate(expandedPath, buildToUse);
+            if (candidate.isPresent()) {
+                candidates.add(candidate.get());
             }
         }
 
-        return Optional.absent();
+        String cacheKey = Joiner.on(File.pathSeparatorChar).join(candidates);
+        Optional<Resolution> cached = getResolved(buildToUse, cacheKey);
+        if (cached.isPresent()) {
+            return cached;
+        }
+
+        FilePath node = getNodeRoot(buildToUse);
+        ProbeResult result;
+        try {
+            result = node.act(new ProbeCallable(candidates));
+        } catch (Exception ex) {
+            String msg = String.format("Failed to find the file at (%s)%n%s", Joiner.on(", ").join(candidates), Throwables.getStackTraceAsString(ex));
+            this.taskListener.get().error(msg);
+            return Optional.absent();
+        }
+
+        for (String error : result.errors) {
+            this.taskListener.get().error(error);
+        }
+
+        if (result.index < 0) {
+            return Optional.absent();
+        }
+
+        Resolution resolution = new Resolution(new FilePath(node.getChannel(), candidates.get(result.index)), result.directory);
+        putResolved(buildToUse, cacheKey, resolution);
+        return Optional.of(resolution);
+    }
+
+    private static FilePath getNodeRoot(AbstractBuild build) {
+        FilePath workspace = build.getWorkspace();
+        if (workspace != null) {
+            return workspace;
+        }
+        return new FilePath(new File("."));
+    }
+
+    private static Optional<Resolution> getResolved(AbstractBuild build, String cacheKey) {
+        synchronized (RESOLVED_FILES) {
+            Map<String, Resolution> resolvedFiles = RESOLVED_FILES.get(build);
+            if (resolvedFiles == null) {
+                return Optional.absent();
+            }
+            return Optional.fromNullable(resolvedFiles.get(cacheKey));
+        }
+    }
+
+    private static void putResolved(AbstractBuild build, String cacheKey, Resolution resolution) {
+        synchronized (RESOLVED_FILES) {
+            Map<String, Resolution> resolvedFiles = RESOLVED_FILES.get(build);
+            if (resolvedFiles == null) {
+                resolvedFiles = new HashMap<String, Resolution>();
+                RESOLVED_FILES.put(build, resolvedFiles);
+            }
+            resolvedFiles.put(cacheKey, resolution);
+        }
+    }
+
+    public static final class Resolution {
+        public final FilePath path;
+        public final boolean directory;
+
+        Resolution(FilePath path, boolean directory) {
+            this.path = path;
+            this.directory = directory;
+        }
     }
 
     public static enum Probe {
         WORKING_DIR {
             @Override
-            public Optional<FilePath> resolve(String filePath, AbstractBuild build, TaskListener listener) {
-                File file = new File(filePath);
-                FilePath jenkinsFilePath = new FilePath(file);
-                return resolve(jenkinsFilePath, listener);
+            Optional<String> getCandidate(String filePath, AbstractBuild build) {
+                return Optional.of(filePath);
             }
         },
         MODULE {
             @Override
-            public Optional<FilePath> resolve(String filePath, AbstractBuild build, TaskListener listener) {
-                FilePath jenkinsFilePath = new FilePath(build.getModuleRoot(), filePath);
-                return resolve(jenkinsFilePath, listener);
+            Optional<String> getCandidate(String filePath, AbstractBuild build) {
+                return childOf(build.getModuleRoot(), filePath);
             }
         },
         WORKSPACE {
             @Override
-            public Optional<FilePath> resolve(String filePath, AbstractBuild build, TaskListener listener) {
-                FilePath jenkinsFilePath = new FilePath(build.getWorkspace(), filePath);
-                return resolve(jenkinsFilePath, listener);
+            Optional<String> getCandidate(String filePath, AbstractBuild build) {
+                return childOf(build.getWorkspace(), filePath);
             }
         };
 
-        public abstract Optional<FilePath> resolve(String filePath, AbstractBuild build, TaskListener listener);
+        /**
+         * @return path to check on the node running the build, absent if the location is not available
+         */
+        abstract Optional<String> getCandidate(String filePath, AbstractBuild build);
 
-        Optional<FilePath> resolve(FilePath filePath, TaskListener listener) {
-            try {
-                if (filePath.exists()) {
-                    return Optional.of(filePath);
+        private static Optional<String> childOf(FilePath root, String filePath) {
+            if (root == null) {
+                return Optional.absent();
+            }
+            return Optional.of(new FilePath(root, filePath).getRemote());
+        }
+    }
+
+    /**
+     * Returns the first existing file, so all locations are checked in a single remote call.
+     */
+    static final class ProbeCallable extends MasterToSlaveFileCallable<ProbeResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> candidates;
+
+        ProbeCallable(List<String> candidates) {
+            this.candidates = candidates;
+        }
+
+        @Override
+        public ProbeResult invoke(File nodeRoot, VirtualChannel channel) throws IOException, InterruptedException {
+            List<String> errors = new ArrayList<String>();
+            for (int index = 0; index < candidates.size(); ++index) {
+                File file = new File(candidates.get(index));
+                try {
+                    if (file.exists()) {
+                        return new ProbeResult(index, file.isDirectory(), errors);
+                    }
+                } catch (SecurityException ex) {
+                    errors.add(String.format("Failed to find the file at (%s)%n%s", file, Throwables.getStackTraceAsString(ex)));
                 }
-            } catch (Exception ex) {
-                String msg = String.format("Failed to find the file at (%s)%n%s", filePath.getRemote(), Throwables.getStackTraceAsString(ex));
-                listener.error(msg);
             }
-            return Optional.absent();
+            return new ProbeResult(-1, false, errors);
+        }
+    }
+
+    static final class ProbeResult implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final int index;
+        final boolean directory;
+        final ArrayList<String> errors;
+
+        ProbeResult(int index, boolean directory, List<String> errors) {
+            this.index = index;
+            this.directory = directory;
+            this.errors = new ArrayList<String>(errors);
         }
     }
 }
@@ -10,6 +10,7 @@ public final class Patterns {
     private static final Pattern WHITESPACE_BETWEEN_WORDS_PATTERN = Pattern.compile("\\S+\\s+\\S+");
     private static final Pattern VERSION_NUMBER_PATTERN = Pattern.compile("^\\d+\\.\\d+\\.\\d+\\.\\d+$");
     private static final Pattern REPOSITORY_NAME_PATTERN = Pattern.compile("^https?://([^/]+)/([^/]+)/([^/]+)$");
+    private static final Pattern CONTAINS_GROUP_PATTERN = Pattern.compile("[^\\\\]*\\(.*[^\\\\]\\)");
 
     public static boolean isSingleWord(@Nullable String value) {
         return Predicates.SINGLE_WORD.apply(value);
@@ -27,6 +28,13 @@ public final class Patterns {
         return Predicates.VERSION_NUMBER.apply(value);
     }
 
+    /**
+     * @return true if the pattern is not null and contains a matching group
+     */
+    public static boolean containsGroup(@Nullable Pattern pattern) {
+        return pattern != null && matches(pattern.toString(), CONTAINS_GROUP_PATTERN);
+    }
+
     public static boolean matches(String value, Pattern pattern) {
         return pattern.matcher(value).find();
     }
@@ -0,0 +1,257 @@
+package org.jenkinsci.plugins.spoontrigger.utils;
+
+import hudson.FilePath;
+import hudson.model.Node;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Temporary directories for heavy build I/O, such as Vagrant working directories, snapshots and transcripts, striped
+ * over several roots.
+ * <p>
+ * A new directory is placed on the root with the fewest directories in use, ties are broken by the free space. Roots
+ * with less free space than the configured minimum are out of rotation, unless all of them are, in which case the root
+ * with the most free space is used. Directories in use are counted per node for all builds running in this JVM.
+ * <p>
+ * Roots of a remote node are inspected and created through its channel, so the paths are kept as configured and
+ * are not resolved against the file system of the controller.
+ */
+public class TempRoots {
+
+    public static final Path DEFAULT_ROOT = Paths.get("C:/CI/Temp");
+
+    private static final String LOCAL_NODE = "";
+    private static final Map<String, Map<Path, Integer>> DIRECTORIES_IN_USE = new HashMap<String, Map<Path, Integer>>();
+
+    private final String nodeName;
+    private final VirtualChannel channel;
+    private final List<Path> roots;
+    private final long minFreeBytes;
+
+    public TempRoots(List<Path> roots, long minFreeBytes) {
+        this(LOCAL_NODE, null, roots, minFreeBytes);
+    }
+
+    /**
+     * @param channel channel of the node, null for the controller
+     */
+    TempRoots(String nodeName, VirtualChannel channel, List<Path> roots, long minFreeBytes) {
+        checkArgument(!roots.isEmpty(), "roots must be not empty");
+
+        this.nodeName = channel == null ? LOCAL_NODE : nodeName;
+        this.channel = channel;
+        this.roots = new ArrayList<Path>(roots.size());
+        for (Path root : roots) {
+            this.roots.add(channel == null ? root.toAbsolutePath().normalize() : root);
+        }
+        this.minFreeBytes = minFreeBytes;
+    }
+
+    /**
+     * @return roots configured for the node with the {@link TempRootsProperty}, or {@link #DEFAULT_ROOT}
+     */
+    public static TempRoots forNode(Node node) {
+        if (node == null) {
+            return new TempRoots(Collections.singletonList(DEFAULT_ROOT), 0);
+        }
+
+        VirtualChannel channel = node instanceof Jenkins ? null : node.getChannel();
+        TempRootsProperty property = node.getNodeProperties().get(TempRootsProperty.class);
+        if (property == null) {
+            return new TempRoots(node.getNodeName(), channel, Collections.singletonList(DEFAULT_ROOT), 0);
+        }
+        return property.getTempRoots(node.getNodeName(), channel);
+    }
+
+    public List<Path> getRoots() {
+        return Collections.unmodifiableList(roots);
+    }
+
+    /**
+     * Creates a new directory on the selected root. The lease must be released once the directory is deleted.
+     */
+    public Lease createTempDirectory(String prefix) throws IOException, InterruptedException {
+        Path root = acquireRoot();
+        try {
+            if (channel == null) {
+                Files.createDirectories(root);
+                return new Lease(nodeName, channel, root, Files.createTempDirectory(root, prefix));
+            }
+
+            FilePath remoteRoot = new FilePath(channel, root.toString());
+            remoteRoot.mkdirs();
+            return new Lease(nodeName, channel, root, Paths.get(remoteRoot.createTempDir(prefix, null).getRemote()));
+        } catch (IOException ex) {
+            releaseRoot(nodeName, root);
+            throw ex;
+        } catch (InterruptedException ex) {
+            releaseRoot(nodeName, root);
+            throw ex;
+        } catch (RuntimeException ex) {
+            releaseRoot(nodeName, root);
+            throw ex;
+        }
+    }
+
+    /**
+     * @return directories in use on the root of the controller
+     */
+    public static int getDirectoriesInUse(Path root) {
+        return getDirectoriesInUse(LOCAL_NODE, root.toAbsolutePath().normalize());
+    }
+
+    private static synchronized int getDirectoriesInUse(String nodeName, Path root) {
+        Map<Path, Integer> nodeDirectories = DIRECTORIES_IN_USE.get(nodeName);
+        Integer inUse = nodeDirectories == null ? null : nodeDirectories.get(root);
+        return inUse == null ? 0 : inUse;
+    }
+
+    private long getNodeUsableSpace(Path root) {
+        if (channel == null) {
+            return getUsableSpace(root);
+        }
+
+        try {
+            return new FilePath(channel, root.toString()).act(new UsableSpaceCallable());
+        } catch (IOException ex) {
+            return 0;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+
+    long getUsableSpace(Path root) {
+        Path existing = root;
+        while (existing != null && !Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        return existing == null ? 0 : existing.toFile().getUsableSpace();
+    }
+
+    private Path acquireRoot() {
+        // free space of remote roots is measured before taking the lock shared by all builds
+        List<Long> usableSpaces = new ArrayList<Long>(roots.size());
+        for (Path root : roots) {
+            usableSpaces.add(getNodeUsableSpace(root));
+        }
+
+        synchronized (TempRoots.class) {
+            Path selected = null;
+            long selectedSpace = 0;
+            boolean selectedInRotation = false;
+            for (int index = 0; index < roots.size(); ++index) {
+                Path root = roots.get(index);
+                long usableSpace = usableSpaces.get(index);
+                boolean inRotation = usableSpace >= minFreeBytes;
+                if (selected == null || isBetter(root, usableSpace, inRotation, selected, selectedSpace, selectedInRotation)) {
+                    selected = root;
+                    selectedSpace = usableSpace;
+                    selectedInRotation = inRotation;
+                }
+            }
+
+            Map<Path, Integer> nodeDirectories = DIRECTORIES_IN_USE.get(nodeName);
+            if (nodeDirectories == null) {
+                nodeDirectories = new HashMap<Path, Integer>();
+                DIRECTORIES_IN_USE.put(nodeName, nodeDirectories);
+            }
+            nodeDirectories.put(selected, getDirectoriesInUse(nodeName, selected) + 1);
+            return selected;
+        }
+    }
+
+    private boolean isBetter(Path root, long space, boolean inRotation, Path selected, long selectedSpace, boolean selectedInRotation) {
+        if (inRotation != selectedInRotation) {
+            return inRotation;
+        }
+
+        if (!inRotation) {
+            return space > selectedSpace;
+        }
+
+        int inUse = getDirectoriesInUse(nodeName, root);
+        int selectedInUse = getDirectoriesInUse(nodeName, selected);
+        if (inUse != selectedInUse) {
+            return inUse < selectedInUse;
+        }
+        return space > selectedSpace;
+    }
+
+    private static void releaseRoot(String nodeName, Path root) {
+        synchronized (TempRoots.class) {
+            Map<Path, Integer> nodeDirectories = DIRECTORIES_IN_USE.get(nodeName);
+            if (nodeDirectories == null) {
+                return;
+            }
+
+            int inUse = getDirectoriesInUse(nodeName, root) - 1;
+            if (inUse > 0) {
+                nodeDirectories.put(root, inUse);
+            } else {
+                nodeDirectories.remove(root);
+            }
+
+            if (nodeDirectories.isEmpty()) {
+                DIRECTORIES_IN_USE.remove(nodeName);
+            }
+        }
+    }
+
+    public static final class Lease {
+        public final Path root;
+        public final Path directory;
+        private final String nodeName;
+        private final VirtualChannel channel;
+        private boolean released;
+
+        Lease(String nodeName, VirtualChannel channel, Path root, Path directory) {
+            this.nodeName = nodeName;
+            this.channel = channel;
+            this.root = root;
+            this.directory = directory;
+        }
+
+        /**
+         * @return the directory on the node it was created on
+         */
+        public FilePath getDirectoryOnNode() {
+            return new FilePath(channel, directory.toString());
+        }
+
+        public synchronized void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            releaseRoot(nodeName, root);
+        }
+    }
+
+    private static final class UsableSpaceCallable extends MasterToSlaveFileCallable<Long> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Long invoke(File root, VirtualChannel channel) throws IOException, InterruptedException {
+            File existing = root;
+            while (existing != null && !existing.exists()) {
+                existing = existing.getParentFile();
+            }
+            return existing == null ? 0L : existing.getUsableSpace();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.jenkinsci.plugins.spoontrigger.utils;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Node;
+import hudson.remoting.VirtualChannel;
+import hudson.slaves.NodeProperty;
+import hudson.slaves.NodePropertyDescriptor;
+import hudson.util.FormValidation;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Roots for temporary build directories on a node, see {@link TempRoots}.
+ */
+public final class TempRootsProperty extends NodeProperty<Node> {
+
+    private static final Pattern SPLIT_ROOTS_PATTERN = Pattern.compile("[\\r\\n;]+");
+
+    private final String roots;
+    private final int minFreeSpaceGb;
+
+    @DataBoundConstructor
+    public TempRootsProperty(String roots, int minFreeSpaceGb) {
+        this.roots = Util.fixEmptyAndTrim(roots);
+        this.minFreeSpaceGb = Math.max(minFreeSpaceGb, 0);
+    }
+
+    public String getRoots() {
+        return roots;
+    }
+
+    public int getMinFreeSpaceGb() {
+        return minFreeSpaceGb;
+    }
+
+    /**
+     * @param channel channel of the node, null for the controller
+     */
+    public TempRoots getTempRoots(String nodeName, VirtualChannel channel) {
+        List<Path> paths = parseRoots(roots);
+        if (paths.isEmpty()) {
+            paths.add(TempRoots.DEFAULT_ROOT);
+        }
+        return new TempRoots(nodeName, channel, paths, minFreeSpaceGb * 1024L * 1024L * 1024L);
+    }
+
+    static List<Path> parseRoots(String roots) {
+        List<Path> paths = new ArrayList<Path>();
+        if (roots == null) {
+            return paths;
+        }
+
+        for (String root : SPLIT_ROOTS_PATTERN.split(roots)) {
+            String rootToUse = root.trim();
+            if (!rootToUse.isEmpty()) {
+                paths.add(Paths.get(rootToUse));
+            }
+        }
+        return paths;
+    }
+
+    @Extension
+    public static final class DescriptorImpl extends NodePropertyDescriptor {
+        @Override
+        public String getDisplayName() {
+            return "Temporary directories for Turbo builds";
+        }
+
+        public FormValidation doCheckRoots(@QueryParameter String value) {
+            for (Path root : parseRoots(Util.fixEmptyAndTrim(value))) {
+                if (!root.isAbsolute()) {
+                    return FormValidation.warning(String.format("Path %s should be absolute", root));
+                }
+            }
+            return FormValidation.ok();
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package org.jenkinsci.plugins.spoontrigger.utils;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Deletes build directories in the background, so executors are not occupied by deleting large trees of files which
+ * may be locked for a while by antivirus scanners or processes that have not exited yet.
+ * <p>
+ * A discarded directory is renamed into the trash area next to it, which is a cheap operation on the same volume, and
+ * deleted later by {@link Collector}. Failed deletions are retried with an exponential back off. Trash areas left over
+ * by a previous run of Jenkins are collected when the trash area is used for the first time.
+ */
+public class TrashCan {
+
+    public static final String TRASH_DIRECTORY = ".jenkins-trash";
+
+    private static final Logger LOGGER = Logger.getLogger(TrashCan.class.getName());
+    private static final long BASE_RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(3);
+    private static final long MAX_RETRY_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final TrashCan INSTANCE = new TrashCan();
+
+    private final List<Entry> entries;
+    private final Set<Path> trashAreas;
+
+    private long deletedCount;
+    private long deletedBytes;
+    private long failedAttempts;
+
+    TrashCan() {
+        this.entries = new ArrayList<Entry>();
+        this.trashAreas = new HashSet<Path>();
+    }
+
+    public static TrashCan getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Moves the directory to the trash area. If the directory cannot be moved, it is deleted in place.
+     *
+     * @return the directory which will be deleted
+     */
+    public Path discard(Path directory) {
+        Path trashArea = getTrashArea(directory);
+        Path trashed = directory;
+        try {
+            Path target = Files.createTempDirectory(trashArea, directory.getFileName() + "-");
+            Files.delete(target);
+            Files.move(directory, target);
+            trashed = target;
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, String.format("Failed to move %s to trash, it will be deleted in place", directory), ex);
+        }
+
+        enqueue(trashed);
+        return trashed;
+    }
+
+    /**
+     * Moves children of the directory to the trash area. Children which cannot be moved are deleted immediately,
+     * because the directory is reused by the next build. If the trash area cannot be used, all children are deleted
+     * immediately.
+     */
+    public void discardChildren(Path directory) {
+        File[] children = directory.toFile().listFiles();
+        if (children == null || children.length == 0) {
+            return;
+        }
+
+        Path target;
+        try {
+            target = Files.createTempDirectory(getTrashArea(directory), directory.getFileName() + "-");
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, String.format("Failed to move children of %s to trash, they will be deleted in place", directory), ex);
+            for (File child : children) {
+                deleteInPlace(child);
+            }
+            return;
+        }
+
+        for (File child : children) {
+            try {
+                Files.move(child.toPath(), target.resolve(child.getName()));
+            } catch (IOException ex) {
+                deleteInPlace(child);
+            }
+        }
+
+        enqueue(target);
+    }
+
+    public synchronized List<Entry> getEntries() {
+        List<Entry> copy = new ArrayList<Entry>(entries.size());
+        for (Entry entry : entries) {
+            copy.add(entry.copy());
+        }
+        return copy;
+    }
+
+    public synchronized int getPendingCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return size of the pending directories measured so far, directories not yet visited by the collector are not
+     * included
+     */
+    public synchronized long getPendingBytes() {
+        long pendingBytes = 0;
+        for (Entry entry : entries) {
+            pendingBytes += Math.max(entry.bytes, 0);
+        }
+        return pendingBytes;
+    }
+
+    public synchronized long getDeletedCount() {
+        return deletedCount;
+    }
+
+    public synchronized long getDeletedBytes() {
+        return deletedBytes;
+    }
+
+    public synchronized long getFailedAttempts() {
+        return failedAttempts;
+    }
+
+    /**
+     * Deletes directories which are due, measuring their size first.
+     */
+    void collect(long nowMillis) {
+        for (Entry entry : getDueEntries(nowMillis)) {
+            if (entry.bytes < 0) {
+                updateSize(entry, measure(entry.path));
+            }
+
+            try {
+                if (Files.exists(entry.path)) {
+                    delete(entry.path);
+                }
+                onDeleted(entry);
+            } catch (IOException ex) {
+                onFailed(entry, nowMillis, measure(entry.path), ex);
+            }
+        }
+    }
+
+    void delete(Path directory) throws IOException {
+        FileUtils.deleteDirectoryTree(directory);
+    }
+
+    private static void deleteInPlace(File child) {
+        if (child.isDirectory()) {
+            FileUtils.quietDeleteDirectoryTree(child.toPath());
+        } else {
+            FileUtils.quietDeleteFile(child.toPath());
+        }
+    }
+
+    static long getRetryDelayMillis(int attempts) {
+        long delayMillis = BASE_RETRY_DELAY_MILLIS;
+        for (int attempt = 1; attempt < attempts && delayMillis < MAX_RETRY_DELAY_MILLIS; ++attempt) {
+            delayMillis *= 2;
+        }
+        return Math.min(delayMillis, MAX_RETRY_DELAY_MILLIS);
+    }
+
+    private Path getTrashArea(Path directory) {
+        Path trashArea = directory.toAbsolutePath().normalize().resolveSibling(TRASH_DIRECTORY);
+        try {
+            Files.createDirectories(trashArea);
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, String.format("Failed to create trash area %s", trashArea), ex);
+        }
+
+        synchronized (this) {
+            if (trashAreas.add(trashArea)) {
+                File[] leftovers = trashArea.toFile().listFiles();
+                if (leftovers != null) {
+                    for (File leftover : leftovers) {
+                        enqueue(leftover.toPath());
+                    }
+                }
+            }
+        }
+        return trashArea;
+    }
+
+    private synchronized void enqueue(Path directory) {
+        entries.add(new Entry(directory, System.currentTimeMillis()));
+    }
+
+    private synchronized List<Entry> getDueEntries(long nowMillis) {
+        List<Entry> dueEntries = new ArrayList<Entry>();
+        for (Entry entry : entries) {
+            if (entry.nextAttemptMillis <= nowMillis) {
+                dueEntries.add(entry);
+            }
+        }
+        return dueEntries;
+    }
+
+    private synchronized void updateSize(Entry entry, long bytes) {
+        entry.bytes = bytes;
+    }
+
+    private synchronized void onDeleted(Entry entry) {
+        if (entries.remove(entry)) {
+            ++deletedCount;
+            deletedBytes += Math.max(entry.bytes, 0);
+        }
+    }
+
+    private synchronized void onFailed(Entry entry, long nowMillis, long remainingBytes, IOException ex) {
+        ++failedAttempts;
+        deletedBytes += Math.max(entry.bytes - remainingBytes, 0);
+        entry.bytes = remainingBytes;
+        entry.attempts++;
+        entry.nextAttemptMillis = nowMillis + getRetryDelayMillis(entry.attempts);
+        entry.lastError = ex.getMessage();
+    }
+
+    private static long measure(Path directory) {
+        final long[] size = new long[1];
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    size[0] += attrs.size();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ex) {
+            // size of the files visited so far
+        }
+        return size[0];
+    }
+
+    public static final class Entry {
+        private final Path path;
+        private final long discardedMillis;
+        private long bytes;
+        private int attempts;
+        private long nextAttemptMillis;
+        private String lastError;
+
+        Entry(Path path, long discardedMillis) {
+            this.path = path;
+            this.discardedMillis = discardedMillis;
+            this.bytes = -1;
+            this.nextAttemptMillis = discardedMillis;
+        }
+
+        public String getPath() {
+            return path.toString();
+        }
+
+        public Date getDiscarded() {
+            return new Date(discardedMillis);
+        }
+
+        /**
+         * @return size of the directory or -1 if it was not measured yet
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public Date getNextAttempt() {
+            return new Date(nextAttemptMillis);
+        }
+
+        public String getLastError() {
+            return lastError;
+        }
+
+        private Entry copy() {
+            Entry copy = new Entry(path, discardedMillis);
+            copy.bytes = bytes;
+            copy.attempts = attempts;
+            copy.nextAttemptMillis = nextAttemptMillis;
+            copy.lastError = lastError;
+            return copy;
+        }
+    }
+
+    @Extension
+    public static final class Collector extends AsyncPeriodicWork {
+
+        public Collector() {
+            super("Turbo build directory cleanup");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.SECONDS.toMillis(10);
+        }
+
+        @Override
+        protected void execute(TaskListener listener) throws IOException, InterruptedException {
+            INSTANCE.collect(System.currentTimeMillis());
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package org.jenkinsci.plugins.spoontrigger.vagrant;
+
+import com.google.common.io.Closeables;
+import org.jenkinsci.plugins.spoontrigger.utils.FileHashIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Node-local store of files keyed by the SHA-256 hash of their content.
+ * <p>
+ * Files are staged into a working directory as hard links to the blobs in the store, so staging the same installer
+ * again does not copy its content. If a link cannot be created, for example because the working directory is on a
+ * different volume, the file is copied. Staged files share content with the store and must not be modified in place,
+ * so only files which are read by the build, such as installers and tools, are staged. Directories which the build
+ * may change, such as resources, are copied.
+ * <p>
+ * Hashes of source files are cached by {@link FileHashIndex}. The total size of the store can be limited
+ * with the <code>maxSizeMb</code> system property prefixed with the class name; least recently staged blobs are
+ * evicted first. A blob is pinned while it is being staged, so it cannot be evicted before the link is created.
+ */
+public final class StagingStore {
+
+    private static final Logger LOGGER = Logger.getLogger(StagingStore.class.getName());
+
+    private static final long MAX_SIZE_BYTES = Long.getLong(StagingStore.class.getName() + ".maxSizeMb", 50L * 1024) * 1024 * 1024;
+
+    private static final String BLOB_DIRECTORY = "blobs";
+    private static final String TEMP_DIRECTORY = "tmp";
+
+    private static final ConcurrentMap<Path, StagingStore> STORES = new ConcurrentHashMap<Path, StagingStore>();
+
+    private final Path blobDir;
+    private final Path tempDir;
+    // guarded by this
+    private final Map<Path, Integer> pinnedBlobs;
+
+    private StagingStore(Path root) {
+        this.blobDir = root.resolve(BLOB_DIRECTORY);
+        this.tempDir = root.resolve(TEMP_DIRECTORY);
+        this.pinnedBlobs = new HashMap<Path, Integer>();
+    }
+
+    public static StagingStore forDirectory(Path root) {
+        Path key = root.toAbsolutePath().normalize();
+        StagingStore store = STORES.get(key);
+        if (store == null) {
+            StagingStore newStore = new StagingStore(key);
+            store = STORES.putIfAbsent(key, newStore);
+            if (store == null) {
+                store = newStore;
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Copies a file with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, which lets
+     * the operating system move the data without passing it through the Java heap.
+     */
+    public static void copy(Path source, Path destination) throws IOException {
+        FileChannel sourceChannel = FileChannel.open(source, StandardOpenOption.READ);
+        try {
+            FileChannel destinationChannel = FileChannel.open(destination,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            try {
+                long size = sourceChannel.size();
+                long position = 0;
+                while (position < size) {
+                    position += sourceChannel.transferTo(position, size - position, destinationChannel);
+                }
+            } finally {
+                Closeables.close(destinationChannel, false);
+            }
+        } finally {
+            Closeables.close(sourceChannel, true);
+        }
+    }
+
+    /**
+     * Stages a file which is only read by the build. The staged file may share its content with the store.
+     */
+    public void stage(Path source, Path destination) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        String hash = FileHashIndex.sha256(source, attributes);
+        Path blob = blobDir.resolve(hash.substring(0, 2)).resolve(hash);
+
+        pin(blob);
+        try {
+            store(source, attributes, blob);
+
+            Files.deleteIfExists(destination);
+            try {
+                Files.createLink(destination, blob);
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, String.format("Failed to link %s to %s, the file will be copied", destination, blob), ex);
+                copy(blob, destination);
+            } catch (UnsupportedOperationException ex) {
+                copy(blob, destination);
+            }
+        } finally {
+            unpin(blob);
+        }
+    }
+
+    private void store(Path source, BasicFileAttributes attributes, Path blob) throws IOException {
+        if (Files.exists(blob) && Files.size(blob) == attributes.size()) {
+            Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis()));
+            return;
+        }
+
+        Files.createDirectories(blob.getParent());
+        Files.createDirectories(tempDir);
+        Path tempBlob = Files.createTempFile(tempDir, blob.getFileName().toString().substring(0, 8), ".tmp");
+        try {
+            copy(source, tempBlob);
+            try {
+                Files.move(tempBlob, blob, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException ex) {
+                // stored concurrently by another build
+            }
+        } finally {
+            Files.deleteIfExists(tempBlob);
+        }
+
+        evictIfNeeded();
+    }
+
+    private synchronized void pin(Path blob) {
+        Integer count = pinnedBlobs.get(blob);
+        pinnedBlobs.put(blob, count == null ? 1 : count + 1);
+    }
+
+    private synchronized void unpin(Path blob) {
+        Integer count = pinnedBlobs.get(blob);
+        if (count == null || count <= 1) {
+            pinnedBlobs.remove(blob);
+        } else {
+            pinnedBlobs.put(blob, count - 1);
+        }
+    }
+
+    private synchronized void evictIfNeeded() throws IOException {
+        List<File> blobs = new ArrayList<File>();
+        long totalSize = 0;
+        DirectoryStream<Path> prefixDirs = Files.newDirectoryStream(blobDir);
+        try {
+            for (Path prefixDir : prefixDirs) {
+                File[] files = prefixDir.toFile().listFiles();
+                if (files == null) {
+                    continue;
+                }
+                for (File file : files) {
+                    blobs.add(file);
+                    totalSize += file.length();
+                }
+            }
+        } finally {
+            Closeables.close(prefixDirs, true);
+        }
+
+        if (totalSize <= MAX_SIZE_BYTES) {
+            return;
+        }
+
+        Collections.sort(blobs, new Comparator<File>() {
+            @Override
+            public int compare(File left, File right) {
+                long leftModified = left.lastModified();
+                long rightModified = right.lastModified();
+                return leftModified < rightModified ? -1 : (leftModified == rightModified ? 0 : 1);
+            }
+        });
+
+        for (File blob : blobs) {
+            if (totalSize <= MAX_SIZE_BYTES) {
+                break;
+            }
+            if (pinnedBlobs.containsKey(blob.toPath())) {
+                continue;
+            }
+
+            // staged copies are hard links, so removing the blob does not affect builds using it
+            long size = blob.length();
+            if (blob.delete()) {
+                totalSize -= size;
+            }
+        }
+    }
+}
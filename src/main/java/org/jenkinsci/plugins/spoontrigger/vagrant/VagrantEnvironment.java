@@ -1,15 +1,20 @@
 package org.jenkinsci.plugins.spoontrigger.vagrant;
 
 import com.google.common.base.Optional;
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
 import org.jenkinsci.plugins.spoontrigger.utils.FileUtils;
 
 import java.io.File;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.Serializable;
 import java.nio.charset.Charset;
 import java.nio.file.*;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import static com.google.common.base.Preconditions.checkState;
 import static org.jenkinsci.plugins.spoontrigger.utils.FileUtils.quietDeleteDirectoryTreeIfExists;
@@ -22,10 +27,12 @@ public class VagrantEnvironment implements Closeable {
     public static final String PRE_INSTALL_SCRIPT_FILE = "pre_install.ps1";
     public static final String POST_SNAPSHOT_SCRIPT_FILE = "post_snapshot.ps1";
     public static final String XAPPL_FILE = "snapshot.xappl";
+    public static final String SNAPSHOT_DIRECTORY = "Files";
     public static final String XSTUDIO_EXE_FILE = "xstudio.exe";
     public static final String XSTUDIO_LICENSE_FILE = "license.txt";
     public static final String IMAGE_SVM_FILE = "image.svm";
     public static final String VAGRANT_FILE = "Vagrantfile";
+    public static final String VAGRANT_STATE_DIRECTORY = ".vagrant";
     public static final String INSTALL_SCRIPT_FILE = "install.ps1";
     public static final String INSTALLER_DIRECTORY_ON_GUEST_MACHINE = "C:\\vagrant\\install";
 
@@ -46,7 +53,7 @@ public class VagrantEnvironment implements Closeable {
     }
 
     public Path getSnapshotPath() {
-        return Paths.get(getOutputPath().toString(), "Files");
+        return Paths.get(getOutputPath().toString(), SNAPSHOT_DIRECTORY);
     }
 
     public Path getXapplPath() {
@@ -67,24 +74,35 @@ public class VagrantEnvironment implements Closeable {
         quietDeleteDirectoryTreeIfExists(Paths.get(workingDirToUse, TOOLS_DIRECTORY));
         quietDeleteDirectoryTreeIfExists(Paths.get(workingDirToUse, INSTALL_DIRECTORY));
         quietDeleteDirectoryTreeIfExists(Paths.get(workingDirToUse, OUTPUT_DIRECTORY));
-        quietDeleteDirectoryTreeIfExists(Paths.get(workingDirToUse, ".vagrant"));
+        quietDeleteDirectoryTreeIfExists(Paths.get(workingDirToUse, VAGRANT_STATE_DIRECTORY));
     }
 
-    public static class EnvironmentBuilder {
-        private final Path workingDir;
+    /**
+     * Paths are kept as strings, so the builder can be sent to the node which runs the build and stage the
+     * environment there, see {@link #build(FilePath)}.
+     */
+    public static class EnvironmentBuilder implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String workingDirPath;
 
         private Optional<String> xStudioPath = Optional.absent();
         private Optional<String> box = Optional.absent();
-        private Optional<Collection<Path>> installerPaths = Optional.absent();
+        private Optional<ArrayList<String>> installerPaths = Optional.absent();
         private Optional<String> installScriptPath = Optional.absent();
         private Optional<String> installerArgs = Optional.absent();
         private Optional<String> postSnapshotScriptPath = Optional.absent();
         private Optional<String> preInstallScriptPath = Optional.absent();
         private Optional<String> resourceDirectoryPath = Optional.absent();
+        private Optional<String> stagingStorePath = Optional.absent();
+        private VmResources vmResources = VmResources.DEFAULT;
         private boolean ignoreExitCode = false;
 
+        private transient Path workingDir;
+        private transient Optional<StagingStore> stagingStore;
+
         public EnvironmentBuilder(Path workingDir) {
-            this.workingDir = workingDir;
+            this.workingDirPath = workingDir.toString();
         }
 
         public EnvironmentBuilder xStudioPath(String path) {
@@ -92,8 +110,8 @@ public class VagrantEnvironment implements Closeable {
             return this;
         }
 
-        public EnvironmentBuilder installerPaths(Collection<Path> paths) {
-            this.installerPaths = Optional.of(paths);
+        public EnvironmentBuilder installerPaths(Collection<String> paths) {
+            this.installerPaths = Optional.of(new ArrayList<String>(paths));
             return this;
         }
 
@@ -123,12 +141,38 @@ public class VagrantEnvironment implements Closeable {
             return this;
         }
 
+        /**
+         * @param path root of the {@link StagingStore} on the node which stages the environment
+         */
+        public EnvironmentBuilder stagingStorePath(String path) {
+            this.stagingStorePath = Optional.of(path);
+            return this;
+        }
+
+        public EnvironmentBuilder vmResources(VmResources resources) {
+            this.vmResources = resources;
+            return this;
+        }
+
         public EnvironmentBuilder box(String vagrantBox) {
             this.box = Optional.of(vagrantBox);
             return this;
         }
 
+        /**
+         * Stages the environment on the node of the working directory in a single remote call.
+         */
+        public VagrantEnvironment build(FilePath workingDir) throws IOException, InterruptedException {
+            workingDir.act(new StageCallable(this));
+            return new VagrantEnvironment(Paths.get(workingDirPath));
+        }
+
         public VagrantEnvironment build() {
+            workingDir = Paths.get(workingDirPath);
+            stagingStore = stagingStorePath.isPresent()
+                    ? Optional.of(StagingStore.forDirectory(Paths.get(stagingStorePath.get())))
+                    : Optional.<StagingStore>absent();
+
             checkState(box.isPresent(), "VagrantBox not defined");
             checkState(xStudioPath.isPresent(), "XStudioPath not defined");
 
@@ -165,6 +209,7 @@ public class VagrantEnvironment implements Closeable {
             File resourceSourceDir = new File(resourceDirectoryPath.get());
             File resourceDestDir = new File(workingDir.toFile(), RESOURCE_DIRECTORY);
             try {
+                // resources may be modified by the build, so they are never linked to the staging store
                 org.apache.commons.io.FileUtils.copyDirectory(resourceSourceDir, resourceDestDir);
             } catch (Throwable th) {
                 String msg = String.format("Failed to copy directory with content from %s to %s", resourceSourceDir, resourceDestDir);
@@ -191,11 +236,14 @@ public class VagrantEnvironment implements Closeable {
                 String installScriptFileName = installScriptSourcePath.getFileName().toString();
                 Path installScriptDestPath = Paths.get(installDir.toString(), installScriptFileName);
                 copyFile(installScriptSourcePath, installScriptDestPath);
-                config = new VagrantFileTemplate.Config(preInstallScriptFileName, installScriptFileName, box.get());
+                config = new VagrantFileTemplate.Config(preInstallScriptFileName, installScriptFileName, box.get(), vmResources);
             }
 
             if (installerPaths.isPresent()) {
-                Collection<Path> installerPaths = this.installerPaths.get();
+                List<Path> installerPaths = new ArrayList<Path>(this.installerPaths.get().size());
+                for (String installerPath : this.installerPaths.get()) {
+                    installerPaths.add(Paths.get(installerPath));
+                }
                 for(Path installerSourcePath : installerPaths) {
                     String installerFileName = installerSourcePath.getFileName().toString();
                     Path installerDestPath = Paths.get(workingDir.toString(), INSTALL_DIRECTORY, installerFileName);
@@ -217,7 +265,7 @@ public class VagrantEnvironment implements Closeable {
                     }
 
                     if (config == null) {
-                        config = new VagrantFileTemplate.Config(preInstallScriptFileName, INSTALL_SCRIPT_FILE, box.get());
+                        config = new VagrantFileTemplate.Config(preInstallScriptFileName, INSTALL_SCRIPT_FILE, box.get(), vmResources);
                     }
                 }
             }
@@ -287,11 +335,31 @@ public class VagrantEnvironment implements Closeable {
 
         private void copyFile(Path source, Path destination) {
             try {
-                Files.copy(source, destination, StandardCopyOption.REPLACE_EXISTING);
+                if (stagingStore.isPresent()) {
+                    stagingStore.get().stage(source, destination);
+                } else {
+                    StagingStore.copy(source, destination);
+                }
             } catch (IOException ex) {
                 String msg = String.format("Failed to copy %s to %s", source, destination);
                 throw new IllegalStateException(msg, ex);
             }
         }
+
+        private static final class StageCallable extends MasterToSlaveFileCallable<Void> {
+            private static final long serialVersionUID = 1L;
+
+            private final EnvironmentBuilder builder;
+
+            StageCallable(EnvironmentBuilder builder) {
+                this.builder = builder;
+            }
+
+            @Override
+            public Void invoke(File workingDir, VirtualChannel channel) throws IOException, InterruptedException {
+                builder.build();
+                return null;
+            }
+        }
     }
 }
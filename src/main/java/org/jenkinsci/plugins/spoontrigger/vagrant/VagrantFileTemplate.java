@@ -31,11 +31,13 @@ public class VagrantFileTemplate {
         public final String preInstallScriptName;
         public final String installScriptName;
         public final String vagrantBox;
+        public final VmResources vmResources;
 
-        public Config(@Nullable String preInstallScriptName, String installScriptName, String vagrantBox) {
+        public Config(@Nullable String preInstallScriptName, String installScriptName, String vagrantBox, VmResources vmResources) {
             this.preInstallScriptName = preInstallScriptName;
             this.installScriptName = installScriptName;
             this.vagrantBox = vagrantBox;
+            this.vmResources = vmResources;
         }
     }
 
@@ -72,6 +74,21 @@ public class VagrantFileTemplate {
         return config.vagrantBox;
     }
 
+    public int getMemory() {
+        return config.vmResources.memoryMb;
+    }
+
+    /**
+     * @return null if the number of CPUs is not configured and the provider default is used
+     */
+    @Nullable
+    public Integer getCpus() {
+        if (config.vmResources.cpus == 0) {
+            return null;
+        }
+        return config.vmResources.cpus;
+    }
+
     public String getPreInstallScript() {
         return config.preInstallScriptName;
     }
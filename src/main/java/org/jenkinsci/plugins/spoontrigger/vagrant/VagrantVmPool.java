@@ -0,0 +1,322 @@
+package org.jenkinsci.plugins.spoontrigger.vagrant;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.io.Closeables;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import org.jenkinsci.plugins.spoontrigger.scheduledtasks.ScheduledTasksApi;
+import org.jenkinsci.plugins.spoontrigger.utils.TempRoots;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.jenkinsci.plugins.spoontrigger.utils.FileUtils.quietDeleteDirectoryTree;
+import static org.jenkinsci.plugins.spoontrigger.utils.FileUtils.quietDeleteFile;
+
+/**
+ * Node-local pool of Vagrant virtual machines kept running between snapshot builds.
+ * <p>
+ * Every VM has its own working directory synced with the guest machine. A build leases an idle VM of its box and
+ * resources, stages its files into the working directory and provisions the VM. The first build booting a VM saves a checkpoint of the
+ * clean machine. When the build completes the VM is restored to that checkpoint instead of being destroyed, so the next
+ * build of the same box does not pay for booting Windows again.
+ * <p>
+ * The pool is disabled until {@link #configure(int, int, long)} is called with a positive size. VMs idle for longer than
+ * the idle timeout are destroyed by {@link Reaper}. Resources of all pooled VMs, leased or idle, count against the
+ * capacity of the node in {@link VmAdmissionController}. A VM which fails to be destroyed keeps its working directory and
+ * stays in the pool without being leased, so destroying it is retried later.
+ */
+public class VagrantVmPool {
+
+    public static final String CLEAN_CHECKPOINT = "jenkins-clean";
+
+    private static final VagrantVmPool INSTANCE = new VagrantVmPool();
+
+    private final List<PooledVm> vms;
+
+    private int sizePerBox;
+    private int maxVms;
+    private long idleTimeoutMillis;
+
+    VagrantVmPool() {
+        this.vms = new ArrayList<PooledVm>();
+    }
+
+    public static VagrantVmPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param sizePerBox        maximum number of VMs kept for a single Vagrant box, 0 disables the pool
+     * @param maxVms            maximum number of pooled VMs running on the host
+     * @param idleTimeoutMillis time after which an idle VM is destroyed
+     */
+    public synchronized void configure(int sizePerBox, int maxVms, long idleTimeoutMillis) {
+        this.sizePerBox = Math.max(sizePerBox, 0);
+        this.maxVms = Math.max(maxVms, 0);
+        this.idleTimeoutMillis = Math.max(idleTimeoutMillis, 0);
+    }
+
+    /**
+     * Leases an idle VM without creating a new one. The resources of the VM are already counted against the node
+     * capacity, so the build does not need to reserve them.
+     */
+    public synchronized Optional<PooledVm> leaseIdle(String box, VmResources resources) {
+        for (PooledVm vm : vms) {
+            if (isIdle(vm, box, resources)) {
+                vm.leased = true;
+                return Optional.of(vm);
+            }
+        }
+        return Optional.absent();
+    }
+
+    public synchronized int getVmCount() {
+        return vms.size();
+    }
+
+    public synchronized boolean hasIdle(String box, VmResources resources) {
+        for (PooledVm vm : vms) {
+            if (isIdle(vm, box, resources)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return resources of VMs in the pool, including leased VMs and evicted VMs which are not destroyed yet
+     */
+    public synchronized VmResources getResources() {
+        VmResources resources = new VmResources(0, 0, 0);
+        for (PooledVm vm : vms) {
+            resources = resources.plus(vm.resources);
+        }
+        return resources;
+    }
+
+    /**
+     * Evicts all idle VMs, so their resources are freed for builds which cannot use them once {@link Reaper} destroys
+     * them.
+     *
+     * @return true if any VM was evicted
+     */
+    public synchronized boolean evictIdle() {
+        boolean evicted = false;
+        for (PooledVm vm : vms) {
+            if (!vm.leased && !vm.evicted) {
+                vm.evicted = true;
+                evicted = true;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Idle VMs of the box booted with other resources are evicted, because a VM keeps the memory and CPUs it was
+     * booted with.
+     *
+     * @param resources resources of the VM written to the Vagrantfile
+     * @param tempRoots roots on which the working directory of a new VM is created
+     * @return absent if the pool is disabled or has no capacity left for the box, in which case the build should use
+     * a disposable VM
+     */
+    public synchronized Optional<PooledVm> lease(String box, VmResources resources, TempRoots tempRoots) throws IOException, InterruptedException {
+        int boxVms = 0;
+        for (PooledVm vm : vms) {
+            if (!vm.box.equals(box)) {
+                continue;
+            }
+
+            if (!vm.leased && !vm.evicted) {
+                if (vm.resources.equals(resources)) {
+                    vm.leased = true;
+                    return Optional.of(vm);
+                }
+                vm.evicted = true;
+            }
+            ++boxVms;
+        }
+
+        if (boxVms >= sizePerBox || vms.size() >= maxVms) {
+            return Optional.absent();
+        }
+
+        PooledVm vm = new PooledVm(box, resources, tempRoots.createTempDirectory("vm-pool-"));
+        vm.leased = true;
+        vms.add(vm);
+        return Optional.of(vm);
+    }
+
+    /**
+     * Returns the VM to the pool. A VM which could not be restored to the clean checkpoint is removed from the pool
+     * and must be destroyed by the caller, who then deletes the working directory and calls
+     * {@link PooledVm#releaseWorkingDir()}.
+     */
+    public synchronized void release(PooledVm vm, boolean restored) {
+        vm.leased = false;
+        vm.lastUsedMillis = System.currentTimeMillis();
+        if (!restored) {
+            vms.remove(vm);
+        }
+    }
+
+    /**
+     * Evicts VMs which were idle for longer than the idle timeout or exceed the current pool size. Evicted VMs are
+     * not leased any more, but stay in the pool until {@link #remove(PooledVm)} is called.
+     *
+     * @return VMs to be destroyed by the caller, including VMs evicted before which are not destroyed yet
+     */
+    synchronized List<PooledVm> evict(long nowMillis) {
+        List<PooledVm> evicted = new ArrayList<PooledVm>();
+        int remaining = vms.size();
+        for (PooledVm vm : vms) {
+            if (vm.leased) {
+                continue;
+            }
+
+            boolean idle = nowMillis - vm.lastUsedMillis > idleTimeoutMillis;
+            if (vm.evicted || idle || sizePerBox == 0 || remaining > maxVms) {
+                vm.evicted = true;
+                evicted.add(vm);
+                --remaining;
+            }
+        }
+        return evicted;
+    }
+
+    private static boolean isIdle(PooledVm vm, String box, VmResources resources) {
+        return !vm.leased && !vm.evicted && vm.box.equals(box) && vm.resources.equals(resources);
+    }
+
+    synchronized void remove(PooledVm vm) {
+        vms.remove(vm);
+    }
+
+    /**
+     * Destroys evicted VMs and deletes their working directories. A VM which failed to be destroyed stays in the pool
+     * with its working directory and Vagrant state, so it can be destroyed on the next run.
+     */
+    void destroyEvicted(long nowMillis, TaskListener listener) throws InterruptedException {
+        for (PooledVm vm : evict(nowMillis)) {
+            listener.getLogger().println(String.format("Destroying idle Vagrant VM in %s", vm.workingDir));
+            try {
+                destroy(vm, listener);
+            } catch (InterruptedException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                ex.printStackTrace(listener.error(String.format("Failed to destroy Vagrant VM in %s, it will be destroyed later", vm.workingDir)));
+                continue;
+            }
+
+            remove(vm);
+            quietDeleteDirectoryTree(vm.workingDir);
+            vm.releaseWorkingDir();
+        }
+    }
+
+    void destroy(PooledVm vm, TaskListener listener) throws IOException, InterruptedException {
+        ScheduledTasksApi scheduledTasksApi = new ScheduledTasksApi(
+                new EnvVars(EnvVars.masterEnvVars),
+                new FilePath(vm.workingDir.toFile()),
+                Charsets.UTF_8,
+                new Launcher.LocalLauncher(listener),
+                listener,
+                false);
+        try {
+            scheduledTasksApi.run("Vagrant VM pool - vagrant destroy", "vagrant destroy --force");
+        } finally {
+            final boolean swallowException = true;
+            Closeables.close(scheduledTasksApi, swallowException);
+        }
+    }
+
+    public static final class PooledVm {
+        public final String box;
+        public final VmResources resources;
+        public final Path workingDir;
+
+        private final TempRoots.Lease workingDirLease;
+        private boolean checkpointed;
+        private boolean leased;
+        private boolean evicted;
+        private long lastUsedMillis;
+
+        PooledVm(String box, VmResources resources, TempRoots.Lease workingDirLease) {
+            this.box = box;
+            this.resources = resources;
+            this.workingDir = workingDirLease.directory;
+            this.workingDirLease = workingDirLease;
+            this.lastUsedMillis = System.currentTimeMillis();
+        }
+
+        /**
+         * Called once the working directory of a VM removed from the pool is deleted.
+         */
+        public void releaseWorkingDir() {
+            workingDirLease.release();
+        }
+
+        /**
+         * @return true if the VM is booted and the clean checkpoint was saved
+         */
+        public synchronized boolean isCheckpointed() {
+            return checkpointed;
+        }
+
+        public synchronized void markCheckpointed() {
+            this.checkpointed = true;
+        }
+
+        /**
+         * Removes files staged by the previous build. Vagrant machine state and Vagrantfile are preserved.
+         */
+        public void removeStagedFiles() {
+            File[] children = workingDir.toFile().listFiles();
+            if (children == null) {
+                return;
+            }
+
+            for (File child : children) {
+                // Vagrant needs the machine state and Vagrantfile to destroy the VM
+                String name = child.getName();
+                if (VagrantEnvironment.VAGRANT_STATE_DIRECTORY.equals(name) || VagrantEnvironment.VAGRANT_FILE.equals(name)) {
+                    continue;
+                }
+
+                if (child.isDirectory()) {
+                    quietDeleteDirectoryTree(child.toPath());
+                } else {
+                    quietDeleteFile(child.toPath());
+                }
+            }
+        }
+    }
+
+    @Extension
+    public static final class Reaper extends AsyncPeriodicWork {
+
+        public Reaper() {
+            super("Vagrant VM pool reaper");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.MINUTES.toMillis(1);
+        }
+
+        @Override
+        protected void execute(TaskListener listener) throws IOException, InterruptedException {
+            INSTANCE.destroyEvicted(System.currentTimeMillis(), listener);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.jenkinsci.plugins.spoontrigger.vagrant;
+
+import com.google.common.base.Optional;
+import hudson.model.AbstractBuild;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.jenkinsci.plugins.spoontrigger.utils.LogUtils.log;
+
+/**
+ * Tracks host resources reserved by running snapshot VMs on every node.
+ * <p>
+ * A VM is admitted if the resources reserved on the node together with its own fit within the node capacity. A VM
+ * is always admitted on a node without reservations, so a VM larger than the capacity does not wait forever. The queue
+ * consults the controller before a snapshot build is assigned to a node, builds reserve the resources once they need
+ * a VM and release them when the VM is destroyed or added to the pool.
+ * <p>
+ * VMs of {@link VagrantVmPool} run on the controller and are counted against its capacity while they are leased or
+ * idle. Idle pooled VMs are evicted when they keep another VM from being admitted.
+ */
+public final class VmAdmissionController {
+
+    private static final VmAdmissionController INSTANCE = new VmAdmissionController();
+    private static final long WAIT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final Map<String, List<Reservation>> reservations = new HashMap<String, List<Reservation>>();
+    private final VagrantVmPool vmPool;
+
+    VmAdmissionController() {
+        this(VagrantVmPool.getInstance());
+    }
+
+    VmAdmissionController(VagrantVmPool vmPool) {
+        this.vmPool = vmPool;
+    }
+
+    public static VmAdmissionController getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return reason why the VM cannot be admitted now, absent if it can
+     */
+    public synchronized Optional<String> checkAdmission(String nodeName, VmResources capacity, VmResources demand) {
+        List<Reservation> nodeReservations = getNodeReservations(nodeName);
+        int pooledVms = isController(nodeName) ? vmPool.getVmCount() : 0;
+        if (nodeReservations.isEmpty() && pooledVms == 0) {
+            return Optional.absent();
+        }
+
+        VmResources reserved = getReserved(nodeName);
+        if (reserved.plus(demand).fitsWithin(capacity)) {
+            return Optional.absent();
+        }
+
+        if (pooledVms > 0) {
+            // pooled VMs which are not used free their resources once the reaper destroys them
+            vmPool.evictIdle();
+        }
+
+        return Optional.of(String.format("Waiting for snapshot VM capacity on %s: %s reserved by %d VMs and %d pooled VMs, capacity %s, required %s",
+                getDisplayName(nodeName), reserved, nodeReservations.size(), pooledVms, capacity, demand));
+    }
+
+    public synchronized Optional<Reservation> tryReserve(String nodeName, VmResources capacity, VmResources demand, String owner) {
+        if (checkAdmission(nodeName, capacity, demand).isPresent()) {
+            return Optional.absent();
+        }
+
+        Reservation reservation = new Reservation(nodeName, demand, owner);
+        List<Reservation> nodeReservations = reservations.get(nodeName);
+        if (nodeReservations == null) {
+            nodeReservations = new ArrayList<Reservation>();
+            reservations.put(nodeName, nodeReservations);
+        }
+        nodeReservations.add(reservation);
+        return Optional.of(reservation);
+    }
+
+    /**
+     * Reserves resources of a VM on the node the build runs on.
+     */
+    public Reservation reserve(AbstractBuild<?, ?> build, VmResources demand, TaskListener listener) throws InterruptedException {
+        Node node = build.getBuiltOn();
+        VmResources capacity = node == null ? VmResources.UNLIMITED : VmCapacityProperty.getCapacity(node);
+        return reserve(build.getBuiltOnStr(), capacity, demand, build.getFullDisplayName(), listener);
+    }
+
+    /**
+     * Waits until the VM is admitted. Builds are queued until the node has capacity, so the wait is only needed when
+     * several builds were assigned to the node at the same time.
+     */
+    public synchronized Reservation reserve(String nodeName, VmResources capacity, VmResources demand, String owner,
+                                            TaskListener listener) throws InterruptedException {
+        boolean logged = false;
+        while (true) {
+            Optional<Reservation> reservation = tryReserve(nodeName, capacity, demand, owner);
+            if (reservation.isPresent()) {
+                return reservation.get();
+            }
+
+            if (!logged) {
+                log(listener, checkAdmission(nodeName, capacity, demand).or("Waiting for snapshot VM capacity"));
+                logged = true;
+            }
+            wait(WAIT_INTERVAL_MILLIS);
+        }
+    }
+
+    public synchronized void release(Reservation reservation) {
+        List<Reservation> nodeReservations = reservations.get(reservation.nodeName);
+        if (nodeReservations == null) {
+            return;
+        }
+
+        nodeReservations.remove(reservation);
+        if (nodeReservations.isEmpty()) {
+            reservations.remove(reservation.nodeName);
+        }
+        notifyAll();
+    }
+
+    public synchronized List<Reservation> getReservations(String nodeName) {
+        return new ArrayList<Reservation>(getNodeReservations(nodeName));
+    }
+
+    /**
+     * @return resources reserved by builds and, on the controller, resources of pooled VMs
+     */
+    public synchronized VmResources getReserved(String nodeName) {
+        VmResources reserved = sum(getNodeReservations(nodeName));
+        if (isController(nodeName)) {
+            reserved = reserved.plus(vmPool.getResources());
+        }
+        return reserved;
+    }
+
+    private List<Reservation> getNodeReservations(String nodeName) {
+        List<Reservation> nodeReservations = reservations.get(nodeName);
+        if (nodeReservations == null) {
+            return Collections.emptyList();
+        }
+        return nodeReservations;
+    }
+
+    private static VmResources sum(List<Reservation> nodeReservations) {
+        VmResources reserved = new VmResources(0, 0, 0);
+        for (Reservation reservation : nodeReservations) {
+            reserved = reserved.plus(reservation.resources);
+        }
+        return reserved;
+    }
+
+    private static boolean isController(String nodeName) {
+        return nodeName.isEmpty();
+    }
+
+    private static String getDisplayName(String nodeName) {
+        return nodeName.isEmpty() ? "master" : nodeName;
+    }
+
+    public static final class Reservation {
+        private final String nodeName;
+        private final VmResources resources;
+        private final String owner;
+        private final long sinceMillis;
+
+        Reservation(String nodeName, VmResources resources, String owner) {
+            this.nodeName = nodeName;
+            this.resources = resources;
+            this.owner = owner;
+            this.sinceMillis = System.currentTimeMillis();
+        }
+
+        public VmResources getResources() {
+            return resources;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public Date getSince() {
+            return new Date(sinceMillis);
+        }
+    }
+}
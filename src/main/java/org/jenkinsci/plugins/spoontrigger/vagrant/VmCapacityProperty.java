@@ -0,0 +1,56 @@
+package org.jenkinsci.plugins.spoontrigger.vagrant;
+
+import hudson.Extension;
+import hudson.model.Node;
+import hudson.slaves.NodeProperty;
+import hudson.slaves.NodePropertyDescriptor;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Host resources which snapshot VMs may reserve on a node. Nodes without the property admit any number of VMs.
+ */
+public final class VmCapacityProperty extends NodeProperty<Node> {
+
+    private final int memoryMb;
+    private final int cpus;
+    private final int diskGb;
+
+    @DataBoundConstructor
+    public VmCapacityProperty(int memoryMb, int cpus, int diskGb) {
+        this.memoryMb = memoryMb;
+        this.cpus = cpus;
+        this.diskGb = diskGb;
+    }
+
+    public static VmResources getCapacity(Node node) {
+        VmCapacityProperty property = node.getNodeProperties().get(VmCapacityProperty.class);
+        if (property == null) {
+            return VmResources.UNLIMITED;
+        }
+        return property.getCapacity();
+    }
+
+    public VmResources getCapacity() {
+        return new VmResources(memoryMb, cpus, diskGb);
+    }
+
+    public int getMemoryMb() {
+        return memoryMb;
+    }
+
+    public int getCpus() {
+        return cpus;
+    }
+
+    public int getDiskGb() {
+        return diskGb;
+    }
+
+    @Extension
+    public static final class DescriptorImpl extends NodePropertyDescriptor {
+        @Override
+        public String getDisplayName() {
+            return "Snapshot VM capacity";
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.jenkinsci.plugins.spoontrigger.vagrant;
+
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TransientComputerActionFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shows resources reserved by snapshot VMs on the node page.
+ */
+public final class VmReservationsAction implements Action {
+
+    private static final String URL_NAME = "snapshotVms";
+
+    private final Computer computer;
+
+    VmReservationsAction(Computer computer) {
+        this.computer = computer;
+    }
+
+    public Computer getComputer() {
+        return computer;
+    }
+
+    public VmResources getCapacity() {
+        Node node = computer.getNode();
+        if (node == null) {
+            return VmResources.UNLIMITED;
+        }
+        return VmCapacityProperty.getCapacity(node);
+    }
+
+    public VmResources getReserved() {
+        return VmAdmissionController.getInstance().getReserved(computer.getName());
+    }
+
+    public List<VmAdmissionController.Reservation> getReservations() {
+        return VmAdmissionController.getInstance().getReservations(computer.getName());
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "computer.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Snapshot VMs";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    @Extension
+    public static final class Factory extends TransientComputerActionFactory {
+        @Override
+        public Collection<? extends Action> createFor(Computer target) {
+            return Collections.singletonList(new VmReservationsAction(target));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.jenkinsci.plugins.spoontrigger.vagrant;
+
+import com.google.common.base.Objects;
+
+import java.io.Serializable;
+
+/**
+ * Host resources used by a snapshot VM or available to snapshot VMs on a node. When used as a capacity, a value of 0
+ * means the resource is not limited. When used by a VM, 0 CPUs means the number of CPUs is left to the provider.
+ */
+public final class VmResources implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_MEMORY_MB = 2048;
+    public static final int DEFAULT_CPUS = 0;
+    public static final int DEFAULT_DISK_GB = 40;
+
+    public static final VmResources DEFAULT = new VmResources(DEFAULT_MEMORY_MB, DEFAULT_CPUS, DEFAULT_DISK_GB);
+    public static final VmResources UNLIMITED = new VmResources(0, 0, 0);
+
+    public final int memoryMb;
+    public final int cpus;
+    public final int diskGb;
+
+    public VmResources(int memoryMb, int cpus, int diskGb) {
+        this.memoryMb = Math.max(memoryMb, 0);
+        this.cpus = Math.max(cpus, 0);
+        this.diskGb = Math.max(diskGb, 0);
+    }
+
+    public VmResources plus(VmResources other) {
+        return new VmResources(memoryMb + other.memoryMb, cpus + other.cpus, diskGb + other.diskGb);
+    }
+
+    public boolean fitsWithin(VmResources capacity) {
+        return fits(memoryMb, capacity.memoryMb) && fits(cpus, capacity.cpus) && fits(diskGb, capacity.diskGb);
+    }
+
+    public int getMemoryMb() {
+        return memoryMb;
+    }
+
+    public int getCpus() {
+        return cpus;
+    }
+
+    public int getDiskGb() {
+        return diskGb;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof VmResources)) {
+            return false;
+        }
+
+        VmResources resources = (VmResources) other;
+        return memoryMb == resources.memoryMb && cpus == resources.cpus && diskGb == resources.diskGb;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(memoryMb, cpus, diskGb);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d MB RAM, %d CPUs, %d GB disk", memoryMb, cpus, diskGb);
+    }
+
+    private static boolean fits(int value, int limit) {
+        return limit == 0 || value <= limit;
+    }
+}
@@ -0,0 +1,51 @@
+# Executes commands sent by PersistentPowerShellHost on the standard input.
+# Request:  BEGIN <id> <command encoded with base64 from UTF-16LE>
+# Response: ACK <id> before the command is executed, output of the command and END <id> <exit code>
+
+$utf8 = New-Object System.Text.UTF8Encoding $False
+[Console]::InputEncoding = $utf8
+[Console]::OutputEncoding = $utf8
+
+while ($True)
+{
+    $request = [Console]::In.ReadLine()
+    if (($request -eq $null) -or ($request -eq "EXIT"))
+    {
+        break
+    }
+
+    $parts = $request.Split(" ")
+    if (($parts.Length -ne 3) -or ($parts[0] -ne "BEGIN"))
+    {
+        continue
+    }
+
+    $requestId = $parts[1]
+    [Console]::Out.WriteLine("ACK $requestId")
+    [Console]::Out.Flush()
+
+    $exitCode = 0
+    try
+    {
+        $command = [System.Text.Encoding]::Unicode.GetString([Convert]::FromBase64String($parts[2]))
+        $global:LASTEXITCODE = 0
+        $ErrorActionPreference = "Stop"
+        Invoke-Expression $command | Out-String -Stream -Width 4096 | ForEach-Object { [Console]::Out.WriteLine($_) }
+        if ($global:LASTEXITCODE)
+        {
+            $exitCode = $global:LASTEXITCODE
+        }
+    }
+    catch
+    {
+        [Console]::Out.WriteLine($_.Exception.Message)
+        $exitCode = 1
+    }
+    finally
+    {
+        $ErrorActionPreference = "Continue"
+    }
+
+    [Console]::Out.WriteLine("END $requestId $exitCode")
+    [Console]::Out.Flush()
+}
@@ -0,0 +1,115 @@
+package org.jenkinsci.plugins.spoontrigger;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Strings;
+import junit.framework.Assert;
+import org.jenkinsci.plugins.spoontrigger.git.PushCause;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class PushEventQueueTests {
+
+    private static final String REPOSITORY_URL = "https://github.com/turbo/firefox";
+    private static final String MASTER = "refs/heads/master";
+    private static final String DEVELOP = "refs/heads/develop";
+
+    private final BlockingQueue<PushCause> dispatched = new LinkedBlockingQueue<PushCause>();
+    private PushEventQueue queue;
+
+    @After
+    public void tearDown() {
+        if (queue != null) {
+            queue.terminate();
+        }
+    }
+
+    @Test
+    public void coalescesPushesToSameRepositoryAndBranch() throws Exception {
+        // given
+        queue = createQueue(10, 200);
+
+        // when
+        queue.offer(push(REPOSITORY_URL, MASTER, 'a'));
+        queue.offer(push(REPOSITORY_URL + ".git", MASTER, 'b'));
+        queue.offer(push(REPOSITORY_URL, DEVELOP, 'c'));
+        queue.offer(push(REPOSITORY_URL, MASTER, 'd'));
+
+        // then
+        PushCause first = dispatched.poll(5, TimeUnit.SECONDS);
+        PushCause second = dispatched.poll(5, TimeUnit.SECONDS);
+        Assert.assertEquals(MASTER, first.branch.name);
+        Assert.assertEquals(head('d'), first.branch.head);
+        Assert.assertEquals(DEVELOP, second.branch.name);
+        Assert.assertNull(dispatched.poll(500, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(2, queue.getMetrics().getInt("coalesced"));
+    }
+
+    @Test
+    public void dispatchesAfterQuietPeriod() throws Exception {
+        // given
+        final long quietPeriodMillis = 500;
+        queue = createQueue(10, quietPeriodMillis);
+
+        // when
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        queue.offer(push(REPOSITORY_URL, MASTER, 'a'));
+        PushCause cause = dispatched.poll(5, TimeUnit.SECONDS);
+
+        // then
+        Assert.assertNotNull(cause);
+        Assert.assertTrue(stopwatch.elapsed(TimeUnit.MILLISECONDS) >= quietPeriodMillis);
+    }
+
+    @Test
+    public void respondsUnavailableWhenQueueIsFull() {
+        // given
+        queue = createQueue(1, TimeUnit.MINUTES.toMillis(1));
+
+        // when
+        int accepted = SpoonWebHook.enqueue(queue, push(REPOSITORY_URL, MASTER, 'a'));
+        int coalesced = SpoonWebHook.enqueue(queue, push(REPOSITORY_URL, MASTER, 'b'));
+        int rejected = SpoonWebHook.enqueue(queue, push(REPOSITORY_URL, DEVELOP, 'c'));
+
+        // then
+        Assert.assertEquals(SpoonWebHook.HTTP_ACCEPTED, accepted);
+        Assert.assertEquals(SpoonWebHook.HTTP_ACCEPTED, coalesced);
+        Assert.assertEquals(SpoonWebHook.HTTP_SERVICE_UNAVAILABLE, rejected);
+        Assert.assertEquals(1, queue.getMetrics().getInt("rejected"));
+    }
+
+    @Test
+    public void rejectsEventsAfterTermination() throws Exception {
+        // given
+        queue = createQueue(10, 0);
+        queue.terminate();
+
+        // when
+        int status = SpoonWebHook.enqueue(queue, push(REPOSITORY_URL, MASTER, 'a'));
+
+        // then
+        Assert.assertEquals(SpoonWebHook.HTTP_SERVICE_UNAVAILABLE, status);
+        Assert.assertEquals(0, queue.getMetrics().getInt("depth"));
+        Assert.assertNull(dispatched.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    private PushEventQueue createQueue(int capacity, long quietPeriodMillis) {
+        return new PushEventQueue(capacity, quietPeriodMillis) {
+            @Override
+            void dispatch(PushCause cause) {
+                dispatched.add(cause);
+            }
+        };
+    }
+
+    private static PushCause push(String repositoryUrl, String branch, char head) {
+        return new PushCause(repositoryUrl, "turbo", branch, head(head));
+    }
+
+    private static String head(char head) {
+        return Strings.repeat(String.valueOf(head), 40);
+    }
+}
@@ -0,0 +1,68 @@
+package org.jenkinsci.plugins.spoontrigger;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+public class SpoonTriggerIndexTests {
+
+    private static final String REPOSITORY_URL = "https://github.com/turbo/firefox";
+
+    @Test
+    public void normalizeStripsGitSuffixAndTrailingSlashes() {
+        Assert.assertEquals(REPOSITORY_URL, SpoonTriggerIndex.normalize(REPOSITORY_URL));
+        Assert.assertEquals(REPOSITORY_URL, SpoonTriggerIndex.normalize(REPOSITORY_URL + ".git"));
+        Assert.assertEquals(REPOSITORY_URL, SpoonTriggerIndex.normalize(REPOSITORY_URL + "/"));
+        Assert.assertEquals(REPOSITORY_URL, SpoonTriggerIndex.normalize(REPOSITORY_URL + ".git/"));
+        Assert.assertEquals(REPOSITORY_URL, SpoonTriggerIndex.normalize(" HTTPS://GitHub.com/Turbo/Firefox.git// "));
+    }
+
+    @Test
+    public void normalizeIgnoresMissingUrls() {
+        Assert.assertNull(SpoonTriggerIndex.normalize(null));
+        Assert.assertNull(SpoonTriggerIndex.normalize(""));
+        Assert.assertNull(SpoonTriggerIndex.normalize("/.git/"));
+    }
+
+    @Test
+    public void lookupMatchesUrlVariants() {
+        // given
+        SpoonTrigger trigger = new SpoonTrigger(REPOSITORY_URL + ".git");
+
+        try {
+            // when
+            SpoonTriggerIndex.register(trigger);
+
+            // then
+            Assert.assertEquals(Collections.singleton(trigger), SpoonTriggerIndex.lookup(REPOSITORY_URL));
+            Assert.assertEquals(Collections.singleton(trigger), SpoonTriggerIndex.lookup(REPOSITORY_URL + "/"));
+            Assert.assertEquals(Collections.singleton(trigger), SpoonTriggerIndex.lookup(REPOSITORY_URL + ".git/"));
+            Assert.assertTrue(SpoonTriggerIndex.lookup("https://github.com/turbo/chrome").isEmpty());
+        } finally {
+            SpoonTriggerIndex.unregister(trigger);
+        }
+    }
+
+    @Test
+    public void removesUrlWithLastTrigger() {
+        // given
+        SpoonTrigger first = new SpoonTrigger(REPOSITORY_URL);
+        SpoonTrigger second = new SpoonTrigger(REPOSITORY_URL + "/");
+        SpoonTriggerIndex.register(first);
+        SpoonTriggerIndex.register(second);
+
+        // when
+        SpoonTriggerIndex.unregister(first);
+
+        // then
+        Assert.assertTrue(SpoonTriggerIndex.getRepositoryUrls().contains(REPOSITORY_URL));
+
+        // when
+        SpoonTriggerIndex.unregister(second);
+
+        // then
+        Assert.assertFalse(SpoonTriggerIndex.getRepositoryUrls().contains(REPOSITORY_URL));
+        Assert.assertTrue(SpoonTriggerIndex.lookup(REPOSITORY_URL).isEmpty());
+    }
+}
@@ -0,0 +1,62 @@
+package org.jenkinsci.plugins.spoontrigger.commands;
+
+import hudson.util.ArgumentListBuilder;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+public class CommandStatisticsTests {
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    @Test
+    public void groupCommandsBySubcommand() {
+        Assert.assertEquals("turbo push", CommandSample.typeOf(new ArgumentListBuilder("turbo", "push", "test/image")));
+        Assert.assertEquals("vagrant up", CommandSample.typeOf(new ArgumentListBuilder("vagrant", "up", "--no-provision")));
+        Assert.assertEquals("turbo", CommandSample.typeOf(new ArgumentListBuilder("turbo", "--version")));
+        Assert.assertEquals("xstudio", CommandSample.typeOf(new ArgumentListBuilder("C:\\Program Files\\XStudio.exe", "app.xappl")));
+        Assert.assertEquals("powershell", CommandSample.typeOf(new ArgumentListBuilder("powershell", "-File", "script.ps1")));
+    }
+
+    @Test
+    public void aggregateSamples() {
+        // given
+        CommandStatistics statistics = new CommandStatistics("turbo build");
+
+        // when
+        statistics.record(new CommandSample("turbo build", 500, 100, 2, 0));
+        statistics.record(new CommandSample("turbo build", 120000, 300, 6, 1));
+
+        // then
+        Assert.assertEquals(2, statistics.getCount());
+        Assert.assertEquals(1, statistics.getFailures());
+        Assert.assertEquals(120500, statistics.getTotalMillis());
+        Assert.assertEquals(120000, statistics.getMaxMillis());
+        Assert.assertEquals(400, statistics.getStdoutBytes());
+        Assert.assertEquals(8, statistics.getStdoutLines());
+
+        long[] buckets = statistics.getDurationBuckets();
+        Assert.assertEquals(1, buckets[0]);
+        Assert.assertEquals(1, buckets[CommandStatistics.getBucket(120000)]);
+    }
+
+    @Test
+    public void countOutputBytesAndLines() throws IOException {
+        // given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MeteredOutputStream meteredOut = new MeteredOutputStream(out);
+        byte[] output = "Pulling image\nDone\n".getBytes(CHARSET);
+
+        // when
+        meteredOut.write(output, 0, output.length);
+        meteredOut.write('x');
+
+        // then
+        Assert.assertEquals(output.length + 1, meteredOut.getBytes());
+        Assert.assertEquals(2, meteredOut.getLines());
+        Assert.assertEquals(output.length + 1, out.size());
+    }
+}
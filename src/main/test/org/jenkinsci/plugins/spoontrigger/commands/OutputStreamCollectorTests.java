@@ -0,0 +1,122 @@
+package org.jenkinsci.plugins.spoontrigger.commands;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+public class OutputStreamCollectorTests {
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    @Test
+    public void stripMarqueeAndDuplicatedLines() throws IOException {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        OutputStreamCollector collector = new OutputStreamCollector(new PrintStream(log, true, CHARSET.name()), CHARSET);
+
+        collector.write("Downloading 10% \\\r\nDownloading 10% |\r\nDownloading 10% /\nDownloading 20% -\n  Done  \n".getBytes(CHARSET));
+        collector.close();
+
+        Assert.assertEquals(Arrays.asList("Downloading 10%", "Downloading 20%", "Done"), collector.getLines());
+    }
+
+    @Test
+    public void keepLinesWithInteriorCarriageReturn() throws IOException {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        OutputStreamCollector collector = new OutputStreamCollector(new PrintStream(log, true, CHARSET.name()), CHARSET);
+
+        collector.write("Processing -\rProcessing /\n".getBytes(CHARSET));
+        collector.close();
+
+        Assert.assertEquals(Arrays.asList("Processing -\rProcessing /"), collector.getLines());
+    }
+
+    @Test
+    public void passLinesToMatchersInStreamingMode() throws IOException {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        Pattern pattern = Pattern.compile("Output\\s+image:\\s+(\\S+)");
+        PatternGroupMatcher matcher = new PatternGroupMatcher(pattern);
+        OutputStreamCollector collector = new OutputStreamCollector(new PrintStream(log, true, CHARSET.name()), CHARSET, Arrays.asList(matcher));
+
+        collector.write("Committing container\r\nOutput image: jenkins/sample:1.0\r\n".getBytes(CHARSET));
+        collector.close();
+
+        Assert.assertEquals(Arrays.asList("jenkins/sample:1.0"), collector.findAll(pattern));
+        Assert.assertEquals("Committing container" + System.lineSeparator() + "Output image: jenkins/sample:1.0" + System.lineSeparator(),
+                new String(log.toByteArray(), CHARSET));
+    }
+
+    @Test
+    public void throttleProgressInLogOnly() throws IOException {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        OutputStreamCollector collector = new OutputStreamCollector(new PrintStream(log, true, CHARSET.name()), CHARSET);
+
+        collector.write("Pulling 1%\r\nPulling 2%\r\nPulling 3%\r\n".getBytes(CHARSET));
+        collector.close();
+
+        Assert.assertEquals(Arrays.asList("Pulling 1%", "Pulling 2%", "Pulling 3%"), collector.getLines());
+        Assert.assertEquals("Pulling 1%" + System.lineSeparator() + "Pulling 3%" + System.lineSeparator(),
+                new String(log.toByteArray(), CHARSET));
+    }
+
+    @Test
+    public void keepAllMatchesOfRegisteredPatternsInStreamingMode() throws IOException {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        Pattern imagePattern = Pattern.compile("Output\\s+image:\\s+(\\S+)");
+        Pattern layerPattern = Pattern.compile("Pushing layer (\\d+)");
+        PatternGroupMatcher imageMatcher = new PatternGroupMatcher(imagePattern);
+        PatternGroupMatcher layerMatcher = new PatternGroupMatcher(layerPattern);
+        OutputStreamCollector collector = new OutputStreamCollector(new PrintStream(log, true, CHARSET.name()), CHARSET, Arrays.asList(imageMatcher, layerMatcher));
+
+        collector.write("Output image: jenkins/a:1.0\nPushing layer 1\nOutput image: jenkins/b:1.0\nPushing layer 2\n".getBytes(CHARSET));
+        collector.close();
+
+        Assert.assertTrue(collector.isStreaming());
+        Assert.assertEquals(Arrays.asList("jenkins/a:1.0", "jenkins/b:1.0"), collector.findAll(imagePattern));
+        Assert.assertEquals(Arrays.asList("1", "2"), collector.findAll(layerPattern));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectUnregisteredPatternInStreamingMode() throws IOException {
+        PatternGroupMatcher matcher = new PatternGroupMatcher(Pattern.compile("Output\\s+image:\\s+(\\S+)"));
+        OutputStreamCollector collector = new OutputStreamCollector(new PrintStream(new ByteArrayOutputStream(), true, CHARSET.name()), CHARSET, Arrays.asList(matcher));
+
+        collector.write("Output image: jenkins/sample:1.0\n".getBytes(CHARSET));
+        collector.close();
+
+        // an equal pattern compiled separately is not the registered one
+        collector.findAll(Pattern.compile("Output\\s+image:\\s+(\\S+)"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void doNotRetainLinesInStreamingMode() throws IOException {
+        OutputStreamCollector collector = new OutputStreamCollector(new PrintStream(new ByteArrayOutputStream(), true, CHARSET.name()), CHARSET,
+                Collections.<LineMatcher>emptyList());
+
+        collector.write("Committing container\n".getBytes(CHARSET));
+        collector.close();
+
+        collector.getLines();
+    }
+
+    @Test
+    public void findAllInRetainedLines() throws IOException {
+        OutputStreamCollector collector = new OutputStreamCollector(new PrintStream(new ByteArrayOutputStream(), true, CHARSET.name()), CHARSET);
+
+        collector.write("Output image: jenkins/a:1.0\nCommitting\nOutput image: jenkins/b:1.0\n".getBytes(CHARSET));
+        collector.close();
+
+        Assert.assertEquals(Arrays.asList("jenkins/a:1.0", "jenkins/b:1.0"), collector.findAll(Pattern.compile("Output\\s+image:\\s+(\\S+)")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectPatternWithoutGroup() {
+        new PatternGroupMatcher(Pattern.compile("Output image"));
+    }
+}
@@ -0,0 +1,103 @@
+package org.jenkinsci.plugins.spoontrigger.commands;
+
+import com.google.common.base.Ticker;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class ProgressThrottleTests {
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final long INTERVAL_MILLIS = 5000;
+    private static final int PERCENT_STEP = 10;
+
+    @Test
+    public void writeProgressEveryPercentStep() throws IOException {
+        // given
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        ProgressThrottle throttle = new ProgressThrottle(new PrintStream(log, true, CHARSET.name()), new FakeTicker(), INTERVAL_MILLIS, PERCENT_STEP);
+
+        // when
+        for (int percent = 0; percent <= 100; ++percent) {
+            throttle.write(String.format("Pushing layer 1: %d%%", percent), true);
+        }
+        throttle.write("Push complete", true);
+
+        // then
+        List<String> expected = Arrays.asList("Pushing layer 1: 0%", "Pushing layer 1: 10%", "Pushing layer 1: 20%",
+                "Pushing layer 1: 30%", "Pushing layer 1: 40%", "Pushing layer 1: 50%", "Pushing layer 1: 60%",
+                "Pushing layer 1: 70%", "Pushing layer 1: 80%", "Pushing layer 1: 90%", "Pushing layer 1: 100%",
+                "Push complete");
+        Assert.assertEquals(expected, getLines(log));
+    }
+
+    @Test
+    public void writeProgressWhenIntervalElapsed() throws IOException {
+        // given
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        FakeTicker ticker = new FakeTicker();
+        ProgressThrottle throttle = new ProgressThrottle(new PrintStream(log, true, CHARSET.name()), ticker, INTERVAL_MILLIS, PERCENT_STEP);
+
+        // when
+        throttle.write("Downloading 1.0%", true);
+        throttle.write("Downloading 1.5%", true);
+        ticker.advance(INTERVAL_MILLIS);
+        throttle.write("Downloading 2.0%", true);
+        throttle.write("Downloading 2.5%", true);
+
+        // then
+        Assert.assertEquals(Arrays.asList("Downloading 1.0%", "Downloading 2.0%"), getLines(log));
+    }
+
+    @Test
+    public void writeLastStateBeforeOtherLines() throws IOException {
+        // given
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        ProgressThrottle throttle = new ProgressThrottle(new PrintStream(log, true, CHARSET.name()), new FakeTicker(), INTERVAL_MILLIS, PERCENT_STEP);
+
+        // when
+        throttle.write("Layer a: 1%", true);
+        throttle.write("Layer a: 2%", true);
+        throttle.write("Layer b: 1%", true);
+        throttle.write("Layer b: 3%", true);
+        throttle.write("Layer b: 0%", true);
+        throttle.write("Layer b: 4%", true);
+        throttle.flush();
+
+        // then
+        Assert.assertEquals(Arrays.asList("Layer a: 1%", "Layer a: 2%", "Layer b: 1%", "Layer b: 3%", "Layer b: 0%", "Layer b: 4%"), getLines(log));
+    }
+
+    @Test
+    public void findPercentage() {
+        Assert.assertEquals(12, ProgressThrottle.findPercentage("Downloading 42%"));
+        Assert.assertEquals(12, ProgressThrottle.findPercentage("Downloading 42 %"));
+        Assert.assertEquals(12, ProgressThrottle.findPercentage("Downloading 42.5% (1.2 MB/s)"));
+        Assert.assertEquals(-1, ProgressThrottle.findPercentage("Downloading %"));
+        Assert.assertEquals(-1, ProgressThrottle.findPercentage("Output image: jenkins/sample:1.0"));
+    }
+
+    private static List<String> getLines(ByteArrayOutputStream log) {
+        return Arrays.asList(new String(log.toByteArray(), CHARSET).split(System.lineSeparator()));
+    }
+
+    private static final class FakeTicker extends Ticker {
+        private long nanos;
+
+        void advance(long millis) {
+            nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.jenkinsci.plugins.spoontrigger.hub;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HubHttpClientTests {
+
+    private static final String API_KEY = "key";
+    private static final String BODY = "{\"tags\":[\"1.0\"]}";
+
+    private HttpServer server;
+    private HubHttpClient client;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile boolean repoExists;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                if (!repoExists) {
+                    exchange.sendResponseHeaders(404, -1);
+                    exchange.close();
+                    return;
+                }
+
+                byte[] body = BODY.getBytes(Charsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream output = exchange.getResponseBody();
+                output.write(body);
+                output.close();
+            }
+        });
+        server.start();
+        client = new HubHttpClient(2);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void cachesFoundResources() throws IOException {
+        // given
+        repoExists = true;
+
+        // when
+        Optional<String> first = client.getJson(repoUrl("firefox"), API_KEY);
+        Optional<String> second = client.getJson(repoUrl("firefox"), API_KEY);
+
+        // then
+        Assert.assertEquals(Optional.of(BODY), first);
+        Assert.assertEquals(Optional.of(BODY), second);
+        Assert.assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void doesNotCacheMissingResources() throws IOException {
+        // given
+        repoExists = false;
+
+        // when
+        Optional<String> beforePush = client.getJson(repoUrl("firefox"), API_KEY);
+        repoExists = true;
+        Optional<String> afterPush = client.getJson(repoUrl("firefox"), API_KEY);
+
+        // then
+        Assert.assertFalse(beforePush.isPresent());
+        Assert.assertEquals(Optional.of(BODY), afterPush);
+        Assert.assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void revalidatesFreshEntryOnRequest() throws IOException {
+        // given
+        repoExists = true;
+        final boolean revalidate = true;
+        client.getJson(repoUrl("firefox"), API_KEY);
+
+        // when
+        repoExists = false;
+        Optional<String> afterDelete = client.getJson(repoUrl("firefox"), API_KEY, revalidate);
+
+        // then
+        Assert.assertFalse(afterDelete.isPresent());
+        Assert.assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void boundsNumberOfFreshEntries() throws IOException {
+        // given
+        repoExists = true;
+
+        // when
+        client.getJson(repoUrl("firefox"), API_KEY);
+        client.getJson(repoUrl("chrome"), API_KEY);
+        client.getJson(repoUrl("opera"), API_KEY);
+
+        // then
+        Assert.assertEquals(2, client.getCachedEntries());
+    }
+
+    private URI repoUrl(String repo) {
+        return URI.create(String.format("http://127.0.0.1:%d/io/_hub/repo/turbo/%s", server.getAddress().getPort(), repo));
+    }
+}
@@ -0,0 +1,50 @@
+package org.jenkinsci.plugins.spoontrigger.hub;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TagScannerTests {
+
+    @Test
+    public void scanTopLevelTags() {
+        // given
+        String json = "{\"name\":\"firefox\",\"meta\":{\"tags\":[\"nested\"],\"text\":\"]}\"},\"tags\":[\"44.0\",\"head\\\"\",\"43.0.1\"]}";
+        final List<String> tags = new ArrayList<String>();
+
+        // when
+        boolean found = TagScanner.scan(json, new TagScanner.TagVisitor() {
+            @Override
+            public boolean visit(String text, int start, int end) {
+                tags.add(text.substring(start, end));
+                return true;
+            }
+        });
+
+        // then
+        Assert.assertTrue(found);
+        Assert.assertEquals(3, tags.size());
+        Assert.assertEquals("44.0", tags.get(0));
+        Assert.assertEquals("head\"", tags.get(1));
+        Assert.assertEquals("43.0.1", tags.get(2));
+    }
+
+    @Test
+    public void missingTags() {
+        // given
+        String json = "{\"name\":\"firefox\",\"count\":2}";
+
+        // when
+        boolean found = TagScanner.scan(json, new TagScanner.TagVisitor() {
+            @Override
+            public boolean visit(String text, int start, int end) {
+                return true;
+            }
+        });
+
+        // then
+        Assert.assertFalse(found);
+    }
+}
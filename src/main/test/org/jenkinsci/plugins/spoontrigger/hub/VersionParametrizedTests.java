@@ -21,7 +21,9 @@ public class VersionParametrizedTests {
     public static Iterable data() {
         return Arrays.asList(
                 new Object[][]{
-                        {"44.0.0.4096"}
+                        {"44.0.0.4096"},
+                        {"2015.12.31"},
+                        {"0"}
                 }
         );
     }
@@ -0,0 +1,51 @@
+package org.jenkinsci.plugins.spoontrigger.scheduledtasks;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+
+/**
+ * Speaks the protocol of powershell-worker.ps1 without PowerShell. Commands are echoed back line by line,
+ * <code>exit &lt;code&gt;</code> sets the exit code, <code>crash</code> terminates the worker after it acknowledged
+ * the request and <code>crash-before-ack</code> terminates the worker without acknowledging the request.
+ */
+public final class FakePowerShellWorker {
+
+    public static void main(String[] args) throws IOException {
+        BufferedReader stdin = new BufferedReader(new InputStreamReader(System.in, Charsets.UTF_8));
+        PrintStream stdout = new PrintStream(System.out, false, Charsets.UTF_8.name());
+
+        String request;
+        while ((request = stdin.readLine()) != null && !PersistentPowerShellHost.EXIT.equals(request)) {
+            String[] parts = request.split(" ");
+            if (parts.length != 3 || !PersistentPowerShellHost.BEGIN.equals(parts[0])) {
+                continue;
+            }
+
+            String command = new String(BaseEncoding.base64().decode(parts[2]), Charsets.UTF_16LE);
+            if (command.equals("crash-before-ack")) {
+                System.exit(1);
+            }
+            stdout.println(PersistentPowerShellHost.ACK + " " + parts[1]);
+            stdout.flush();
+
+            int exitCode = 0;
+            if (command.equals("crash")) {
+                System.exit(1);
+            } else if (command.startsWith("exit ")) {
+                exitCode = Integer.parseInt(command.substring("exit ".length()));
+            } else {
+                for (String line : command.split("\n")) {
+                    stdout.println(line);
+                }
+            }
+
+            stdout.println(PersistentPowerShellHost.END + " " + parts[1] + " " + exitCode);
+            stdout.flush();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.jenkinsci.plugins.spoontrigger.scheduledtasks;
+
+import com.google.common.base.Charsets;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.TaskListener;
+import hudson.util.ArgumentListBuilder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+public class PersistentPowerShellHostTests {
+
+    private PersistentPowerShellHost host;
+
+    @Before
+    public void setUp() throws Exception {
+        ArgumentListBuilder workerCommand = new ArgumentListBuilder(new File(System.getProperty("java.home"), "bin/java").getPath())
+                .add("-cp")
+                .add(System.getProperty("java.class.path"))
+                .add(FakePowerShellWorker.class.getName());
+
+        host = PersistentPowerShellHost.start(new EnvVars(), new FilePath(new File(".")),
+                new Launcher.LocalLauncher(TaskListener.NULL), workerCommand, null, Charsets.UTF_16LE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        host.close();
+    }
+
+    @Test
+    public void executeManyCommandsInOneProcess() throws Exception {
+        for (int attempt = 0; attempt < 50; ++attempt) {
+            // given
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            // when
+            int exitCode = host.execute("Get-ScheduledTask\nattempt " + attempt, output);
+
+            // then
+            Assert.assertEquals(0, exitCode);
+            Assert.assertEquals("Get-ScheduledTask\nattempt " + attempt + "\n", new String(output.toByteArray(), Charsets.UTF_16LE));
+        }
+    }
+
+    @Test
+    public void returnExitCode() throws Exception {
+        Assert.assertEquals(3, host.execute("exit 3", new ByteArrayOutputStream()));
+        Assert.assertEquals(0, host.execute("Start-ScheduledTask", new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void failWhenWorkerExitsAfterAcknowledgement() throws Exception {
+        try {
+            host.execute("crash", new ByteArrayOutputStream());
+            Assert.fail("Expected IOException");
+        } catch (PersistentPowerShellHost.NotAcknowledgedException ex) {
+            Assert.fail("Command must not be reported as not started");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    @Test(expected = PersistentPowerShellHost.NotAcknowledgedException.class)
+    public void failWithoutAcknowledgementWhenWorkerExitsBeforeCommand() throws Exception {
+        host.execute("crash-before-ack", new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void writeOutputInHostCharset() throws Exception {
+        // given
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // when
+        host.execute("Za\u017c\u00f3\u0142\u0107 g\u0119\u015bl\u0105 ja\u017a\u0144", output);
+
+        // then
+        Assert.assertEquals("Za\u017c\u00f3\u0142\u0107 g\u0119\u015bl\u0105 ja\u017a\u0144\n", new String(output.toByteArray(), Charsets.UTF_16LE));
+    }
+}
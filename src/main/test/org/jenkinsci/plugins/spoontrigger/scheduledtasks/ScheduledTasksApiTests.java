@@ -0,0 +1,150 @@
+package org.jenkinsci.plugins.spoontrigger.scheduledtasks;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class ScheduledTasksApiTests {
+
+    private static final String TASK_NAME = "build";
+    private static final Pattern ENCODED_COMMAND_PATTERN = Pattern.compile("-EncodedCommand (?<command>[A-Za-z0-9+/=]+)");
+
+    @Rule
+    public TemporaryFolder workspace = new TemporaryFolder();
+
+    private final ScriptedHost host = new ScriptedHost();
+
+    @Test
+    public void wrapCommandToWriteExitCodeFile() throws Exception {
+        // given
+        FilePath exitCodeFile = new FilePath(workspace.newFile("exitcode.txt"));
+        ScheduledTasksApi api = createApi(0);
+
+        // when
+        api.create(TASK_NAME, "turbo build", exitCodeFile);
+
+        // then
+        Assert.assertFalse(exitCodeFile.exists());
+        Assert.assertEquals(1, host.commands.size());
+
+        Matcher matcher = ENCODED_COMMAND_PATTERN.matcher(host.commands.get(0));
+        Assert.assertTrue(matcher.find());
+        String taskCommand = new String(BaseEncoding.base64().decode(matcher.group("command")), Charsets.UTF_16LE);
+        String exitCodePath = exitCodeFile.getRemote();
+        Assert.assertTrue(taskCommand.contains("try { turbo build; if ($LASTEXITCODE) { $exitCode = $LASTEXITCODE } }"));
+        Assert.assertTrue(taskCommand.contains(String.format("Set-Content -Path '%s.tmp' -Value $exitCode", exitCodePath)));
+        Assert.assertTrue(taskCommand.contains(String.format("Move-Item -Force -Path '%s.tmp' -Destination '%s'", exitCodePath, exitCodePath)));
+    }
+
+    @Test
+    public void readExitCodeFromFile() throws Exception {
+        // given
+        File exitCodeFile = workspace.newFile("exitcode.txt");
+        Files.write(exitCodeFile.toPath(), "3\r\n".getBytes(Charsets.UTF_8));
+        ScheduledTasksApi api = createApi(0);
+
+        // when
+        int exitCode = api.waitForCompletion(TASK_NAME, new FilePath(exitCodeFile), 1000);
+
+        // then
+        Assert.assertEquals(3, exitCode);
+        Assert.assertTrue(host.commands.isEmpty());
+    }
+
+    @Test
+    public void fallBackToLastTaskResultWhenTaskStoppedWithoutExitCode() throws Exception {
+        // given
+        FilePath exitCodeFile = new FilePath(new File(workspace.getRoot(), "exitcode.txt"));
+        host.respond("Get-ScheduledTask ", "\"TaskName\",\"State\"\n\"build\",\"Ready\"\n");
+        host.respond("(Get-ScheduledTaskInfo", "5\n");
+        ScheduledTasksApi api = createApi(0);
+
+        // when
+        int exitCode = api.waitForCompletion(TASK_NAME, exitCodeFile, 10000);
+
+        // then
+        Assert.assertEquals(5, exitCode);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failWhenTaskStoppedWithoutAnyExitCode() throws Exception {
+        // given
+        FilePath exitCodeFile = new FilePath(new File(workspace.getRoot(), "exitcode.txt"));
+        host.respond("Get-ScheduledTask ", "\"TaskName\",\"State\"\n\"build\",\"Ready\"\n");
+        host.respond("(Get-ScheduledTaskInfo", "\n");
+        ScheduledTasksApi api = createApi(0);
+
+        // when
+        api.waitForCompletion(TASK_NAME, exitCodeFile, 10000);
+    }
+
+    @Test
+    public void readLogFromOffset() throws Exception {
+        // given
+        File logFile = workspace.newFile("log.txt");
+        Files.write(logFile.toPath(), "first line\r\nsecond line\r\n".getBytes(Charsets.UTF_8));
+        final int offset = "first line\r\n".length();
+
+        // when
+        byte[] tail = new FilePath(logFile).act(new ScheduledTasksApi.ReadLogChunk(offset, 1024));
+        byte[] chunk = new FilePath(logFile).act(new ScheduledTasksApi.ReadLogChunk(offset, 6));
+        byte[] end = new FilePath(logFile).act(new ScheduledTasksApi.ReadLogChunk(logFile.length(), 1024));
+        byte[] missing = new FilePath(new File(workspace.getRoot(), "missing.txt")).act(new ScheduledTasksApi.ReadLogChunk(0, 1024));
+
+        // then
+        Assert.assertEquals("second line\r\n", new String(tail, Charsets.UTF_8));
+        Assert.assertEquals("second", new String(chunk, Charsets.UTF_8));
+        Assert.assertEquals(0, end.length);
+        Assert.assertNull(missing);
+    }
+
+    private ScheduledTasksApi createApi(long statusCheckIntervalMillis) {
+        return new ScheduledTasksApi(new EnvVars(), new FilePath(workspace.getRoot()), Charsets.UTF_8, TaskListener.NULL,
+                host, statusCheckIntervalMillis);
+    }
+
+    /**
+     * Records commands and answers them with the output registered for the first matching prefix.
+     */
+    private static final class ScriptedHost implements PowerShellHost {
+        private final List<String> commands = new ArrayList<String>();
+        private final Map<String, String> responses = new LinkedHashMap<String, String>();
+
+        void respond(String commandPrefix, String output) {
+            responses.put(commandPrefix, output);
+        }
+
+        @Override
+        public int execute(String command, OutputStream out) throws IOException {
+            commands.add(command);
+            for (Map.Entry<String, String> response : responses.entrySet()) {
+                if (command.startsWith(response.getKey())) {
+                    out.write(response.getValue().getBytes(Charsets.UTF_8));
+                    return 0;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.jenkinsci.plugins.spoontrigger.snapshot;
+
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.BuildListener;
+import hudson.model.TaskListener;
+import hudson.util.StreamBuildListener;
+import junit.framework.Assert;
+import org.jenkinsci.plugins.spoontrigger.commands.CommandDriver;
+import org.jenkinsci.plugins.spoontrigger.hub.HubApi;
+import org.jenkinsci.plugins.spoontrigger.hub.Image;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DependencyResolverTests {
+
+    private static final int PULL_PARALLELISM = 2;
+
+    @Rule
+    public TemporaryFolder workspace = new TemporaryFolder();
+
+    private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+    private BuildListener listener;
+    private CommandDriver commandDriver;
+    private HubApi hubApi;
+
+    @Before
+    public void setUp() {
+        listener = new StreamBuildListener(log, Charset.defaultCharset());
+        commandDriver = CommandDriver.builder()
+                .env(new EnvVars())
+                .pwd(new FilePath(workspace.getRoot()))
+                .launcher(new Launcher.LocalLauncher(listener))
+                .listener(listener)
+                .build();
+        hubApi = new HubApi(HubApi.DEFAULT_HUB_URL, "key", listener) {
+            @Override
+            public Image getLatestVersion(Image image) {
+                return new Image(image.namespace, image.repo, "1.0");
+            }
+        };
+    }
+
+    @Test
+    public void limitsNumberOfConcurrentPulls() throws Exception {
+        // given
+        final AtomicInteger activePulls = new AtomicInteger();
+        final AtomicInteger maxActivePulls = new AtomicInteger();
+        DependencyResolver resolver = new DependencyResolver(hubApi, commandDriver, listener, PULL_PARALLELISM) {
+            @Override
+            void pull(Image image, TaskListener output) {
+                int active = activePulls.incrementAndGet();
+                try {
+                    synchronized (maxActivePulls) {
+                        maxActivePulls.set(Math.max(maxActivePulls.get(), active));
+                    }
+                    Thread.sleep(50);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    activePulls.decrementAndGet();
+                }
+            }
+        };
+
+        // when
+        List<Image> images = resolver.resolveAndPull(Arrays.asList("turbo/a", "turbo/b:2.0", "turbo/c", "turbo/d", "turbo/e"));
+
+        // then
+        Assert.assertTrue(maxActivePulls.get() <= PULL_PARALLELISM);
+        Assert.assertEquals(Arrays.asList(
+                new Image("turbo", "a", "1.0"),
+                new Image("turbo", "b", "2.0"),
+                new Image("turbo", "c", "1.0"),
+                new Image("turbo", "d", "1.0"),
+                new Image("turbo", "e", "1.0")), images);
+    }
+
+    @Test
+    public void doesNotInterleavePullOutput() throws Exception {
+        // given
+        DependencyResolver resolver = new DependencyResolver(hubApi, commandDriver, listener, PULL_PARALLELISM) {
+            @Override
+            void pull(Image image, TaskListener output) {
+                for (int line = 0; line < 10; ++line) {
+                    output.getLogger().println(image.repo + line);
+                    Thread.yield();
+                }
+            }
+        };
+
+        // when
+        resolver.resolveAndPull(Arrays.asList("turbo/a:1.0", "turbo/b:1.0", "turbo/c:1.0"));
+
+        // then
+        String output = log.toString(Charset.defaultCharset().name());
+        for (String repo : Arrays.asList("a", "b", "c")) {
+            StringBuilder expected = new StringBuilder();
+            for (int line = 0; line < 10; ++line) {
+                expected.append(repo).append(line).append(System.lineSeparator());
+            }
+            Assert.assertTrue(output.contains(expected.toString()));
+        }
+    }
+}
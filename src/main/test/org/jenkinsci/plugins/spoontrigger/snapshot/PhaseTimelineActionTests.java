@@ -0,0 +1,56 @@
+package org.jenkinsci.plugins.spoontrigger.snapshot;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class PhaseTimelineActionTests {
+
+    @Test
+    public void beginningPhaseEndsRunningPhase() {
+        // given
+        PhaseTimelineAction timeline = new PhaseTimelineAction();
+
+        // when
+        timeline.begin(SnapshotPhase.PROVISION, 1000);
+        timeline.begin(SnapshotPhase.BUILD_IMAGE, 4000);
+        timeline.end(4500);
+
+        // then
+        List<PhaseTimelineAction.PhaseRecord> records = timeline.getRecords();
+        Assert.assertEquals(2, records.size());
+        Assert.assertEquals(3000, timeline.getDurationMillis(SnapshotPhase.PROVISION));
+        Assert.assertEquals(500, timeline.getDurationMillis(SnapshotPhase.BUILD_IMAGE));
+        Assert.assertEquals(3500, timeline.getTotalMillis());
+    }
+
+    @Test
+    public void sumRepeatedPhases() {
+        // given
+        PhaseTimelineAction timeline = new PhaseTimelineAction();
+
+        // when
+        timeline.begin(SnapshotPhase.CLEANUP, 0);
+        timeline.begin(SnapshotPhase.RELEASE_VM, 2000);
+        timeline.begin(SnapshotPhase.CLEANUP, 3000);
+        timeline.end(6000);
+
+        // then
+        Assert.assertEquals(5000, timeline.getDurationMillis(SnapshotPhase.CLEANUP));
+        Assert.assertEquals(0, timeline.getDurationMillis(SnapshotPhase.PROVISION));
+    }
+
+    @Test
+    public void runningPhaseHasNoDuration() {
+        // given
+        PhaseTimelineAction timeline = new PhaseTimelineAction();
+
+        // when
+        timeline.begin(SnapshotPhase.PROVISION, 1000);
+
+        // then
+        Assert.assertTrue(timeline.getRecords().get(0).isRunning());
+        Assert.assertEquals(0, timeline.getDurationMillis(SnapshotPhase.PROVISION));
+    }
+}
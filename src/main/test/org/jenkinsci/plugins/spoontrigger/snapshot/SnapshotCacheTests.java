@@ -0,0 +1,87 @@
+package org.jenkinsci.plugins.spoontrigger.snapshot;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import junit.framework.Assert;
+import org.jenkinsci.plugins.spoontrigger.hub.Image;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class SnapshotCacheTests {
+
+    @Rule
+    public TemporaryFolder cacheDir = new TemporaryFolder();
+
+    @Rule
+    public TemporaryFolder inputDir = new TemporaryFolder();
+
+    @Test
+    public void canStoreAndLookupImage() throws IOException {
+        // given
+        File image = inputDir.newFile("image.svm");
+        Files.write(image.toPath(), "svm".getBytes(Charsets.UTF_8));
+        SnapshotCache cache = new SnapshotCache(cacheDir.getRoot().toPath(), Long.MAX_VALUE);
+        String key = SnapshotCache.keyBuilder().put("vagrantBox", "box").build();
+
+        // when
+        Optional<SnapshotCache.Entry> missingEntry = cache.lookup(key);
+        cache.store(key, image.toPath(), Optional.of(Image.parse("turbo/app:1.0")));
+        Optional<SnapshotCache.Entry> entry = cache.lookup(key);
+
+        // then
+        Assert.assertFalse(missingEntry.isPresent());
+        Assert.assertTrue(entry.isPresent());
+        Assert.assertEquals("svm", new String(Files.readAllBytes(entry.get().imagePath), Charsets.UTF_8));
+        Assert.assertEquals("turbo/app:1.0", entry.get().imageName.get().printIdentifier());
+    }
+
+    @Test
+    public void doesNotEvictEntryInUse() throws IOException {
+        // given
+        File image = inputDir.newFile("image.svm");
+        Files.write(image.toPath(), "svm".getBytes(Charsets.UTF_8));
+        SnapshotCache cache = new SnapshotCache(cacheDir.getRoot().toPath(), 4);
+        String usedKey = SnapshotCache.keyBuilder().put("vagrantBox", "used").build();
+        String newKey = SnapshotCache.keyBuilder().put("vagrantBox", "new").build();
+        cache.store(usedKey, image.toPath(), Optional.<Image>absent());
+        SnapshotCache.Entry usedEntry = cache.lookup(usedKey).get();
+
+        // when
+        cache.store(newKey, image.toPath(), Optional.<Image>absent());
+        boolean keptWhileUsed = Files.exists(usedEntry.imagePath);
+        cache.release(usedEntry);
+        String otherKey = SnapshotCache.keyBuilder().put("vagrantBox", "other").build();
+        cache.store(otherKey, image.toPath(), Optional.<Image>absent());
+
+        // then
+        Assert.assertTrue(keptWhileUsed);
+        Assert.assertFalse(Files.exists(usedEntry.imagePath));
+    }
+
+    @Test
+    public void sharesCacheForDirectory() {
+        SnapshotCache cache = SnapshotCache.forDirectory(cacheDir.getRoot().toPath(), 1024);
+        Assert.assertSame(cache, SnapshotCache.forDirectory(cacheDir.getRoot().toPath().resolve("."), 2048));
+    }
+
+    @Test
+    public void keyDependsOnFileContent() throws IOException {
+        // given
+        File installer = inputDir.newFile("setup.exe");
+        Files.write(installer.toPath(), "first".getBytes(Charsets.UTF_8));
+        String firstKey = SnapshotCache.keyBuilder().putFile("installer", installer.toPath()).build();
+
+        // when
+        Files.write(installer.toPath(), "second release".getBytes(Charsets.UTF_8));
+        String secondKey = SnapshotCache.keyBuilder().putFile("installer", installer.toPath()).build();
+
+        // then
+        Assert.assertFalse(firstKey.equals(secondKey));
+        Assert.assertEquals(secondKey, SnapshotCache.keyBuilder().putFile("installer", installer.toPath()).build());
+    }
+}
@@ -0,0 +1,103 @@
+package org.jenkinsci.plugins.spoontrigger.snapshot;
+
+import com.google.common.base.Optional;
+import hudson.FilePath;
+import junit.framework.Assert;
+import org.jenkinsci.plugins.spoontrigger.hub.Image;
+import org.jenkinsci.plugins.spoontrigger.vagrant.VagrantEnvironment;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public class SnapshotFilesTests {
+
+    @Rule
+    public TemporaryFolder workspace = new TemporaryFolder();
+
+    @Test
+    public void listsInstallersByName() throws Exception {
+        // given
+        File setup = workspace.newFile("setup.exe");
+        File addOn = workspace.newFile("add-on.msi");
+        workspace.newFile("readme.txt");
+        workspace.newFolder("installer.exe.d");
+
+        // when
+        List<String> installers = SnapshotFiles.listInstallers(new FilePath(workspace.getRoot()));
+
+        // then
+        Assert.assertEquals(Arrays.asList(addOn.getPath(), setup.getPath()), installers);
+    }
+
+    @Test
+    public void loadsImageNameFromFirstLine() throws Exception {
+        // given
+        Path imageFile = workspace.getRoot().toPath().resolve(SnapshotFiles.IMAGE_NAME_FILE);
+        Files.write(imageFile, Arrays.asList("turbo/app:1.0", "ignored"), StandardCharsets.UTF_8);
+
+        // when
+        Optional<Image> imageName = SnapshotFiles.loadImageName(new FilePath(workspace.getRoot()));
+
+        // then
+        Assert.assertEquals(Optional.of(Image.parse("turbo/app:1.0")), imageName);
+    }
+
+    @Test
+    public void imageNameIsAbsentWithoutFile() throws Exception {
+        // when
+        Optional<Image> imageName = SnapshotFiles.loadImageName(new FilePath(workspace.getRoot()));
+
+        // then
+        Assert.assertFalse(imageName.isPresent());
+    }
+
+    @Test
+    public void removesPathsFromXapplAndCapturedFiles() throws Exception {
+        // given
+        File outputDir = workspace.newFolder(VagrantEnvironment.OUTPUT_DIRECTORY);
+        Files.write(outputDir.toPath().resolve(VagrantEnvironment.XAPPL_FILE), XAPPL.getBytes(StandardCharsets.UTF_8));
+        Path capturedDir = outputDir.toPath().resolve(VagrantEnvironment.SNAPSHOT_DIRECTORY).resolve("@SYSDRIVE@").resolve("tmp");
+        Files.createDirectories(capturedDir);
+        Path capturedFile = Files.write(capturedDir.resolve("vagrant-shell.ps1"), new byte[6]);
+
+        String fileToRemove = "@SYSDRIVE@/tmp/vagrant-shell.ps1";
+        String missingFile = "@SYSDRIVE@/tmp/missing.txt";
+
+        // when
+        Set<String> removedPaths = SnapshotFiles.removeFromSnapshot(new FilePath(outputDir), Arrays.asList(fileToRemove, missingFile));
+
+        // then
+        Assert.assertEquals(Collections.singleton(fileToRemove), removedPaths);
+        Assert.assertFalse(Files.exists(capturedFile));
+        Assert.assertTrue(Files.exists(capturedDir));
+
+        XapplEditor reader = new XapplEditor();
+        reader.load(Files.newInputStream(outputDir.toPath().resolve(VagrantEnvironment.XAPPL_FILE)));
+        Assert.assertFalse(reader.fileExists("@SYSDRIVE@\\tmp\\vagrant-shell.ps1"));
+        Assert.assertTrue(reader.fileExists("@SYSDRIVE@\\tmp"));
+    }
+
+    private static final String XAPPL = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<Configuration appVersion=\"16.0.482\" publisher=\"Turbo.net\" version=\"10.6\">\n" +
+            "  <Layers>\n" +
+            "    <Layer name=\"Default\">\n" +
+            "      <Filesystem>\n" +
+            "        <Directory hide=\"False\" isolation=\"Merge\" name=\"@SYSDRIVE@\" noSync=\"False\" readOnly=\"False\">\n" +
+            "          <Directory hide=\"False\" isolation=\"Merge\" name=\"tmp\" noSync=\"False\" readOnly=\"False\">\n" +
+            "            <File hide=\"False\" isolation=\"Full\" name=\"vagrant-shell.ps1\" readOnly=\"False\" source=\".\\Files\\@SYSDRIVE@\\tmp\\vagrant-shell.ps1\" upgradeable=\"True\"/>\n" +
+            "          </Directory>\n" +
+            "        </Directory>\n" +
+            "      </Filesystem>\n" +
+            "    </Layer>\n" +
+            "  </Layers>\n" +
+            "</Configuration>\n";
+}
@@ -3,9 +3,15 @@ package org.jenkinsci.plugins.spoontrigger.snapshot;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class XapplEditorTest {
     @Test
@@ -19,6 +25,26 @@ public class XapplEditorTest {
         assertFalse(editor.fileExists(pathToRemove));
     }
 
+    @Test
+    public void removeNodesInSinglePassTest() throws Exception {
+        String fileToRemove = "@SYSDRIVE@/tmp/vagrant-shell.ps1";
+        String directoryToRemove = "@WINDIR@";
+        String missingFile = "@SYSDRIVE@\\tmp\\missing.txt";
+
+        XapplStreamEditor editor = new XapplStreamEditor(Arrays.asList(fileToRemove, directoryToRemove, missingFile));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Set<String> removedPaths = editor.edit(new ByteArrayInputStream(TEST_DOCUMENT.getBytes(StandardCharsets.UTF_8)), output);
+
+        assertEquals(new HashSet<String>(Arrays.asList(fileToRemove, directoryToRemove)), removedPaths);
+
+        XapplEditor reader = new XapplEditor();
+        reader.load(new ByteArrayInputStream(output.toByteArray()));
+        assertFalse(reader.fileExists(fileToRemove));
+        assertFalse(reader.fileExists(directoryToRemove));
+        assertTrue(reader.fileExists("@SYSDRIVE@\\tmp"));
+        assertTrue(reader.fileExists("@VIDEOS@"));
+    }
+
     private static final String TEST_DOCUMENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
             "<Configuration appVersion=\"16.0.482\" publisher=\"Turbo.net\" version=\"10.6\">\n" +
             "  <StartupFiles>\n" +
@@ -0,0 +1,60 @@
+package org.jenkinsci.plugins.spoontrigger.utils;
+
+import junit.framework.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class FileResolverTests {
+
+    @Rule
+    public TemporaryFolder workspace = new TemporaryFolder();
+
+    @Test
+    public void probeReturnsFirstExistingCandidate() throws IOException, InterruptedException {
+        // given
+        File missing = new File(workspace.getRoot(), "missing.txt");
+        File module = workspace.newFolder("module");
+        File script = workspace.newFile("turbo.me");
+        FileResolver.ProbeCallable callable = new FileResolver.ProbeCallable(Arrays.asList(missing.getPath(), script.getPath(), module.getPath()));
+
+        // when
+        FileResolver.ProbeResult result = callable.invoke(workspace.getRoot(), null);
+
+        // then
+        Assert.assertEquals(1, result.index);
+        Assert.assertFalse(result.directory);
+        Assert.assertTrue(result.errors.isEmpty());
+    }
+
+    @Test
+    public void probeReportsDirectories() throws IOException, InterruptedException {
+        // given
+        File module = workspace.newFolder("module");
+        FileResolver.ProbeCallable callable = new FileResolver.ProbeCallable(Arrays.asList(module.getPath()));
+
+        // when
+        FileResolver.ProbeResult result = callable.invoke(workspace.getRoot(), null);
+
+        // then
+        Assert.assertEquals(0, result.index);
+        Assert.assertTrue(result.directory);
+    }
+
+    @Test
+    public void probeReturnsNegativeIndexIfNothingExists() throws IOException, InterruptedException {
+        // given
+        File missing = new File(workspace.getRoot(), "missing.txt");
+        FileResolver.ProbeCallable callable = new FileResolver.ProbeCallable(Arrays.asList(missing.getPath()));
+
+        // when
+        FileResolver.ProbeResult result = callable.invoke(workspace.getRoot(), null);
+
+        // then
+        Assert.assertEquals(-1, result.index);
+    }
+}
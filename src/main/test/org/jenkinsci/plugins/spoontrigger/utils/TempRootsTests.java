@@ -0,0 +1,106 @@
+package org.jenkinsci.plugins.spoontrigger.utils;
+
+import junit.framework.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class TempRootsTests {
+
+    private static final long GB = 1024L * 1024L * 1024L;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void placesDirectoryOnLeastUsedRoot() throws IOException, InterruptedException {
+        // given
+        Path first = tempDir.newFolder("first").toPath();
+        Path second = tempDir.newFolder("second").toPath();
+        Map<Path, Long> usableSpace = new HashMap<Path, Long>();
+        usableSpace.put(first, 100 * GB);
+        usableSpace.put(second, 50 * GB);
+        TempRoots tempRoots = new FixedSpaceTempRoots(usableSpace, GB);
+
+        // when
+        TempRoots.Lease firstLease = tempRoots.createTempDirectory("build-");
+        TempRoots.Lease secondLease = tempRoots.createTempDirectory("build-");
+        firstLease.release();
+        TempRoots.Lease thirdLease = tempRoots.createTempDirectory("build-");
+
+        // then
+        Assert.assertEquals(first, firstLease.root);
+        Assert.assertEquals(second, secondLease.root);
+        Assert.assertEquals(first, thirdLease.root);
+        Assert.assertEquals(first, thirdLease.directory.getParent());
+
+        secondLease.release();
+        thirdLease.release();
+        Assert.assertEquals(0, TempRoots.getDirectoriesInUse(first));
+        Assert.assertEquals(0, TempRoots.getDirectoriesInUse(second));
+    }
+
+    @Test
+    public void skipsRootsBelowMinimumFreeSpace() throws IOException, InterruptedException {
+        // given
+        Path full = tempDir.newFolder("full").toPath();
+        Path empty = tempDir.newFolder("empty").toPath();
+        Map<Path, Long> usableSpace = new HashMap<Path, Long>();
+        usableSpace.put(full, GB / 2);
+        usableSpace.put(empty, 10 * GB);
+        TempRoots tempRoots = new FixedSpaceTempRoots(usableSpace, GB);
+
+        // when
+        TempRoots.Lease firstLease = tempRoots.createTempDirectory("build-");
+        TempRoots.Lease secondLease = tempRoots.createTempDirectory("build-");
+
+        // then
+        Assert.assertEquals(empty, firstLease.root);
+        Assert.assertEquals(empty, secondLease.root);
+
+        firstLease.release();
+        secondLease.release();
+    }
+
+    @Test
+    public void usesRootWithMostSpaceWhenAllAreFull() throws IOException, InterruptedException {
+        // given
+        Path first = tempDir.newFolder("first").toPath();
+        Path second = tempDir.newFolder("second").toPath();
+        Map<Path, Long> usableSpace = new HashMap<Path, Long>();
+        usableSpace.put(first, GB / 4);
+        usableSpace.put(second, GB / 2);
+        TempRoots tempRoots = new FixedSpaceTempRoots(usableSpace, GB);
+
+        // when
+        TempRoots.Lease lease = tempRoots.createTempDirectory("build-");
+
+        // then
+        Assert.assertEquals(second, lease.root);
+
+        lease.release();
+    }
+
+    private static final class FixedSpaceTempRoots extends TempRoots {
+        private final Map<Path, Long> usableSpace;
+
+        FixedSpaceTempRoots(Map<Path, Long> usableSpace, long minFreeBytes) {
+            super(Arrays.asList(usableSpace.keySet().toArray(new Path[usableSpace.size()])), minFreeBytes);
+            this.usableSpace = new HashMap<Path, Long>();
+            for (Map.Entry<Path, Long> entry : usableSpace.entrySet()) {
+                this.usableSpace.put(entry.getKey().toAbsolutePath().normalize(), entry.getValue());
+            }
+        }
+
+        @Override
+        long getUsableSpace(Path root) {
+            return usableSpace.get(root);
+        }
+    }
+}
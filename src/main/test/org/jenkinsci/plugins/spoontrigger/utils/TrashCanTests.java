@@ -0,0 +1,141 @@
+package org.jenkinsci.plugins.spoontrigger.utils;
+
+import junit.framework.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+public class TrashCanTests {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void deletesDiscardedDirectoryInBackground() throws IOException {
+        // given
+        Path workingDir = createWorkingDir("build");
+        TrashCan trashCan = new TrashCan();
+
+        // when
+        Path trashed = trashCan.discard(workingDir);
+        long pendingBeforeCollect = trashCan.getPendingCount();
+        trashCan.collect(System.currentTimeMillis());
+
+        // then
+        Assert.assertFalse(Files.exists(workingDir));
+        Assert.assertEquals(TrashCan.TRASH_DIRECTORY, trashed.getParent().getFileName().toString());
+        Assert.assertFalse(Files.exists(trashed));
+        Assert.assertEquals(1, pendingBeforeCollect);
+        Assert.assertEquals(0, trashCan.getPendingCount());
+        Assert.assertEquals(1, trashCan.getDeletedCount());
+        Assert.assertEquals(6, trashCan.getDeletedBytes());
+    }
+
+    @Test
+    public void movesChildrenToTrash() throws IOException {
+        // given
+        Path workspace = createWorkingDir("workspace");
+        TrashCan trashCan = new TrashCan();
+
+        // when
+        trashCan.discardChildren(workspace);
+
+        // then
+        Assert.assertTrue(Files.isDirectory(workspace));
+        Assert.assertEquals(0, workspace.toFile().list().length);
+        Assert.assertEquals(1, trashCan.getPendingCount());
+    }
+
+    @Test
+    public void deletesChildrenInPlaceWhenTrashIsUnavailable() throws IOException {
+        // given
+        Path workspace = createWorkingDir("workspace");
+        tempDir.newFile(TrashCan.TRASH_DIRECTORY);
+        TrashCan trashCan = new TrashCan();
+
+        // when
+        trashCan.discardChildren(workspace);
+
+        // then
+        Assert.assertTrue(Files.isDirectory(workspace));
+        Assert.assertEquals(0, workspace.toFile().list().length);
+        Assert.assertEquals(0, trashCan.getPendingCount());
+    }
+
+    @Test
+    public void retriesFailedDeletionWithBackOff() throws IOException {
+        // given
+        Path workingDir = createWorkingDir("build");
+        FailingTrashCan trashCan = new FailingTrashCan(1);
+        trashCan.discard(workingDir);
+        long now = System.currentTimeMillis();
+
+        // when
+        trashCan.collect(now);
+        int pendingAfterFailure = trashCan.getPendingCount();
+        long pendingBytesAfterFailure = trashCan.getPendingBytes();
+        trashCan.collect(now + 1);
+        int pendingBeforeRetry = trashCan.getPendingCount();
+        trashCan.collect(now + TrashCan.getRetryDelayMillis(1));
+
+        // then
+        Assert.assertEquals(1, pendingAfterFailure);
+        Assert.assertEquals(6, pendingBytesAfterFailure);
+        Assert.assertEquals(1, pendingBeforeRetry);
+        Assert.assertEquals(0, trashCan.getPendingCount());
+        Assert.assertEquals(1, trashCan.getFailedAttempts());
+    }
+
+    @Test
+    public void collectsLeftoversOfPreviousRun() throws IOException {
+        // given
+        Path leftover = tempDir.newFolder(TrashCan.TRASH_DIRECTORY, "build-1").toPath();
+        Path workingDir = createWorkingDir("build");
+        TrashCan trashCan = new TrashCan();
+
+        // when
+        trashCan.discard(workingDir);
+        trashCan.collect(System.currentTimeMillis());
+
+        // then
+        Assert.assertFalse(Files.exists(leftover));
+        Assert.assertEquals(2, trashCan.getDeletedCount());
+    }
+
+    @Test
+    public void capsRetryDelay() {
+        Assert.assertEquals(TimeUnit.SECONDS.toMillis(3), TrashCan.getRetryDelayMillis(1));
+        Assert.assertEquals(TimeUnit.SECONDS.toMillis(12), TrashCan.getRetryDelayMillis(3));
+        Assert.assertEquals(TimeUnit.MINUTES.toMillis(10), TrashCan.getRetryDelayMillis(100));
+    }
+
+    private Path createWorkingDir(String name) throws IOException {
+        Path workingDir = tempDir.newFolder(name).toPath();
+        Files.createDirectories(workingDir.resolve("data"));
+        Files.write(workingDir.resolve("data").resolve("file.txt"), new byte[6]);
+        Files.write(workingDir.resolve("image.svm"), new byte[0]);
+        return workingDir;
+    }
+
+    private static final class FailingTrashCan extends TrashCan {
+        private int failures;
+
+        FailingTrashCan(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        void delete(Path directory) throws IOException {
+            if (failures > 0) {
+                --failures;
+                throw new IOException("locked");
+            }
+            super.delete(directory);
+        }
+    }
+}
@@ -1,14 +1,22 @@
 package org.jenkinsci.plugins.spoontrigger.vagrant;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.Lists;
+import hudson.FilePath;
 import junit.framework.Assert;
 import org.jenkinsci.plugins.spoontrigger.SnapshotBuilder;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 import static org.jenkinsci.plugins.spoontrigger.vagrant.VagrantEnvironment.*;
@@ -23,6 +31,9 @@ public class VagrantEnvironmentTests {
     @Rule
     public TemporaryFolder tempDir = new TemporaryFolder();
 
+    @Rule
+    public TemporaryFolder storeDir = new TemporaryFolder();
+
     @Test
     public void canSetupEnvironment() throws IOException {
         // given
@@ -36,7 +47,7 @@ public class VagrantEnvironmentTests {
         VagrantEnvironment environment = builder.generateInstallScript("/S", true)
                 .box(boxName)
                 .xStudioPath(getTempPath(XSTUDIO_EXE_FILE))
-                .installerPaths(Lists.newArrayList(Paths.get(getTempPath(INSTALLER_EXE_FILE))))
+                .installerPaths(Lists.newArrayList(getTempPath(INSTALLER_EXE_FILE)))
                 .build();
 
         // then
@@ -54,6 +65,64 @@ public class VagrantEnvironmentTests {
         Assert.assertTrue(workspaceFiles.length == 1); // contains only Vagrantfile which is left for debugging purpose
     }
 
+    @Test
+    public void canStageEnvironmentOnNode() throws IOException, InterruptedException, ClassNotFoundException {
+        // given
+        tempDir.newFile(XSTUDIO_EXE_FILE);
+        tempDir.newFile(INSTALLER_EXE_FILE);
+        VagrantEnvironment.EnvironmentBuilder builder = VagrantEnvironment.builder(workingDir.getRoot().toPath())
+                .generateInstallScript("/S", false)
+                .box(SnapshotBuilder.DescriptorImpl.DEFAULT_VAGRANT_BOX)
+                .xStudioPath(getTempPath(XSTUDIO_EXE_FILE))
+                .installerPaths(Lists.newArrayList(getTempPath(INSTALLER_EXE_FILE)))
+                .stagingStorePath(storeDir.getRoot().getPath());
+
+        // when
+        VagrantEnvironment.EnvironmentBuilder sentToNode = roundTrip(builder);
+        VagrantEnvironment environment = sentToNode.build(new FilePath(workingDir.getRoot()));
+
+        // then
+        String workingDirPath = workingDir.getRoot().getPath();
+        Assert.assertEquals(workingDir.getRoot().toPath(), environment.workingDir);
+        Assert.assertTrue(Files.exists(Paths.get(workingDirPath, INSTALL_DIRECTORY, INSTALLER_EXE_FILE)));
+        Assert.assertTrue(Files.exists(Paths.get(workingDirPath, VAGRANT_FILE)));
+    }
+
+    @Test
+    public void canStageFilesFromStore() throws IOException {
+        // given
+        File installer = tempDir.newFile(INSTALLER_EXE_FILE);
+        Files.write(installer.toPath(), "installer".getBytes(Charsets.UTF_8));
+        StagingStore store = StagingStore.forDirectory(storeDir.getRoot().toPath());
+        Path firstDestination = workingDir.getRoot().toPath().resolve("first.exe");
+        Path secondDestination = workingDir.getRoot().toPath().resolve("second.exe");
+
+        // when
+        store.stage(installer.toPath(), firstDestination);
+        store.stage(installer.toPath(), secondDestination);
+
+        // then
+        Assert.assertEquals("installer", new String(Files.readAllBytes(firstDestination), Charsets.UTF_8));
+        Assert.assertEquals("installer", new String(Files.readAllBytes(secondDestination), Charsets.UTF_8));
+        String[] prefixDirs = storeDir.getRoot().toPath().resolve("blobs").toFile().list();
+        Assert.assertNotNull(prefixDirs);
+        Assert.assertEquals(1, prefixDirs.length);
+    }
+
+    private static VagrantEnvironment.EnvironmentBuilder roundTrip(VagrantEnvironment.EnvironmentBuilder builder) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(buffer);
+        output.writeObject(builder);
+        output.close();
+
+        ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+        try {
+            return (VagrantEnvironment.EnvironmentBuilder) input.readObject();
+        } finally {
+            input.close();
+        }
+    }
+
     private String getTempPath(String filename) {
         return Paths.get(tempDir.getRoot().getPath(), filename).toString();
     }
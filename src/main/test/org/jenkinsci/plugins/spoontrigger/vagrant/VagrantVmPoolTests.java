@@ -0,0 +1,169 @@
+package org.jenkinsci.plugins.spoontrigger.vagrant;
+
+import com.google.common.base.Optional;
+import hudson.model.TaskListener;
+import junit.framework.Assert;
+import org.jenkinsci.plugins.spoontrigger.utils.TempRoots;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class VagrantVmPoolTests {
+
+    private static final String BOX = "opentable/win-2012r2-standard-amd64-nocm";
+
+    @Rule
+    public TemporaryFolder poolDir = new TemporaryFolder();
+
+    @Test
+    public void reusesRestoredVm() throws IOException, InterruptedException {
+        // given
+        VagrantVmPool pool = new VagrantVmPool();
+        pool.configure(1, 2, 60000);
+
+        // when
+        VagrantVmPool.PooledVm firstVm = pool.lease(BOX, VmResources.DEFAULT, tempRoots()).get();
+        Optional<VagrantVmPool.PooledVm> concurrentVm = pool.lease(BOX, VmResources.DEFAULT, tempRoots());
+        pool.release(firstVm, true);
+        VagrantVmPool.PooledVm secondVm = pool.lease(BOX, VmResources.DEFAULT, tempRoots()).get();
+
+        // then
+        Assert.assertFalse(concurrentVm.isPresent());
+        Assert.assertSame(firstVm, secondVm);
+    }
+
+    @Test
+    public void doesNotReuseVmBootedWithOtherResources() throws IOException, InterruptedException {
+        // given
+        VagrantVmPool pool = new VagrantVmPool();
+        pool.configure(2, 2, 60000);
+        VagrantVmPool.PooledVm vm = pool.lease(BOX, VmResources.DEFAULT, tempRoots()).get();
+        pool.release(vm, true);
+
+        // when
+        VagrantVmPool.PooledVm largerVm = pool.lease(BOX, new VmResources(4096, 4, 40), tempRoots()).get();
+        List<VagrantVmPool.PooledVm> evicted = pool.evict(System.currentTimeMillis());
+
+        // then
+        Assert.assertNotSame(vm, largerVm);
+        Assert.assertEquals(Collections.singletonList(vm), evicted);
+    }
+
+    @Test
+    public void respectsHostCapacity() throws IOException, InterruptedException {
+        // given
+        VagrantVmPool pool = new VagrantVmPool();
+        pool.configure(2, 1, 60000);
+
+        // when
+        Optional<VagrantVmPool.PooledVm> firstVm = pool.lease(BOX, VmResources.DEFAULT, tempRoots());
+        Optional<VagrantVmPool.PooledVm> secondVm = pool.lease("other-box", VmResources.DEFAULT, tempRoots());
+
+        // then
+        Assert.assertTrue(firstVm.isPresent());
+        Assert.assertFalse(secondVm.isPresent());
+    }
+
+    @Test
+    public void evictsIdleVms() throws IOException, InterruptedException {
+        // given
+        VagrantVmPool pool = new VagrantVmPool();
+        pool.configure(1, 1, 1000);
+        VagrantVmPool.PooledVm vm = pool.lease(BOX, VmResources.DEFAULT, tempRoots()).get();
+        pool.release(vm, true);
+
+        // when
+        List<VagrantVmPool.PooledVm> notEvicted = pool.evict(System.currentTimeMillis());
+        List<VagrantVmPool.PooledVm> evicted = pool.evict(System.currentTimeMillis() + 2000);
+
+        // then
+        Assert.assertTrue(notEvicted.isEmpty());
+        Assert.assertEquals(1, evicted.size());
+        Assert.assertSame(vm, evicted.get(0));
+    }
+
+    @Test
+    public void doesNotLeaseEvictedVm() throws IOException, InterruptedException {
+        // given
+        VagrantVmPool pool = new VagrantVmPool();
+        pool.configure(1, 1, 1000);
+        VagrantVmPool.PooledVm vm = pool.lease(BOX, VmResources.DEFAULT, tempRoots()).get();
+        pool.release(vm, true);
+
+        // when
+        pool.evict(System.currentTimeMillis() + 2000);
+        Optional<VagrantVmPool.PooledVm> leasedVm = pool.lease(BOX, VmResources.DEFAULT, tempRoots());
+
+        // then
+        Assert.assertFalse(leasedVm.isPresent());
+    }
+
+    @Test
+    public void destroysEvictedVm() throws IOException, InterruptedException {
+        // given
+        final List<VagrantVmPool.PooledVm> destroyed = new ArrayList<VagrantVmPool.PooledVm>();
+        VagrantVmPool pool = new VagrantVmPool() {
+            @Override
+            void destroy(PooledVm vm, TaskListener listener) {
+                destroyed.add(vm);
+            }
+        };
+        pool.configure(1, 1, 1000);
+        VagrantVmPool.PooledVm vm = pool.lease(BOX, VmResources.DEFAULT, tempRoots()).get();
+        pool.release(vm, true);
+
+        // when
+        pool.destroyEvicted(System.currentTimeMillis() + 2000, TaskListener.NULL);
+        Optional<VagrantVmPool.PooledVm> newVm = pool.lease(BOX, VmResources.DEFAULT, tempRoots());
+
+        // then
+        Assert.assertEquals(Collections.singletonList(vm), destroyed);
+        Assert.assertFalse(Files.exists(vm.workingDir));
+        Assert.assertTrue(newVm.isPresent());
+        Assert.assertNotSame(vm, newVm.get());
+    }
+
+    @Test
+    public void keepsVmWhenDestroyFails() throws IOException, InterruptedException {
+        // given
+        final boolean[] destroyFails = {true};
+        VagrantVmPool pool = new VagrantVmPool() {
+            @Override
+            void destroy(PooledVm vm, TaskListener listener) {
+                if (destroyFails[0]) {
+                    throw new IllegalStateException("Process returned error code 1");
+                }
+            }
+        };
+        pool.configure(1, 1, 1000);
+        VagrantVmPool.PooledVm vm = pool.lease(BOX, VmResources.DEFAULT, tempRoots()).get();
+        Files.createDirectory(vm.workingDir.resolve(VagrantEnvironment.VAGRANT_STATE_DIRECTORY));
+        pool.release(vm, true);
+
+        // when
+        pool.destroyEvicted(System.currentTimeMillis() + 2000, TaskListener.NULL);
+
+        // then
+        Assert.assertTrue(Files.exists(vm.workingDir.resolve(VagrantEnvironment.VAGRANT_STATE_DIRECTORY)));
+        Assert.assertFalse(pool.lease(BOX, VmResources.DEFAULT, tempRoots()).isPresent());
+
+        // when
+        destroyFails[0] = false;
+        pool.destroyEvicted(System.currentTimeMillis(), TaskListener.NULL);
+
+        // then
+        Assert.assertFalse(Files.exists(vm.workingDir));
+        Assert.assertTrue(pool.lease(BOX, VmResources.DEFAULT, tempRoots()).isPresent());
+    }
+
+    private TempRoots tempRoots() {
+        final long minFreeBytes = 0;
+        return new TempRoots(Collections.singletonList(poolDir.getRoot().toPath()), minFreeBytes);
+    }
+}
@@ -0,0 +1,101 @@
+package org.jenkinsci.plugins.spoontrigger.vagrant;
+
+import com.google.common.base.Optional;
+import junit.framework.Assert;
+import org.jenkinsci.plugins.spoontrigger.utils.TempRoots;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Collections;
+
+public class VmAdmissionControllerTests {
+
+    private static final String NODE = "vbox-1";
+    private static final VmResources CAPACITY = new VmResources(6144, 8, 0);
+    private static final String CONTROLLER = "";
+    private static final String BOX = "opentable/win-2012r2-standard-amd64-nocm";
+
+    @Rule
+    public TemporaryFolder poolDir = new TemporaryFolder();
+
+    @Test
+    public void admitsVmsWithinCapacity() {
+        // given
+        VmAdmissionController controller = new VmAdmissionController();
+
+        // when
+        Optional<VmAdmissionController.Reservation> first = controller.tryReserve(NODE, CAPACITY, VmResources.DEFAULT, "first");
+        Optional<VmAdmissionController.Reservation> second = controller.tryReserve(NODE, CAPACITY, VmResources.DEFAULT, "second");
+        Optional<VmAdmissionController.Reservation> third = controller.tryReserve(NODE, CAPACITY, VmResources.DEFAULT, "third");
+        Optional<VmAdmissionController.Reservation> fourth = controller.tryReserve(NODE, CAPACITY, VmResources.DEFAULT, "fourth");
+
+        // then
+        Assert.assertTrue(first.isPresent());
+        Assert.assertTrue(second.isPresent());
+        Assert.assertTrue(third.isPresent());
+        Assert.assertFalse(fourth.isPresent());
+        Assert.assertEquals(6144, controller.getReserved(NODE).memoryMb);
+        Assert.assertTrue(controller.checkAdmission(NODE, CAPACITY, VmResources.DEFAULT).isPresent());
+    }
+
+    @Test
+    public void releaseMakesRoomForNextVm() {
+        // given
+        VmAdmissionController controller = new VmAdmissionController();
+        VmResources capacity = new VmResources(2048, 0, 0);
+        VmAdmissionController.Reservation first = controller.tryReserve(NODE, capacity, VmResources.DEFAULT, "first").get();
+
+        // when
+        boolean admittedBeforeRelease = controller.tryReserve(NODE, capacity, VmResources.DEFAULT, "second").isPresent();
+        controller.release(first);
+        boolean admittedAfterRelease = controller.tryReserve(NODE, capacity, VmResources.DEFAULT, "second").isPresent();
+
+        // then
+        Assert.assertFalse(admittedBeforeRelease);
+        Assert.assertTrue(admittedAfterRelease);
+    }
+
+    @Test
+    public void admitsOversizedVmOnIdleNode() {
+        // given
+        VmAdmissionController controller = new VmAdmissionController();
+        VmResources capacity = new VmResources(1024, 1, 10);
+
+        // when
+        Optional<VmAdmissionController.Reservation> reservation = controller.tryReserve(NODE, capacity, VmResources.DEFAULT, "first");
+
+        // then
+        Assert.assertTrue(reservation.isPresent());
+        Assert.assertTrue(controller.tryReserve("other-node", capacity, VmResources.DEFAULT, "second").isPresent());
+    }
+
+    @Test
+    public void countsPooledVmsOnController() throws IOException, InterruptedException {
+        // given
+        VagrantVmPool pool = new VagrantVmPool();
+        pool.configure(2, 2, 60000);
+        pool.lease(BOX, VmResources.DEFAULT, tempRoots()).get();
+        VagrantVmPool.PooledVm idleVm = pool.lease("other-box", VmResources.DEFAULT, tempRoots()).get();
+        pool.release(idleVm, true);
+        VmAdmissionController controller = new VmAdmissionController(pool);
+        VmResources capacity = new VmResources(4096, 0, 0);
+
+        // when
+        VmResources reserved = controller.getReserved(CONTROLLER);
+        Optional<VmAdmissionController.Reservation> reservation = controller.tryReserve(CONTROLLER, capacity, VmResources.DEFAULT, "first");
+
+        // then
+        Assert.assertEquals(4096, reserved.memoryMb);
+        Assert.assertFalse(reservation.isPresent());
+        Assert.assertFalse(pool.hasIdle("other-box", VmResources.DEFAULT));
+        Assert.assertFalse(pool.leaseIdle(BOX, VmResources.DEFAULT).isPresent());
+        Assert.assertTrue(controller.tryReserve(NODE, capacity, VmResources.DEFAULT, "second").isPresent());
+    }
+
+    private TempRoots tempRoots() {
+        final long minFreeBytes = 0;
+        return new TempRoots(Collections.singletonList(poolDir.getRoot().toPath()), minFreeBytes);
+    }
+}